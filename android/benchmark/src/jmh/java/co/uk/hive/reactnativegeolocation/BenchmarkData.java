@@ -0,0 +1,69 @@
+package co.uk.hive.reactnativegeolocation;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableMap;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceEvent;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceEventTypeAdapter;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceTypeAdapter;
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+
+public class BenchmarkData {
+
+    public static List<Geofence> createGeofences(int count) {
+        List<Geofence> geofences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            geofences.add(createGeofence(i, 100));
+        }
+        return geofences;
+    }
+
+    public static Geofence createGeofence(int index, int radius) {
+        return new Geofence("geofence-" + index, radius, 51.5 + (index % 1000) / 10_000.0,
+                -0.12 + (index / 1000) / 10_000.0, true, true, false, 0);
+    }
+
+    /**
+     * The map JS passes for one geofence.
+     */
+    public static WritableMap createGeofenceMap(int index) {
+        return createGeofenceMap(createGeofence(index, 100));
+    }
+
+    public static WritableMap createGeofenceMap(Geofence geofence) {
+        WritableMap map = new JavaOnlyMap();
+        map.putString("identifier", geofence.getId());
+        map.putInt("radius", geofence.getRadius());
+        map.putDouble("latitude", geofence.getLatitude());
+        map.putDouble("longitude", geofence.getLongitude());
+        map.putBoolean("notifyOnEntry", geofence.isNotifyOnEnter());
+        map.putBoolean("notifyOnExit", geofence.isNotifyOnExit());
+        map.putBoolean("notifyOnDwell", geofence.isNotifyOnDwell());
+        map.putInt("loiteringDelay", geofence.getLoiteringDelay());
+        return map;
+    }
+
+    /**
+     * A geofence event as built by GeofenceMapper and numbered by the outbox.
+     */
+    public static GeofenceEvent createEvent(int index) {
+        return new GeofenceEvent("ENTER", "geofence-" + index, 1_700_000_000L, new LatLng(51.5, -0.12), 42 + index);
+    }
+
+    /**
+     * Configured like GeofenceServiceLocator's.
+     */
+    public static Gson createGson() {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new BundleTypeAdapterFactory())
+                .registerTypeAdapter(Geofence.class, new GeofenceTypeAdapter())
+                .registerTypeAdapter(GeofenceEvent.class, new GeofenceEventTypeAdapter())
+                .create();
+    }
+}
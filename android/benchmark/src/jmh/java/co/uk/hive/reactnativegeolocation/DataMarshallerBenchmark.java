@@ -0,0 +1,59 @@
+package co.uk.hive.reactnativegeolocation;
+
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+
+/**
+ * Geofences through the hand-written type adapter, and through Gson's reflection for comparison.
+ */
+@State(Scope.Benchmark)
+public class DataMarshallerBenchmark {
+
+    @Param({"100", "1000"})
+    public int mCount;
+
+    private DataMarshaller mDataMarshaller;
+    private DataMarshaller mReflectiveDataMarshaller;
+    private List<Geofence> mGeofences;
+    private String mJson;
+    private String mReflectiveJson;
+
+    @Setup
+    public void setUp() {
+        mDataMarshaller = new DataMarshaller(BenchmarkData.createGson());
+        mReflectiveDataMarshaller = new DataMarshaller(new Gson());
+        mGeofences = BenchmarkData.createGeofences(mCount);
+        mJson = mDataMarshaller.marshal(mGeofences);
+        mReflectiveJson = mReflectiveDataMarshaller.marshal(mGeofences);
+    }
+
+    @Benchmark
+    public String marshalGeofences() {
+        return mDataMarshaller.marshal(mGeofences);
+    }
+
+    @Benchmark
+    public List<Geofence> unmarshalGeofences() {
+        return mDataMarshaller.unmarshalList(mJson, Geofence.class, new LinkedList<>());
+    }
+
+    @Benchmark
+    public String marshalGeofencesReflective() {
+        return mReflectiveDataMarshaller.marshal(mGeofences);
+    }
+
+    @Benchmark
+    public List<Geofence> unmarshalGeofencesReflective() {
+        return mReflectiveDataMarshaller.unmarshalList(mReflectiveJson, Geofence.class, new LinkedList<>());
+    }
+}
@@ -0,0 +1,53 @@
+package co.uk.hive.reactnativegeolocation;
+
+import android.app.ActivityManager;
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The foreground check a geofence broadcast makes, by process importance and by the lifecycle
+ * tracker. The process importance figure is a lower bound, see {@link ActivityManager}.
+ */
+@State(Scope.Benchmark)
+public class ForegroundCheckerBenchmark {
+
+    private static final String PACKAGE_NAME = "co.uk.hive.app";
+    private static final int RUNNING_PROCESSES = 30;
+
+    private ForegroundChecker mForegroundChecker;
+    private ForegroundTracker mForegroundTracker;
+
+    @Setup
+    public void setUp() {
+        List<ActivityManager.RunningAppProcessInfo> processes = new ArrayList<>(RUNNING_PROCESSES);
+        for (int i = 0; i < RUNNING_PROCESSES - 1; i++) {
+            processes.add(new ActivityManager.RunningAppProcessInfo("com.example.process" + i,
+                    ActivityManager.RunningAppProcessInfo.IMPORTANCE_CACHED));
+        }
+        // The app comes last, so every process is looked at
+        processes.add(new ActivityManager.RunningAppProcessInfo(PACKAGE_NAME,
+                ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND));
+        Context context = new Context();
+        context.setSystemService(Context.ACTIVITY_SERVICE, new ActivityManager(processes));
+        context.setPackageName(PACKAGE_NAME);
+        mForegroundChecker = new ForegroundChecker(context);
+        mForegroundTracker = new ForegroundTracker(true);
+    }
+
+    @Benchmark
+    public boolean byProcessImportance() {
+        return mForegroundChecker.isAppInForegroundByProcessImportance();
+    }
+
+    @Benchmark
+    public boolean byLifecycleTracker() {
+        return mForegroundTracker.isInForeground();
+    }
+}
@@ -0,0 +1,83 @@
+package co.uk.hive.reactnativegeolocation;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+
+/**
+ * Reading an addGeofences array of maps against the same geofences as addGeofenceColumns
+ * columns. On a device each map read is a JNI call, about 17 per geofence against 6 per column
+ * set, which these HashMap-backed stand-ins leave out.
+ */
+@State(Scope.Benchmark)
+public class GeofenceColumnsBenchmark {
+
+    @Param({"1000", "10000"})
+    public int mCount;
+
+    private final RNMapper mRnMapper = new RNMapper();
+    private ReadableArray mGeofenceMaps;
+    private ReadableMap mGeofenceColumns;
+
+    @Setup
+    public void setUp() {
+        WritableArray geofenceMaps = new JavaOnlyArray();
+        WritableArray ids = new JavaOnlyArray();
+        WritableArray latitudes = new JavaOnlyArray();
+        WritableArray longitudes = new JavaOnlyArray();
+        WritableArray radii = new JavaOnlyArray();
+        WritableArray flags = new JavaOnlyArray();
+        WritableArray loiteringDelays = new JavaOnlyArray();
+        for (Geofence geofence : BenchmarkData.createGeofences(mCount)) {
+            geofenceMaps.pushMap(BenchmarkData.createGeofenceMap(geofence));
+            ids.pushString(geofence.getId());
+            latitudes.pushDouble(geofence.getLatitude());
+            longitudes.pushDouble(geofence.getLongitude());
+            // The bridge hands JS numbers over as doubles
+            radii.pushDouble(geofence.getRadius());
+            flags.pushDouble(Geofence.FLAG_NOTIFY_ON_ENTER | Geofence.FLAG_NOTIFY_ON_EXIT);
+            loiteringDelays.pushDouble(geofence.getLoiteringDelay());
+        }
+        mGeofenceMaps = geofenceMaps;
+
+        WritableMap columns = new JavaOnlyMap();
+        columns.putArray("identifiers", ids);
+        columns.putArray("latitudes", latitudes);
+        columns.putArray("longitudes", longitudes);
+        columns.putArray("radii", radii);
+        columns.putArray("flags", flags);
+        columns.putArray("loiteringDelays", loiteringDelays);
+        mGeofenceColumns = columns;
+    }
+
+    /**
+     * As RNGeolocationModule.addGeofences does.
+     */
+    @Benchmark
+    public List<Geofence> readGeofenceMaps() {
+        List<Geofence> geofences = new ArrayList<>(mGeofenceMaps.size());
+        for (int i = 0; i < mGeofenceMaps.size(); i++) {
+            geofences.add(mRnMapper.readGeofence(mGeofenceMaps.getMap(i)));
+        }
+        return geofences;
+    }
+
+    @Benchmark
+    public List<Geofence> readGeofenceColumns() {
+        return mRnMapper.readGeofenceColumns(mGeofenceColumns);
+    }
+}
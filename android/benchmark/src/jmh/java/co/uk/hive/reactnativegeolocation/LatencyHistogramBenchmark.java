@@ -0,0 +1,34 @@
+package co.uk.hive.reactnativegeolocation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Recording one duration, as every registration, removal and delivery does, from one thread and
+ * from several.
+ */
+@State(Scope.Benchmark)
+public class LatencyHistogramBenchmark {
+
+    private LatencyHistogram mHistogram;
+    private long mNext;
+
+    @Setup
+    public void setUp() {
+        mHistogram = new LatencyHistogram();
+    }
+
+    @Benchmark
+    public void record() {
+        mHistogram.record(mNext++ % 2000);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        mHistogram.record(42);
+    }
+}
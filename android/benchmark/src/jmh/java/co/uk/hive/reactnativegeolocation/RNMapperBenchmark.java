@@ -0,0 +1,43 @@
+package co.uk.hive.reactnativegeolocation;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceEvent;
+
+/**
+ * Bridge maps are HashMap-backed stand-ins here, so this covers the Java side of the conversions
+ * only, not the JNI calls behind them on a device.
+ */
+@State(Scope.Benchmark)
+public class RNMapperBenchmark {
+
+    private final RNMapper mRnMapper = new RNMapper();
+    private ReadableMap mGeofenceMap;
+    private GeofenceEvent mEvent;
+
+    @Setup
+    public void setUp() {
+        mGeofenceMap = BenchmarkData.createGeofenceMap(1);
+        mEvent = BenchmarkData.createEvent(0);
+    }
+
+    @Benchmark
+    public Geofence readGeofence() {
+        return mRnMapper.readGeofence(mGeofenceMap);
+    }
+
+    /**
+     * As the broadcast receiver does for every event it emits.
+     */
+    @Benchmark
+    public WritableMap writeGeofenceEvent() {
+        return mRnMapper.writeGeofenceEvent(mEvent);
+    }
+}
@@ -0,0 +1,39 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import co.uk.hive.reactnativegeolocation.BenchmarkData;
+
+@State(Scope.Benchmark)
+public class GeofenceBenchmark {
+
+    private Geofence mGeofence;
+    private Geofence mEqualGeofence;
+    private Geofence mOtherGeofence;
+
+    @Setup
+    public void setUp() {
+        mGeofence = BenchmarkData.createGeofence(1, 100);
+        mEqualGeofence = BenchmarkData.createGeofence(1, 100);
+        // Differs only in the id, which equals compares last
+        mOtherGeofence = BenchmarkData.createGeofence(2, 100);
+    }
+
+    @Benchmark
+    public boolean equalsEqual() {
+        return mGeofence.equals(mEqualGeofence);
+    }
+
+    @Benchmark
+    public boolean equalsOther() {
+        return mGeofence.equals(mOtherGeofence);
+    }
+
+    @Benchmark
+    public int hashCodeOf() {
+        return mGeofence.hashCode();
+    }
+}
@@ -0,0 +1,50 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.List;
+
+/**
+ * Writing one diagnostics record, from one thread and from several, and reading a full ring.
+ * Writing should allocate nothing, which the gc profiler shows.
+ */
+@State(Scope.Benchmark)
+public class GeofenceDiagnosticsBenchmark {
+
+    private GeofenceDiagnostics mDiagnostics;
+    private String mId;
+
+    @Setup
+    public void setUp() {
+        mDiagnostics = new GeofenceDiagnostics(null);
+        mId = "geofence-42";
+        for (int i = 0; i < GeofenceDiagnostics.CAPACITY; i++) {
+            mDiagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, mId, 1);
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        mDiagnostics.record(GeofenceDiagnostics.Event.CHUNK_REGISTERED, 25);
+    }
+
+    @Benchmark
+    public void recordWithId() {
+        mDiagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, mId, 1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordWithIdContended() {
+        mDiagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, mId, 1);
+    }
+
+    @Benchmark
+    public List<GeofenceDiagnostics.Record> read() {
+        return mDiagnostics.read();
+    }
+}
@@ -0,0 +1,70 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.os.PersistableBundle;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.BenchmarkData;
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+
+/**
+ * The outbox's round trip of one geofence event, and the job extras of a batch of them.
+ */
+@State(Scope.Benchmark)
+public class GeofenceEventBenchmark {
+
+    private static final int BATCH_SIZE = 10;
+
+    private DataMarshaller mDataMarshaller;
+    private GeofenceEvent mEvent;
+    private String mJson;
+    private List<GeofenceEvent> mBatch;
+    private PersistableBundle mExtras;
+    private int mNext;
+
+    @Setup
+    public void setUp() {
+        mDataMarshaller = new DataMarshaller(BenchmarkData.createGson());
+        mEvent = BenchmarkData.createEvent(0);
+        mJson = mDataMarshaller.marshal(mEvent);
+        mBatch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            mBatch.add(BenchmarkData.createEvent(i));
+        }
+        mExtras = GeofenceEventBatch.toExtras(mBatch);
+    }
+
+    @Benchmark
+    public String marshalEvent() {
+        return mDataMarshaller.marshal(mEvent);
+    }
+
+    /**
+     * What the receiver does per transition before storing it in the outbox.
+     */
+    @Benchmark
+    public String createAndMarshalEvent() {
+        return mDataMarshaller.marshal(BenchmarkData.createEvent(mNext++));
+    }
+
+    @Benchmark
+    public GeofenceEvent unmarshalEvent() {
+        return mDataMarshaller.unmarshal(mJson, GeofenceEvent.class, null);
+    }
+
+    @Benchmark
+    public PersistableBundle writeBatchExtras() {
+        return GeofenceEventBatch.toExtras(mBatch);
+    }
+
+    @Benchmark
+    public List<GeofenceEvent> readBatchExtras() {
+        return GeofenceEventBatch.readEvents(mExtras);
+    }
+}
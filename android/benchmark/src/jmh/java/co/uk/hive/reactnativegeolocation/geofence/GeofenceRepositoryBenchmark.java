@@ -0,0 +1,87 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.content.Context;
+
+import com.annimon.stream.Optional;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.BenchmarkData;
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.DataStorage;
+
+@State(Scope.Benchmark)
+public class GeofenceRepositoryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int mCount;
+
+    private File mDirectory;
+    private DataStorage mDataStorage;
+    private DataMarshaller mDataMarshaller;
+    private List<Geofence> mGeofences;
+    private DataStorageGeofenceRepository mRepository;
+    private int mNext;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("geofence-repository").toFile();
+        mDataStorage = new DataStorage(new Context());
+        mDataMarshaller = new DataMarshaller(BenchmarkData.createGson());
+        mGeofences = BenchmarkData.createGeofences(mCount);
+        mRepository = createRepository();
+        mRepository.replaceGeofences(mGeofences);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : mDirectory.listFiles()) {
+            file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    /**
+     * Updates one geofence, which journals it and now and then compacts into a snapshot.
+     */
+    @Benchmark
+    public void addGeofence() {
+        int index = mNext++ % mCount;
+        mRepository.addGeofences(Collections.singletonList(BenchmarkData.createGeofence(index, 100 + mNext % 2)));
+    }
+
+    @Benchmark
+    public Optional<Geofence> lookUpGeofence() {
+        return mRepository.getGeofenceById(mGeofences.get(mNext++ % mCount).getId());
+    }
+
+    /**
+     * What a geofence broadcast in a cold process does.
+     */
+    @Benchmark
+    public Optional<Geofence> loadAndLookUpGeofence() {
+        return createRepository().getGeofenceById(mGeofences.get(mNext++ % mCount).getId());
+    }
+
+    @Benchmark
+    public void saveGeofences() {
+        mRepository.replaceGeofences(mGeofences);
+    }
+
+    private DataStorageGeofenceRepository createRepository() {
+        return new DataStorageGeofenceRepository(mDataStorage, mDataMarshaller,
+                new GeofenceJournal(new File(mDirectory, GeofenceJournal.FILE_NAME), mDataMarshaller),
+                new File(mDirectory, GeofenceSnapshot.FILE_NAME));
+    }
+}
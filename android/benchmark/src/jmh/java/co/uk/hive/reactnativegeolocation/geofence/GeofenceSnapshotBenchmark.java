@@ -0,0 +1,64 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.BenchmarkData;
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+
+/**
+ * Loading the catalog from a snapshot, for one lookup or in full, against parsing the JSON it
+ * replaced.
+ */
+@State(Scope.Benchmark)
+public class GeofenceSnapshotBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int mCount;
+
+    private File mFile;
+    private GeofenceSnapshot mSnapshot;
+    private DataMarshaller mDataMarshaller;
+    private String mJson;
+    private String mLastId;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("geofences", ".snapshot");
+        List<Geofence> geofences = BenchmarkData.createGeofences(mCount);
+        GeofenceSnapshot.write(mFile, 1, geofences);
+        mSnapshot = GeofenceSnapshot.open(mFile);
+        mDataMarshaller = new DataMarshaller(BenchmarkData.createGson());
+        mJson = mDataMarshaller.marshal(geofences);
+        mLastId = geofences.get(mCount - 1).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public Geofence openAndFind() {
+        return GeofenceSnapshot.open(mFile).find(mLastId);
+    }
+
+    @Benchmark
+    public List<Geofence> decode() {
+        return mSnapshot.toList();
+    }
+
+    @Benchmark
+    public List<Geofence> parseJson() {
+        return mDataMarshaller.unmarshalList(mJson, Geofence.class, new LinkedList<>());
+    }
+}
@@ -0,0 +1,80 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import co.uk.hive.reactnativegeolocation.BenchmarkData;
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.DataStorage;
+
+/**
+ * Working out a full window at a random spot, as a refresh geofence exit does.
+ */
+@State(Scope.Benchmark)
+public class GeofenceWindowBenchmark {
+
+    @Param({"10000", "50000", "100000"})
+    public int mCount;
+
+    private final Random mRandom = new Random(42);
+
+    private File mDirectory;
+    private GeofenceWindow mWindow;
+    private List<String> mRegisteredIds;
+
+    @Setup
+    public void setUp() throws IOException {
+        mDirectory = Files.createTempDirectory("geofence-window").toFile();
+        DataMarshaller dataMarshaller = new DataMarshaller(BenchmarkData.createGson());
+        DataStorageGeofenceRepository repository = new DataStorageGeofenceRepository(
+                new DataStorage(new Context()), dataMarshaller,
+                new GeofenceJournal(new File(mDirectory, GeofenceJournal.FILE_NAME), dataMarshaller),
+                new File(mDirectory, GeofenceSnapshot.FILE_NAME));
+        List<Geofence> geofences = new ArrayList<>(mCount);
+        for (int i = 0; i < mCount; i++) {
+            geofences.add(new Geofence(String.valueOf(i), 100, randomLatitude(), randomLongitude(),
+                    true, true, false, 0));
+        }
+        repository.replaceGeofences(geofences);
+        mWindow = new GeofenceWindow(repository);
+        mRegisteredIds = new ArrayList<>();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : mDirectory.listFiles()) {
+            file.delete();
+        }
+        mDirectory.delete();
+    }
+
+    @Benchmark
+    public GeofenceWindow.Plan plan() {
+        GeofenceWindow.Plan plan = mWindow.plan(randomLatitude(), randomLongitude(), GeofenceWindow.MAX_SIZE,
+                mRegisteredIds);
+        mRegisteredIds = plan.getWindowIds();
+        return plan;
+    }
+
+    // Roughly the area of Great Britain
+    private double randomLatitude() {
+        return 50 + mRandom.nextDouble() * 8;
+    }
+
+    private double randomLongitude() {
+        return -6 + mRandom.nextDouble() * 8;
+    }
+}
@@ -0,0 +1,7 @@
+package android.app;
+
+/**
+ * JVM stand-in, only passed around.
+ */
+public class Activity {
+}
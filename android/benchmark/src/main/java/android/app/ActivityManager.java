@@ -0,0 +1,38 @@
+package android.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in answering with the processes it was given. Copies them per call like the binder
+ * call does, but leaves out the round trip and the parcelling, so it is a lower bound.
+ */
+public class ActivityManager {
+
+    private final List<RunningAppProcessInfo> mProcesses;
+
+    public ActivityManager(List<RunningAppProcessInfo> processes) {
+        mProcesses = processes;
+    }
+
+    public List<RunningAppProcessInfo> getRunningAppProcesses() {
+        List<RunningAppProcessInfo> processes = new ArrayList<>(mProcesses.size());
+        for (RunningAppProcessInfo process : mProcesses) {
+            processes.add(new RunningAppProcessInfo(process.processName, process.importance));
+        }
+        return processes;
+    }
+
+    public static class RunningAppProcessInfo {
+        public static final int IMPORTANCE_FOREGROUND = 100;
+        public static final int IMPORTANCE_CACHED = 400;
+
+        public String processName;
+        public int importance;
+
+        public RunningAppProcessInfo(String processName, int importance) {
+            this.processName = processName;
+            this.importance = importance;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in keeping shared preferences in memory, with the system services and package name
+ * a benchmark sets.
+ */
+public class Context {
+
+    public static final String ACTIVITY_SERVICE = "activity";
+
+    private final Map<String, SharedPreferences> mSharedPreferences = new HashMap<>();
+    private final Map<String, Object> mSystemServices = new HashMap<>();
+    private String mPackageName;
+
+    public SharedPreferences getSharedPreferences(String name, int mode) {
+        return mSharedPreferences.computeIfAbsent(name, ignored -> new SharedPreferences());
+    }
+
+    public Object getSystemService(String name) {
+        return mSystemServices.get(name);
+    }
+
+    public void setSystemService(String name, Object service) {
+        mSystemServices.put(name, service);
+    }
+
+    public String getPackageName() {
+        return mPackageName;
+    }
+
+    public void setPackageName(String packageName) {
+        mPackageName = packageName;
+    }
+}
@@ -0,0 +1,35 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in keeping values in memory. A class rather than the Android interface, as the
+ * benchmarks need only one implementation.
+ */
+public class SharedPreferences {
+
+    private final Map<String, String> mValues = new HashMap<>();
+
+    public String getString(String key, String defaultValue) {
+        return mValues.getOrDefault(key, defaultValue);
+    }
+
+    public Editor edit() {
+        return new Editor();
+    }
+
+    public class Editor {
+
+        private final Map<String, String> mChanges = new HashMap<>();
+
+        public Editor putString(String key, String value) {
+            mChanges.put(key, value);
+            return this;
+        }
+
+        public void apply() {
+            mValues.putAll(mChanges);
+        }
+    }
+}
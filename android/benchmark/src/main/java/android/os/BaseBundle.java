@@ -0,0 +1,108 @@
+package android.os;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JVM stand-in holding just enough of the Android API for the benchmarks.
+ */
+public class BaseBundle {
+
+    final Map<String, Object> mMap;
+
+    BaseBundle() {
+        mMap = new LinkedHashMap<>();
+    }
+
+    BaseBundle(BaseBundle bundle) {
+        mMap = new LinkedHashMap<>(bundle.mMap);
+    }
+
+    public Set<String> keySet() {
+        return mMap.keySet();
+    }
+
+    public boolean containsKey(String key) {
+        return mMap.containsKey(key);
+    }
+
+    public Object get(String key) {
+        return mMap.get(key);
+    }
+
+    public void remove(String key) {
+        mMap.remove(key);
+    }
+
+    public void putString(String key, String value) {
+        mMap.put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        mMap.put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        mMap.put(key, value);
+    }
+
+    public void putDouble(String key, double value) {
+        mMap.put(key, value);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        mMap.put(key, value);
+    }
+
+    public void putStringArray(String key, String[] value) {
+        mMap.put(key, value);
+    }
+
+    public void putLongArray(String key, long[] value) {
+        mMap.put(key, value);
+    }
+
+    public void putDoubleArray(String key, double[] value) {
+        mMap.put(key, value);
+    }
+
+    public String getString(String key) {
+        Object value = mMap.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    public int getInt(String key) {
+        Object value = mMap.get(key);
+        return value instanceof Integer ? (Integer) value : 0;
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = mMap.get(key);
+        return value instanceof Long ? (Long) value : defaultValue;
+    }
+
+    public double getDouble(String key) {
+        Object value = mMap.get(key);
+        return value instanceof Double ? (Double) value : 0;
+    }
+
+    public String[] getStringArray(String key) {
+        Object value = mMap.get(key);
+        return value instanceof String[] ? (String[]) value : null;
+    }
+
+    public long[] getLongArray(String key) {
+        Object value = mMap.get(key);
+        return value instanceof long[] ? (long[]) value : null;
+    }
+
+    public double[] getDoubleArray(String key) {
+        Object value = mMap.get(key);
+        return value instanceof double[] ? (double[]) value : null;
+    }
+}
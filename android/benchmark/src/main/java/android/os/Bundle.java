@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * JVM stand-in holding just enough of the Android API for the benchmarks.
+ */
+public final class Bundle extends BaseBundle implements Parcelable {
+
+    public Bundle() {
+    }
+
+    public Bundle(PersistableBundle bundle) {
+        super(bundle);
+    }
+
+    public void putParcelable(String key, Parcelable value) {
+        mMap.put(key, value);
+    }
+}
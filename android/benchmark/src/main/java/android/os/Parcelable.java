@@ -0,0 +1,7 @@
+package android.os;
+
+/**
+ * JVM stand-in holding just enough of the Android API for the benchmarks.
+ */
+public interface Parcelable {
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * JVM stand-in holding just enough of the Android API for the benchmarks.
+ */
+public final class PersistableBundle extends BaseBundle {
+
+    public PersistableBundle() {
+    }
+
+    public void putPersistableBundle(String key, PersistableBundle value) {
+        mMap.put(key, value);
+    }
+}
@@ -0,0 +1,15 @@
+package android.provider;
+
+/**
+ * JVM stand-in holding just enough of the Android API for the benchmarks.
+ */
+public final class Settings {
+
+    public static final class Secure {
+        public static final String LOCATION_MODE = "location_mode";
+        public static final int LOCATION_MODE_OFF = 0;
+        public static final int LOCATION_MODE_SENSORS_ONLY = 1;
+        public static final int LOCATION_MODE_BATTERY_SAVING = 2;
+        public static final int LOCATION_MODE_HIGH_ACCURACY = 3;
+    }
+}
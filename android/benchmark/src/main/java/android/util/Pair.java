@@ -0,0 +1,15 @@
+package android.util;
+
+/**
+ * JVM stand-in holding just enough of the Android API for the benchmarks.
+ */
+public class Pair<F, S> {
+
+    public final F first;
+    public final S second;
+
+    public Pair(F first, S second) {
+        this.first = first;
+        this.second = second;
+    }
+}
@@ -0,0 +1,50 @@
+package com.facebook.react.bridge;
+
+import java.lang.reflect.Array;
+import java.util.List;
+
+/**
+ * JVM stand-in creating Java-only bridge maps and arrays.
+ */
+public class Arguments {
+
+    public static WritableMap createMap() {
+        return new JavaOnlyMap();
+    }
+
+    public static WritableArray createArray() {
+        return new JavaOnlyArray();
+    }
+
+    public static WritableArray fromArray(Object array) {
+        WritableArray result = createArray();
+        for (int i = 0; i < Array.getLength(array); i++) {
+            push(result, Array.get(array, i));
+        }
+        return result;
+    }
+
+    public static WritableArray fromList(List list) {
+        WritableArray result = createArray();
+        for (Object value : list) {
+            push(result, value);
+        }
+        return result;
+    }
+
+    private static void push(WritableArray array, Object value) {
+        if (value == null) {
+            array.pushNull();
+        } else if (value instanceof Boolean) {
+            array.pushBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            array.pushInt((Integer) value);
+        } else if (value instanceof Number) {
+            array.pushDouble(((Number) value).doubleValue());
+        } else if (value instanceof String) {
+            array.pushString((String) value);
+        } else {
+            throw new IllegalArgumentException("Could not convert " + value.getClass());
+        }
+    }
+}
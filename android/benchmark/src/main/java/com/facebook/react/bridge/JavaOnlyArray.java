@@ -0,0 +1,62 @@
+package com.facebook.react.bridge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JVM stand-in backed by an ArrayList.
+ */
+public class JavaOnlyArray implements WritableArray {
+
+    private final List<Object> mBackingList = new ArrayList<>();
+
+    @Override
+    public int size() {
+        return mBackingList.size();
+    }
+
+    @Override
+    public ReadableMap getMap(int index) {
+        return (ReadableMap) mBackingList.get(index);
+    }
+
+    @Override
+    public ArrayList<Object> toArrayList() {
+        return new ArrayList<>(mBackingList);
+    }
+
+    @Override
+    public void pushNull() {
+        mBackingList.add(null);
+    }
+
+    @Override
+    public void pushBoolean(boolean value) {
+        mBackingList.add(value);
+    }
+
+    @Override
+    public void pushDouble(double value) {
+        mBackingList.add(value);
+    }
+
+    @Override
+    public void pushInt(int value) {
+        mBackingList.add(value);
+    }
+
+    @Override
+    public void pushString(String value) {
+        mBackingList.add(value);
+    }
+
+    @Override
+    public void pushArray(ReadableArray value) {
+        mBackingList.add(value);
+    }
+
+    @Override
+    public void pushMap(ReadableMap value) {
+        mBackingList.add(value);
+    }
+}
@@ -0,0 +1,83 @@
+package com.facebook.react.bridge;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JVM stand-in backed by a HashMap. On a device the bridge maps are JNI-backed, so reads and
+ * writes cost more there than here.
+ */
+public class JavaOnlyMap implements WritableMap {
+
+    private final Map<String, Object> mBackingMap = new HashMap<>();
+
+    @Override
+    public boolean hasKey(String name) {
+        return mBackingMap.containsKey(name);
+    }
+
+    @Override
+    public boolean isNull(String name) {
+        return mBackingMap.get(name) == null;
+    }
+
+    @Override
+    public boolean getBoolean(String name) {
+        return (Boolean) mBackingMap.get(name);
+    }
+
+    @Override
+    public double getDouble(String name) {
+        return ((Number) mBackingMap.get(name)).doubleValue();
+    }
+
+    @Override
+    public int getInt(String name) {
+        return ((Number) mBackingMap.get(name)).intValue();
+    }
+
+    @Override
+    public String getString(String name) {
+        return (String) mBackingMap.get(name);
+    }
+
+    @Override
+    public ReadableArray getArray(String name) {
+        return (ReadableArray) mBackingMap.get(name);
+    }
+
+    @Override
+    public void putNull(String key) {
+        mBackingMap.put(key, null);
+    }
+
+    @Override
+    public void putBoolean(String key, boolean value) {
+        mBackingMap.put(key, value);
+    }
+
+    @Override
+    public void putDouble(String key, double value) {
+        mBackingMap.put(key, value);
+    }
+
+    @Override
+    public void putInt(String key, int value) {
+        mBackingMap.put(key, value);
+    }
+
+    @Override
+    public void putString(String key, String value) {
+        mBackingMap.put(key, value);
+    }
+
+    @Override
+    public void putArray(String key, ReadableArray value) {
+        mBackingMap.put(key, value);
+    }
+
+    @Override
+    public void putMap(String key, ReadableMap value) {
+        mBackingMap.put(key, value);
+    }
+}
@@ -0,0 +1,15 @@
+package com.facebook.react.bridge;
+
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in for the React Native bridge type.
+ */
+public interface ReadableArray {
+
+    int size();
+
+    ReadableMap getMap(int index);
+
+    ArrayList<Object> toArrayList();
+}
@@ -0,0 +1,21 @@
+package com.facebook.react.bridge;
+
+/**
+ * JVM stand-in for the React Native bridge type.
+ */
+public interface ReadableMap {
+
+    boolean hasKey(String name);
+
+    boolean isNull(String name);
+
+    boolean getBoolean(String name);
+
+    double getDouble(String name);
+
+    int getInt(String name);
+
+    String getString(String name);
+
+    ReadableArray getArray(String name);
+}
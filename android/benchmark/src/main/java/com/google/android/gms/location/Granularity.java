@@ -0,0 +1,10 @@
+package com.google.android.gms.location;
+
+/**
+ * JVM stand-in holding the Play Services constants the library reads.
+ */
+public final class Granularity {
+    public static final int GRANULARITY_PERMISSION_LEVEL = 0;
+    public static final int GRANULARITY_COARSE = 1;
+    public static final int GRANULARITY_FINE = 2;
+}
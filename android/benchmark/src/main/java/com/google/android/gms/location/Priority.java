@@ -0,0 +1,11 @@
+package com.google.android.gms.location;
+
+/**
+ * JVM stand-in holding the Play Services constants the library reads.
+ */
+public final class Priority {
+    public static final int PRIORITY_HIGH_ACCURACY = 100;
+    public static final int PRIORITY_BALANCED_POWER_ACCURACY = 102;
+    public static final int PRIORITY_LOW_POWER = 104;
+    public static final int PRIORITY_PASSIVE = 105;
+}
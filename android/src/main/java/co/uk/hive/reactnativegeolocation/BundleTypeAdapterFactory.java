@@ -19,6 +19,7 @@ import java.util.List;
 
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.PersistableBundle;
 import android.util.Pair;
 
 import com.google.gson.Gson;
@@ -54,6 +55,8 @@ public class BundleTypeAdapterFactory implements TypeAdapterFactory {
                     Object value = bundle.get(key);
                     if (value == null) {
                         out.nullValue();
+                    } else if (value instanceof PersistableBundle) {
+                        gson.toJson(new Bundle((PersistableBundle) value), Bundle.class, out);
                     } else {
                         gson.toJson(value, value.getClass(), out);
                     }
@@ -14,6 +14,18 @@ public class ForegroundChecker {
     }
 
     public boolean isAppInForeground() {
+        ForegroundTracker tracker = ForegroundTracker.getInstance();
+        if (tracker != null) {
+            return tracker.isInForeground();
+        }
+        return isAppInForegroundByProcessImportance();
+    }
+
+    /**
+     * Asks the system for the importance of every running process, a binder call that allocates
+     * the whole list. Only used until {@link ForegroundTracker} is installed.
+     */
+    boolean isAppInForegroundByProcessImportance() {
         ActivityManager activityManager = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
         List<ActivityManager.RunningAppProcessInfo> appProcesses =
                 activityManager.getRunningAppProcesses();
@@ -0,0 +1,88 @@
+package co.uk.hive.reactnativegeolocation;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+
+/**
+ * Follows activity lifecycle callbacks to know whether the app is in the foreground, so the
+ * question can be answered without a binder call.
+ *
+ * Installed lazily, possibly after an activity has already started, so the initial state comes
+ * from a single {@link ForegroundChecker} process importance check. An app found in the foreground
+ * counts as one started activity, the one that was never seen starting.
+ */
+public class ForegroundTracker implements Application.ActivityLifecycleCallbacks {
+
+    private static volatile ForegroundTracker sInstance;
+
+    private int mStartedActivities;
+    private volatile boolean mInForeground;
+
+    ForegroundTracker(boolean inForeground) {
+        mInForeground = inForeground;
+        mStartedActivities = inForeground ? 1 : 0;
+    }
+
+    public static void install(Application application) {
+        if (sInstance != null) {
+            return;
+        }
+        synchronized (ForegroundTracker.class) {
+            if (sInstance == null) {
+                ForegroundTracker tracker = new ForegroundTracker(
+                        new ForegroundChecker(application).isAppInForegroundByProcessImportance());
+                application.registerActivityLifecycleCallbacks(tracker);
+                sInstance = tracker;
+            }
+        }
+    }
+
+    /**
+     * @return the tracker, or null if it has not been installed in this process
+     */
+    static ForegroundTracker getInstance() {
+        return sInstance;
+    }
+
+    public boolean isInForeground() {
+        return mInForeground;
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+        mStartedActivities++;
+        mInForeground = true;
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        // More than one activity started before installation is only counted as one
+        if (mStartedActivities > 0) {
+            mStartedActivities--;
+        }
+        if (mStartedActivities == 0) {
+            mInForeground = false;
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+    }
+}
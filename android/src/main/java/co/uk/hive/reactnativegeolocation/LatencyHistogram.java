@@ -0,0 +1,59 @@
+package co.uk.hive.reactnativegeolocation;
+
+/**
+ * Counts durations into fixed buckets, so that recording is a few increments and memory stays
+ * constant however long the process lives. Percentiles come out as the upper bound of the bucket
+ * they fall in.
+ */
+public class LatencyHistogram {
+
+    static final long[] BUCKET_BOUNDS_MILLIS = {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10_000, 30_000, 60_000, 300_000};
+
+    // The last bucket holds everything above the last bound
+    private final long[] mBucketCounts = new long[BUCKET_BOUNDS_MILLIS.length + 1];
+    private long mCount;
+    private long mTotalMillis;
+    private long mMaxMillis;
+
+    public synchronized void record(long millis) {
+        millis = Math.max(0, millis);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        mBucketCounts[bucket]++;
+        mCount++;
+        mTotalMillis += millis;
+        mMaxMillis = Math.max(mMaxMillis, millis);
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    public synchronized double getMeanMillis() {
+        return mCount == 0 ? 0 : (double) mTotalMillis / mCount;
+    }
+
+    public synchronized long getMaxMillis() {
+        return mMaxMillis;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the percentile, at most the largest duration
+     * recorded, or 0 if nothing was recorded
+     */
+    public synchronized long getPercentileMillis(double percentile) {
+        long rank = (long) Math.ceil(mCount * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_BOUNDS_MILLIS.length; bucket++) {
+            seen += mBucketCounts[bucket];
+            if (seen >= rank && seen > 0) {
+                return Math.min(BUCKET_BOUNDS_MILLIS[bucket], mMaxMillis);
+            }
+        }
+        return mMaxMillis;
+    }
+}
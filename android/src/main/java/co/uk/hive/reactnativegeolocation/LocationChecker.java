@@ -2,9 +2,11 @@ package co.uk.hive.reactnativegeolocation;
 
 import android.content.Context;
 import android.location.LocationManager;
-import com.annimon.stream.Stream;
 
 public class LocationChecker {
+    public static final int PROVIDER_GPS = 1;
+    public static final int PROVIDER_NETWORK = 2;
+
     private final Context mContext;
 
     public LocationChecker(Context context) {
@@ -12,13 +14,18 @@ public class LocationChecker {
     }
 
     public boolean isLocationEnabled() {
+        return getEnabledProviders() != 0;
+    }
+
+    /**
+     * @return {@link #PROVIDER_GPS} and {@link #PROVIDER_NETWORK} flags of the enabled providers
+     */
+    public int getEnabledProviders() {
         LocationManager locationManager = (LocationManager) mContext.getSystemService(Context.LOCATION_SERVICE);
-        if (locationManager != null) {
-            return Stream.of(
-                    LocationManager.GPS_PROVIDER,
-                    LocationManager.NETWORK_PROVIDER)
-                .anyMatch(locationManager::isProviderEnabled);
+        if (locationManager == null) {
+            return 0;
         }
-        return false;
+        return (locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER) ? PROVIDER_GPS : 0)
+                | (locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER) ? PROVIDER_NETWORK : 0);
     }
 }
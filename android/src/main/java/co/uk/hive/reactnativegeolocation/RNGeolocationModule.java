@@ -2,10 +2,13 @@
 package co.uk.hive.reactnativegeolocation;
 
 import android.app.Activity;
+import android.app.Application;
 import android.content.Intent;
 import android.content.IntentSender;
+import android.os.Handler;
 
 import com.annimon.stream.Stream;
+import com.annimon.stream.function.BiConsumer;
 import com.annimon.stream.function.Function;
 import com.facebook.react.bridge.ActivityEventListener;
 import com.facebook.react.bridge.Arguments;
@@ -16,41 +19,63 @@ import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.common.api.ResolvableApiException;
 import com.google.android.gms.location.LocationSettingsStatusCodes;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import co.uk.hive.reactnativegeolocation.geofence.Geofence;
 import co.uk.hive.reactnativegeolocation.geofence.GeofenceController;
-import co.uk.hive.reactnativegeolocation.geofence.GeofenceLog;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceDiagnostics;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceEvent;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceEventOutbox;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceMetrics;
 import co.uk.hive.reactnativegeolocation.geofence.GeofenceServiceLocator;
 import co.uk.hive.reactnativegeolocation.location.LatLng;
 import co.uk.hive.reactnativegeolocation.location.LocationController;
 import co.uk.hive.reactnativegeolocation.location.LocationError;
+import co.uk.hive.reactnativegeolocation.location.WatchPositionRequest;
 
 public class RNGeolocationModule extends ReactContextBaseJavaModule implements ActivityEventListener {
 
     private final static int CHECK_SETTINGS_REQUEST_CODE = 104;
+    private static final String WATCH_POSITION_EVENT_NAME = "watchPosition";
+    private static final String WATCH_POSITION_BATCH_EVENT_NAME = "watchPositionBatch";
+    private static final String WATCH_POSITION_ERROR_EVENT_NAME = "watchPositionError";
+    private static final String INVALID_GEOFENCE_COLUMNS_ERROR = "INVALID_GEOFENCE_COLUMNS";
+    private static final String GEOFENCE_TASK_FAILED_ERROR = "GEOFENCE_TASK_FAILED";
 
     private final ReactApplicationContext reactContext;
     private final GeofenceController mGeofenceController;
     private final LocationController mLocationController;
+    private final GeofenceEventOutbox mGeofenceEventOutbox;
+    private final GeofenceDiagnostics mGeofenceDiagnostics;
+    // Geofence methods run here, resolving once the geofences are stored and, if started, registered
+    private final Handler mGeofenceHandler;
     private final RNMapper mRnMapper;
 
-    private ReadableMap currentPositionRequest = null;
-    private Callback positionSuccessCallback = null;
-    private Callback positionFailureCallback = null;
+    // getCurrentPosition calls to retry once the user has answered the location settings dialog
+    private final List<PositionCall> mPositionCallsAwaitingSettings = new ArrayList<>();
 
     public RNGeolocationModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
         this.reactContext.addActivityEventListener(this);
+        if (reactContext.getApplicationContext() instanceof Application) {
+            ForegroundTracker.install((Application) reactContext.getApplicationContext());
+        }
         mGeofenceController = GeofenceServiceLocator.getGeofenceController(reactContext.getApplicationContext());
         mLocationController = GeofenceServiceLocator.getLocationController(reactContext.getApplicationContext());
+        mGeofenceEventOutbox = GeofenceServiceLocator.getGeofenceEventOutbox(reactContext.getApplicationContext());
+        mGeofenceDiagnostics = GeofenceServiceLocator.getGeofenceDiagnostics(reactContext.getApplicationContext());
+        mGeofenceHandler = GeofenceServiceLocator.getGeofenceHandler();
         mRnMapper = new RNMapper();
     }
 
@@ -60,49 +85,271 @@ public class RNGeolocationModule extends ReactContextBaseJavaModule implements A
     }
 
     @ReactMethod
-    public void ready() {
-        mGeofenceController.setupReregistration();
+    public void ready(Promise promise) {
+        postGeofenceTask(promise, mGeofenceController::setupReregistration);
     }
 
     @ReactMethod
     public void startGeofences(Callback successCallback, Callback failureCallback) {
-        mGeofenceController.start(convertCallback(successCallback), convertCallback(failureCallback));
+        postGeofenceTask(successCallback, failureCallback, mGeofenceController::start);
     }
 
     @ReactMethod
     public void stopGeofences(Callback successCallback, Callback failureCallback) {
-        mGeofenceController.stop(convertCallback(successCallback), convertCallback(failureCallback));
+        postGeofenceTask(successCallback, failureCallback, mGeofenceController::stop);
+    }
+
+    @ReactMethod
+    public void addGeofences(ReadableArray geofencesArray, Promise promise) {
+        postGeofenceTask(promise, () -> mGeofenceController.addGeofences(readGeofences(geofencesArray)));
+    }
+
+    /**
+     * Bulk variant of {@link #addGeofences(ReadableArray)} taking geofences column-wise, see
+     * {@link RNMapper#readGeofenceColumns(ReadableMap)}.
+     */
+    @ReactMethod
+    public void addGeofenceColumns(ReadableMap columns, Promise promise) {
+        List<Geofence> geofences;
+        try {
+            geofences = mRnMapper.readGeofenceColumns(columns);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            promise.reject(INVALID_GEOFENCE_COLUMNS_ERROR, e.getMessage(), e);
+            return;
+        }
+        postGeofenceTask(promise, () -> mGeofenceController.addGeofences(geofences));
+    }
+
+    @ReactMethod
+    public void replaceGeofences(ReadableArray geofencesArray, Callback successCallback, Callback failureCallback) {
+        postGeofenceTask(successCallback, failureCallback, (success, failure) ->
+                mGeofenceController.replaceGeofences(readGeofences(geofencesArray), success, failure));
+    }
+
+    @ReactMethod
+    public void upsertGeofences(ReadableArray geofencesArray, Callback successCallback, Callback failureCallback) {
+        postGeofenceTask(successCallback, failureCallback, (success, failure) ->
+                mGeofenceController.upsertGeofences(readGeofences(geofencesArray), success, failure));
+    }
+
+    @ReactMethod
+    public void removeGeofences(ReadableArray idsArray, Callback successCallback, Callback failureCallback) {
+        postGeofenceTask(successCallback, failureCallback, (success, failure) -> {
+            List<String> ids = Stream.range(0, idsArray.size())
+                    .map(idsArray::getString)
+                    .toList();
+            mGeofenceController.removeGeofences(ids, success, failure);
+        });
+    }
+
+    @ReactMethod
+    public void removeAllGeofences(Promise promise) {
+        postGeofenceTask(promise, mGeofenceController::removeAllGeofences);
     }
 
     @ReactMethod
-    public void addGeofences(ReadableArray geofencesArray) {
-        List<Geofence> geofences = Stream.range(0, geofencesArray.size())
+    public void setGeofenceWindowSize(int size, Promise promise) {
+        postGeofenceTask(promise, () -> mGeofenceController.setWindowSize(size));
+    }
+
+    private List<Geofence> readGeofences(ReadableArray geofencesArray) {
+        return Stream.range(0, geofencesArray.size())
                 .map(geofencesArray::getMap)
                 .map(mRnMapper::readGeofence)
                 .toList();
-        mGeofenceController.addGeofences(geofences);
+    }
+
+    /**
+     * Runs the task on the geofence thread, resolving the promise once it returns and rejecting it
+     * if it throws, which would otherwise take the thread down with the promise unsettled.
+     */
+    private void postGeofenceTask(Promise promise, Runnable task) {
+        mGeofenceHandler.post(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.TASK_FAILED, e.getClass().getName());
+                promise.reject(GEOFENCE_TASK_FAILED_ERROR, e.getMessage(), e);
+                return;
+            }
+            promise.resolve(null);
+        });
+    }
+
+    /**
+     * Runs the task on the geofence thread, calling the failure callback if it throws before
+     * either callback has been called. A callback can only be called once.
+     */
+    private void postGeofenceTask(Callback successCallback, Callback failureCallback,
+                                  BiConsumer<Function<? super Object, ? super Object>,
+                                          Function<? super Object, ? super Object>> task) {
+        AtomicBoolean settled = new AtomicBoolean();
+        Function<Object, Object> success = convertCallback(successCallback);
+        Function<Object, Object> failure = convertCallback(failureCallback);
+        mGeofenceHandler.post(() -> {
+            try {
+                task.accept(
+                        result -> settled.compareAndSet(false, true) ? success.apply(result) : null,
+                        error -> settled.compareAndSet(false, true) ? failure.apply(error) : null);
+            } catch (RuntimeException e) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.TASK_FAILED, e.getClass().getName());
+                if (settled.compareAndSet(false, true)) {
+                    failure.apply(e);
+                }
+            }
+        });
     }
 
     @ReactMethod
-    public void removeGeofences() {
-        mGeofenceController.removeAllGeofences();
+    public void getRegistrationState(Promise promise) {
+        promise.resolve(mRnMapper.writeRegistrationState(mGeofenceController.getRegistrationState()));
+    }
+
+    @ReactMethod
+    public void getPendingGeofenceEvents(int limit, Promise promise) {
+        WritableArray events = Arguments.createArray();
+        for (GeofenceEvent event : mGeofenceEventOutbox.peek(limit)) {
+            events.pushMap(mRnMapper.writeGeofenceEvent(event));
+        }
+        promise.resolve(events);
+    }
+
+    @ReactMethod
+    public void acknowledgeGeofenceEvents(double sequence) {
+        mGeofenceEventOutbox.acknowledge((long) sequence);
     }
 
     @ReactMethod
     public void getCurrentPosition(ReadableMap currentPositionRequest,
                                    Callback successCallback, Callback failureCallback) {
 
-        // Keep references for a retry
-        this.currentPositionRequest = currentPositionRequest;
-        this.positionSuccessCallback = successCallback;
-        this.positionFailureCallback = failureCallback;
-
+        PositionCall positionCall = new PositionCall(currentPositionRequest, successCallback, failureCallback);
         Function<LatLng, Object> positionCallback = location -> {
             successCallback.invoke(mRnMapper.writeLocation(location));
             return null;
         };
+        Function<Object, Object> positionFailureCallback = error -> {
+            if (error instanceof ResolvableApiException
+                    && ((ResolvableApiException) error).getStatusCode() == LocationSettingsStatusCodes.RESOLUTION_REQUIRED) {
+                awaitSettingsResolution(positionCall, (ResolvableApiException) error);
+                return null;
+            }
+            return convertCallback(failureCallback).apply(error);
+        };
         mLocationController.getCurrentPosition(
-                mRnMapper.readPositionRequest(currentPositionRequest), positionCallback, convertCallback(failureCallback));
+                mRnMapper.readPositionRequest(currentPositionRequest), positionCallback, positionFailureCallback);
+    }
+
+    /**
+     * Shows the location settings dialog once, however many position calls are waiting for it.
+     */
+    private void awaitSettingsResolution(PositionCall positionCall, ResolvableApiException resolvable) {
+        synchronized (mPositionCallsAwaitingSettings) {
+            mPositionCallsAwaitingSettings.add(positionCall);
+            if (mPositionCallsAwaitingSettings.size() > 1) {
+                return;
+            }
+        }
+        try {
+            resolvable.startResolutionForResult(Objects.requireNonNull(getCurrentActivity()), CHECK_SETTINGS_REQUEST_CODE);
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_RESOLUTION_STARTED);
+        } catch (IntentSender.SendIntentException | NullPointerException e) {
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_RESOLUTION_FAILED);
+            for (PositionCall call : takePositionCallsAwaitingSettings()) {
+                call.mFailureCallback.invoke(LocationError.LOCATION_SETTINGS_FAILED);
+            }
+        }
+    }
+
+    private List<PositionCall> takePositionCallsAwaitingSettings() {
+        synchronized (mPositionCallsAwaitingSettings) {
+            List<PositionCall> positionCalls = new ArrayList<>(mPositionCallsAwaitingSettings);
+            mPositionCallsAwaitingSettings.clear();
+            return positionCalls;
+        }
+    }
+
+    /**
+     * Locations are emitted as {@value #WATCH_POSITION_EVENT_NAME} events, or for batched watches
+     * as one {@value #WATCH_POSITION_BATCH_EVENT_NAME} event per batch. Failures, invalid options
+     * among them, are emitted as {@value #WATCH_POSITION_ERROR_EVENT_NAME} events. All carry the
+     * watch id chosen by JS.
+     */
+    @ReactMethod
+    public void watchPosition(int watchId, ReadableMap options) {
+        Function<Object, Object> failureCallback = convertCallback(args -> {
+            WritableMap event = Arguments.createMap();
+            event.putInt("watchId", watchId);
+            if (args[0] instanceof WritableMap) {
+                event.putMap("error", (WritableMap) args[0]);
+            } else if (args[0] instanceof Integer) {
+                event.putInt("error", (Integer) args[0]);
+            }
+            emit(WATCH_POSITION_ERROR_EVENT_NAME, event);
+        });
+        WatchPositionRequest request;
+        try {
+            request = mRnMapper.readWatchPositionRequest(options);
+        } catch (IllegalArgumentException e) {
+            // The location request would throw on the bridge thread
+            failureCallback.apply(e);
+            return;
+        }
+        mLocationController.watchPosition(watchId, request,
+                locations -> {
+                    if (request.isBatched()) {
+                        emit(WATCH_POSITION_BATCH_EVENT_NAME, mRnMapper.writeWatchedLocations(watchId, locations));
+                    } else {
+                        for (LatLng location : locations) {
+                            emit(WATCH_POSITION_EVENT_NAME, mRnMapper.writeWatchedLocation(watchId, location));
+                        }
+                    }
+                    return null;
+                },
+                failureCallback);
+    }
+
+    @ReactMethod
+    public void clearWatch(int watchId) {
+        mLocationController.clearWatch(watchId);
+    }
+
+    @ReactMethod
+    public void getLocationDeliveryStats(Promise promise) {
+        promise.resolve(mRnMapper.writeDeliveryStats(mLocationController.getDeliveryStats()));
+    }
+
+    /**
+     * Registration, event delivery and headless start-up metrics of this process, see
+     * {@link GeofenceMetrics}.
+     */
+    @ReactMethod
+    public void getMetrics(Promise promise) {
+        promise.resolve(mRnMapper.writeMetrics(GeofenceServiceLocator.getGeofenceMetrics(),
+                mGeofenceController.getGeofenceCount()));
+    }
+
+    /**
+     * Resolves with the records of {@link GeofenceDiagnostics}, oldest first, including those
+     * spilled to disk by earlier processes.
+     */
+    @ReactMethod
+    public void exportDiagnostics(Promise promise) {
+        mGeofenceDiagnostics.spill();
+        promise.resolve(mRnMapper.writeDiagnostics(mGeofenceDiagnostics.read()));
+    }
+
+    @Override
+    public void invalidate() {
+        // Watches report to this instance's JS context, which is going away
+        mLocationController.clearWatches();
+        super.invalidate();
+    }
+
+    private void emit(String eventName, WritableMap event) {
+        if (reactContext.hasActiveReactInstance()) {
+            reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class).emit(eventName, event);
+        }
     }
 
     @ReactMethod
@@ -140,15 +387,15 @@ public class RNGeolocationModule extends ReactContextBaseJavaModule implements A
                     final ResolvableApiException resolvable = (ResolvableApiException) apiException;
                     // Show the dialog by calling startResolutionForResult(), and check the result in onActivityResult().
                     resolvable.startResolutionForResult(Objects.requireNonNull(getCurrentActivity()), CHECK_SETTINGS_REQUEST_CODE);
-                    GeofenceLog.d("Resolution required!");
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_RESOLUTION_STARTED);
                 } catch (IntentSender.SendIntentException | ClassCastException e) {
-                    GeofenceLog.e(e.getMessage());
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_RESOLUTION_FAILED);
                     failureCallback.invoke(LocationError.LOCATION_SETTINGS_FAILED);
                 }
                 return;
             }
             case LocationSettingsStatusCodes.SETTINGS_CHANGE_UNAVAILABLE: {
-                GeofenceLog.e("Settings change unavailable");
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_CHANGE_UNAVAILABLE);
                 failureCallback.invoke(LocationError.LOCATION_SETTINGS_FAILED);
                 return;
             }
@@ -168,20 +415,17 @@ public class RNGeolocationModule extends ReactContextBaseJavaModule implements A
         if (requestCode == CHECK_SETTINGS_REQUEST_CODE) {
             switch (resultCode) {
                 case Activity.RESULT_OK:
-                    GeofenceLog.d("Improved location accuracy enabled!");
-                    final boolean hasRequestParams = this.currentPositionRequest != null
-                            && this.positionSuccessCallback != null
-                            && this.positionFailureCallback != null;
-                    if (hasRequestParams) {
-                        // All required changes were successfully made.. retry current position request
-                        this.getCurrentPosition(this.currentPositionRequest, this.positionSuccessCallback, this.positionFailureCallback);
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_ACCEPTED);
+                    // All required changes were successfully made.. retry current position requests
+                    for (PositionCall call : takePositionCallsAwaitingSettings()) {
+                        getCurrentPosition(call.mRequest, call.mSuccessCallback, call.mFailureCallback);
                     }
                     break;
                 case Activity.RESULT_CANCELED:
                     // The user was asked to change settings, but chose not to
-                    GeofenceLog.d("Improved location accuracy not enabled!");
-                    if (this.positionFailureCallback != null) {
-                        this.positionFailureCallback.invoke(LocationError.LOCATION_SETTINGS_FAILED);
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.SETTINGS_DECLINED);
+                    for (PositionCall call : takePositionCallsAwaitingSettings()) {
+                        call.mFailureCallback.invoke(LocationError.LOCATION_SETTINGS_FAILED);
                     }
                     break;
                 default:
@@ -194,4 +438,16 @@ public class RNGeolocationModule extends ReactContextBaseJavaModule implements A
     public void onNewIntent(Intent intent) {
 
     }
+
+    private static class PositionCall {
+        private final ReadableMap mRequest;
+        private final Callback mSuccessCallback;
+        private final Callback mFailureCallback;
+
+        PositionCall(ReadableMap request, Callback successCallback, Callback failureCallback) {
+            mRequest = request;
+            mSuccessCallback = successCallback;
+            mFailureCallback = failureCallback;
+        }
+    }
 }
@@ -1,17 +1,25 @@
 package co.uk.hive.reactnativegeolocation;
 
-import android.os.Bundle;
-import android.os.PersistableBundle;
-
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
+import com.google.android.gms.location.Priority;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceDiagnostics;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceEvent;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceMetrics;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceRegistrationState;
 import co.uk.hive.reactnativegeolocation.location.CurrentPositionRequest;
+import co.uk.hive.reactnativegeolocation.location.DesiredAccuracy;
 import co.uk.hive.reactnativegeolocation.location.LatLng;
+import co.uk.hive.reactnativegeolocation.location.LocationDeliveryStats;
+import co.uk.hive.reactnativegeolocation.location.WatchPositionRequest;
 
 public class RNMapper {
     Geofence readGeofence(ReadableMap map) {
@@ -26,6 +34,73 @@ public class RNMapper {
                 readInt(map,"loiteringDelay", 0));
     }
 
+    /**
+     * Reads geofences passed column-wise: {@code identifiers}, {@code latitudes},
+     * {@code longitudes} and {@code radii}, plus optional {@code flags} packing the
+     * {@code Geofence.FLAG_*} bits and {@code loiteringDelays}. Each column crosses the bridge in a
+     * single call, where maps cost several calls per geofence.
+     *
+     * @throws IllegalArgumentException if a column is missing, the lengths differ or a value is
+     *                                  null or of the wrong type
+     */
+    List<Geofence> readGeofenceColumns(ReadableMap columns) {
+        List<Object> ids = readColumn(columns, "identifiers", -1);
+        List<Object> latitudes = readColumn(columns, "latitudes", ids.size());
+        List<Object> longitudes = readColumn(columns, "longitudes", ids.size());
+        List<Object> radii = readColumn(columns, "radii", ids.size());
+        List<Object> flags = columns.hasKey("flags") ? readColumn(columns, "flags", ids.size()) : null;
+        List<Object> loiteringDelays = columns.hasKey("loiteringDelays")
+                ? readColumn(columns, "loiteringDelays", ids.size()) : null;
+
+        List<Geofence> geofences = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            int geofenceFlags = flags != null
+                    ? readColumnNumber(flags, "flags", i).intValue()
+                    : Geofence.FLAG_NOTIFY_ON_ENTER | Geofence.FLAG_NOTIFY_ON_EXIT;
+            geofences.add(new Geofence(
+                    readColumnString(ids, "identifiers", i),
+                    readColumnNumber(radii, "radii", i).intValue(),
+                    readColumnNumber(latitudes, "latitudes", i).doubleValue(),
+                    readColumnNumber(longitudes, "longitudes", i).doubleValue(),
+                    (geofenceFlags & Geofence.FLAG_NOTIFY_ON_ENTER) != 0,
+                    (geofenceFlags & Geofence.FLAG_NOTIFY_ON_EXIT) != 0,
+                    (geofenceFlags & Geofence.FLAG_NOTIFY_ON_DWELL) != 0,
+                    loiteringDelays != null ? readColumnNumber(loiteringDelays, "loiteringDelays", i).intValue() : 0));
+        }
+        return geofences;
+    }
+
+    private static List<Object> readColumn(ReadableMap columns, String key, int expectedSize) {
+        ReadableArray column = columns.hasKey(key) ? columns.getArray(key) : null;
+        if (column == null) {
+            throw new IllegalArgumentException("Missing column " + key);
+        }
+        List<Object> values = column.toArrayList();
+        if (expectedSize >= 0 && values.size() != expectedSize) {
+            throw new IllegalArgumentException("Column " + key + " has " + values.size()
+                    + " values, expected " + expectedSize);
+        }
+        return values;
+    }
+
+    private static Number readColumnNumber(List<Object> column, String key, int index) {
+        Object value = column.get(index);
+        if (!(value instanceof Number)) {
+            throw new IllegalArgumentException("Column " + key + " has " + value + " at index " + index
+                    + ", expected a number");
+        }
+        return (Number) value;
+    }
+
+    private static String readColumnString(List<Object> column, String key, int index) {
+        Object value = column.get(index);
+        if (!(value instanceof String)) {
+            throw new IllegalArgumentException("Column " + key + " has " + value + " at index " + index
+                    + ", expected a string");
+        }
+        return (String) value;
+    }
+
     WritableMap writeLocation(LatLng location) {
         WritableMap coords = Arguments.createMap();
         coords.putDouble("latitude", location.getLatitude());
@@ -35,9 +110,150 @@ public class RNMapper {
         return result;
     }
 
+    WritableMap writeRegistrationState(GeofenceRegistrationState state) {
+        WritableMap result = Arguments.createMap();
+        result.putString("status", state.getStatus().name());
+        result.putInt("requestedCount", state.getRequestedCount());
+        result.putInt("registeredCount", state.getRegisteredCount());
+        result.putInt("failedCount", state.getFailedCount());
+        result.putInt("retryCount", state.getRetryCount());
+        if (state.getLastErrorCode() != 0) {
+            result.putInt("lastErrorCode", state.getLastErrorCode());
+            result.putString("lastError", state.getLastError());
+        }
+        result.putDouble("updatedAt", state.getUpdatedAt());
+        return result;
+    }
+
     CurrentPositionRequest readPositionRequest(ReadableMap readableMap) {
         final int timeout = readInt(readableMap, "timeout", CurrentPositionRequest.DEFAULT_TIMEOUT);
-        return new CurrentPositionRequest(timeout);
+        final long maximumAge = (long) readDouble(readableMap, "maximumAge", CurrentPositionRequest.DEFAULT_MAXIMUM_AGE);
+        final float minAccuracy = (float) readDouble(readableMap, "minAccuracy", CurrentPositionRequest.DEFAULT_MIN_ACCURACY);
+        // priority and granularity override the tier picked by desiredAccuracy
+        final DesiredAccuracy desiredAccuracy = DesiredAccuracy.fromName(readString(readableMap, "desiredAccuracy", null));
+        final int priority = readInt(readableMap, "priority", desiredAccuracy.getPriority());
+        final int granularity = readInt(readableMap, "granularity", desiredAccuracy.getGranularity());
+        return new CurrentPositionRequest(timeout, maximumAge, minAccuracy, priority, granularity);
+    }
+
+    /**
+     * @throws IllegalArgumentException for a negative interval, distance filter or update delay, a
+     *                                  fastest interval longer than the interval, or an unknown
+     *                                  priority, which the location request would reject
+     */
+    WatchPositionRequest readWatchPositionRequest(ReadableMap readableMap) {
+        final long interval = (long) readNonNegative(readableMap, "interval", WatchPositionRequest.DEFAULT_INTERVAL);
+        final long fastestInterval = (long) readNonNegative(readableMap, "fastestInterval",
+                Math.min(interval, WatchPositionRequest.DEFAULT_FASTEST_INTERVAL));
+        final float distanceFilter = (float) readNonNegative(readableMap, "distanceFilter", WatchPositionRequest.DEFAULT_DISTANCE_FILTER);
+        final int priority = readInt(readableMap, "priority", WatchPositionRequest.DEFAULT_PRIORITY);
+        final long maxUpdateDelay = (long) readNonNegative(readableMap, "maxUpdateDelay", WatchPositionRequest.DEFAULT_MAX_UPDATE_DELAY);
+        if (fastestInterval > interval) {
+            throw new IllegalArgumentException("fastestInterval " + fastestInterval
+                    + " is longer than interval " + interval);
+        }
+        if (!isPriority(priority)) {
+            throw new IllegalArgumentException("Unknown priority " + priority);
+        }
+        return new WatchPositionRequest(interval, fastestInterval, distanceFilter, priority, maxUpdateDelay);
+    }
+
+    private static double readNonNegative(ReadableMap map, String key, double defaultValue) {
+        double value = readDouble(map, key, defaultValue);
+        // Also rejects NaN
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException(key + " is " + value + ", expected a non-negative number");
+        }
+        return value;
+    }
+
+    private static boolean isPriority(int priority) {
+        switch (priority) {
+            case Priority.PRIORITY_HIGH_ACCURACY:
+            case Priority.PRIORITY_BALANCED_POWER_ACCURACY:
+            case Priority.PRIORITY_LOW_POWER:
+            case Priority.PRIORITY_PASSIVE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    WritableMap writeWatchedLocation(int watchId, LatLng location) {
+        WritableMap result = writeLocation(location);
+        result.putInt("watchId", watchId);
+        return result;
+    }
+
+    WritableMap writeWatchedLocations(int watchId, List<LatLng> locations) {
+        WritableArray array = Arguments.createArray();
+        for (LatLng location : locations) {
+            array.pushMap(writeLocation(location));
+        }
+        WritableMap result = Arguments.createMap();
+        result.putInt("watchId", watchId);
+        result.putArray("locations", array);
+        return result;
+    }
+
+    WritableMap writeDeliveryStats(LocationDeliveryStats stats) {
+        WritableMap result = Arguments.createMap();
+        result.putDouble("deliveries", stats.getDeliveries());
+        result.putDouble("bridgeCalls", stats.getBridgeCalls());
+        result.putDouble("locationsReceived", stats.getLocationsReceived());
+        result.putDouble("locationsReported", stats.getLocationsReported());
+        result.putInt("largestBatch", stats.getLargestBatch());
+        result.putDouble("averageBatch", stats.getAverageBatch());
+        return result;
+    }
+
+    WritableMap writeMetrics(GeofenceMetrics metrics, int geofenceCount) {
+        WritableMap registration = writeLatency(metrics.getRegistrationLatency());
+        registration.putDouble("failures", metrics.getRegistrationFailures());
+        WritableMap removal = writeLatency(metrics.getRemovalLatency());
+        removal.putDouble("failures", metrics.getRemovalFailures());
+        WritableMap delivery = writeLatency(metrics.getDeliveryLag());
+        delivery.putDouble("emitted", metrics.getEventsEmitted());
+        delivery.putDouble("headless", metrics.getEventsToHeadless());
+        WritableMap headlessStart = writeLatency(metrics.getHeadlessStartLatency());
+        headlessStart.putDouble("warmStarts", metrics.getHeadlessWarmStarts());
+        headlessStart.putDouble("jobsStarted", metrics.getHeadlessJobsStarted());
+        headlessStart.putDouble("eventsDelivered", metrics.getHeadlessEventsDelivered());
+
+        WritableMap result = Arguments.createMap();
+        result.putInt("geofenceCount", geofenceCount);
+        result.putMap("registration", registration);
+        result.putMap("removal", removal);
+        result.putMap("delivery", delivery);
+        result.putMap("headlessStart", headlessStart);
+        return result;
+    }
+
+    WritableArray writeDiagnostics(List<GeofenceDiagnostics.Record> records) {
+        WritableArray result = Arguments.createArray();
+        for (GeofenceDiagnostics.Record record : records) {
+            WritableMap map = Arguments.createMap();
+            map.putDouble("sequence", record.getSequence());
+            map.putDouble("timestamp", record.getTimestamp());
+            map.putDouble("nanoTime", record.getNanoTime());
+            map.putString("event", record.getEvent().name());
+            if (record.getId() != null) {
+                map.putString("identifier", record.getId());
+            }
+            map.putInt("status", record.getStatus());
+            result.pushMap(map);
+        }
+        return result;
+    }
+
+    private static WritableMap writeLatency(LatencyHistogram histogram) {
+        WritableMap result = Arguments.createMap();
+        result.putDouble("count", histogram.getCount());
+        result.putDouble("meanMillis", histogram.getMeanMillis());
+        result.putDouble("p50Millis", histogram.getPercentileMillis(50));
+        result.putDouble("p95Millis", histogram.getPercentileMillis(95));
+        result.putDouble("maxMillis", histogram.getMaxMillis());
+        return result;
     }
 
     private static String readString(ReadableMap map, String key, String defaultValue) {
@@ -56,45 +272,26 @@ public class RNMapper {
         return map.hasKey(key) ? map.getBoolean(key) : defaultValue;
     }
 
-    public WritableMap writeGeofenceTaskParams(String name, Bundle params) {
-        Bundle args = new Bundle();
-        args.putString("name", name);
-        args.putBundle("params", params);
-        return fromBundle(args);
-    }
-
-    public WritableMap fromBundle(Bundle bundle) {
-        WritableMap map = Arguments.createMap();
-
-        for (String key : bundle.keySet()) {
-            Object value = bundle.get(key);
-            if (value == null) {
-                map.putNull(key);
-            } else if (value.getClass().isArray()) {
-                map.putArray(key, Arguments.fromArray(value));
-            } else if (value instanceof String) {
-                map.putString(key, (String) value);
-            } else if (value instanceof Number) {
-                if (value instanceof Integer) {
-                    map.putInt(key, (Integer) value);
-                } else {
-                    map.putDouble(key, ((Number) value).doubleValue());
-                }
-            } else if (value instanceof Boolean) {
-                map.putBoolean(key, (Boolean) value);
-            } else if (value instanceof Bundle) {
-                map.putMap(key, fromBundle((Bundle) value));
-            } else if (value instanceof PersistableBundle) {
-                map.putMap(key, fromBundle(new Bundle((PersistableBundle) value)));
-            } else {
-                if (!(value instanceof List)) {
-                    throw new IllegalArgumentException("Could not convert " + value.getClass());
-                }
-
-                map.putArray(key, Arguments.fromList((List) value));
-            }
+    public WritableMap writeGeofenceEvent(GeofenceEvent event) {
+        WritableMap result = Arguments.createMap();
+        result.putString("action", event.getAction());
+        result.putString("identifier", event.getIdentifier());
+        result.putDouble("timestamp", event.getTimestamp());
+        result.putMap("location", writeLocation(event.getLocation()));
+        if (event.hasSequence()) {
+            result.putDouble("sequence", event.getSequence());
         }
+        return result;
+    }
 
-        return map;
+    public WritableMap writeGeofenceTaskParams(String name, List<GeofenceEvent> events) {
+        WritableArray params = Arguments.createArray();
+        for (GeofenceEvent event : events) {
+            params.pushMap(writeGeofenceEvent(event));
+        }
+        WritableMap args = Arguments.createMap();
+        args.putString("name", name);
+        args.putArray("params", params);
+        return args;
     }
 }
@@ -0,0 +1,131 @@
+package co.uk.hive.reactnativegeolocation;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Append-only file of newline-terminated text records.
+ *
+ * A record torn by a crash, and anything after the first record the reader rejects, is cut off on
+ * replay so that later appends follow the last good record. Rewrites go through a temporary file
+ * renamed over the log, so a crash leaves either the old or the new content in place.
+ *
+ * Appends outlive the process once written, but unless synced, a power loss can still drop the
+ * last of them.
+ */
+public class RecordLog {
+
+    public static final char END_OF_RECORD = '\n';
+
+    private static final String TAG = "RecordLog";
+
+    private final File mFile;
+    private long mBytesWritten;
+
+    public interface RecordReader {
+        /**
+         * @return false if the record cannot be read
+         */
+        boolean read(String record);
+    }
+
+    public RecordLog(File file) {
+        mFile = file;
+    }
+
+    public boolean exists() {
+        return mFile.exists();
+    }
+
+    /**
+     * @return the number of records read, or -1 if the file could not be read
+     */
+    public int replay(RecordReader reader) {
+        if (!mFile.exists()) {
+            return 0;
+        }
+
+        int recordCount = 0;
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            byte[] data = new byte[(int) file.length()];
+            file.readFully(data);
+
+            int start = 0;
+            for (int end = 0; end < data.length; end++) {
+                if (data[end] != END_OF_RECORD) {
+                    continue;
+                }
+                if (!reader.read(new String(data, start, end - start, StandardCharsets.UTF_8))) {
+                    break;
+                }
+                recordCount++;
+                start = end + 1;
+            }
+
+            if (start < data.length) {
+                Log.w(TAG, "Dropping " + (data.length - start) + " unreadable byte(s) from " + mFile.getName());
+                file.setLength(start);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to replay " + mFile.getName(), e);
+            return -1;
+        }
+        return recordCount;
+    }
+
+    /**
+     * @param records one or more records, each terminated by {@link #END_OF_RECORD}
+     */
+    public boolean append(CharSequence records) {
+        return append(records, false);
+    }
+
+    /**
+     * @param records one or more records, each terminated by {@link #END_OF_RECORD}
+     * @param sync    whether to return only once the records are on the storage device
+     */
+    public boolean append(CharSequence records, boolean sync) {
+        byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(mFile, true)) {
+            out.write(data);
+            if (sync) {
+                out.getFD().sync();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to append to " + mFile.getName(), e);
+            return false;
+        }
+        mBytesWritten += data.length;
+        return true;
+    }
+
+    /**
+     * Replaces the whole file with the given records.
+     */
+    public boolean rewrite(CharSequence records) {
+        byte[] data = records.toString().getBytes(StandardCharsets.UTF_8);
+        File temporary = new File(mFile.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temporary, false)) {
+            out.write(data);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write " + temporary.getName(), e);
+            return false;
+        }
+        if (!temporary.renameTo(mFile)) {
+            Log.e(TAG, "Failed to replace " + mFile.getName());
+            return false;
+        }
+        mBytesWritten += data.length;
+        return true;
+    }
+
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+}
@@ -19,13 +19,13 @@ class DataStorageGeofenceActivator implements GeofenceActivator {
     }
 
     @Override
-    public void setGeofencesActivated(boolean activated) {
+    public synchronized void setGeofencesActivated(boolean activated) {
         mActivated = activated;
         save();
     }
 
     @Override
-    public boolean areGeofencesActivated() {
+    public synchronized boolean areGeofencesActivated() {
         return mActivated;
     }
 
@@ -0,0 +1,41 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.DataStorage;
+
+class DataStorageGeofenceFingerprintStore implements GeofenceFingerprintStore {
+
+    public static final String KEY_FINGERPRINT = "key_registration_fingerprint";
+
+    private long mFingerprint = NO_FINGERPRINT;
+
+    private final DataStorage mDataStorage;
+    private final DataMarshaller mDataMarshaller;
+
+    public DataStorageGeofenceFingerprintStore(DataStorage dataStorage, DataMarshaller dataMarshaller) {
+        mDataStorage = dataStorage;
+        mDataMarshaller = dataMarshaller;
+        load();
+    }
+
+    @Override
+    public synchronized long getFingerprint() {
+        return mFingerprint;
+    }
+
+    @Override
+    public synchronized void setFingerprint(long fingerprint) {
+        if (mFingerprint != fingerprint) {
+            mFingerprint = fingerprint;
+            save();
+        }
+    }
+
+    private void save() {
+        mDataStorage.store(KEY_FINGERPRINT, mDataMarshaller.marshal(mFingerprint));
+    }
+
+    private void load() {
+        mFingerprint = mDataMarshaller.unmarshal(mDataStorage.load(KEY_FINGERPRINT), Long.class, mFingerprint);
+    }
+}
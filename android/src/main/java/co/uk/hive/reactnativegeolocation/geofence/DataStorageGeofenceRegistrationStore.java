@@ -0,0 +1,39 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.DataStorage;
+
+class DataStorageGeofenceRegistrationStore implements GeofenceRegistrationStore {
+
+    public static final String KEY_REGISTRATION = "key_registration";
+
+    private GeofenceRegistrationState mState = new GeofenceRegistrationState();
+
+    private final DataStorage mDataStorage;
+    private final DataMarshaller mDataMarshaller;
+
+    public DataStorageGeofenceRegistrationStore(DataStorage dataStorage, DataMarshaller dataMarshaller) {
+        mDataStorage = dataStorage;
+        mDataMarshaller = dataMarshaller;
+        load();
+    }
+
+    @Override
+    public synchronized GeofenceRegistrationState getRegistrationState() {
+        return mState;
+    }
+
+    @Override
+    public synchronized void setRegistrationState(GeofenceRegistrationState state) {
+        mState = state;
+        save();
+    }
+
+    private void save() {
+        mDataStorage.store(KEY_REGISTRATION, mDataMarshaller.marshal(mState));
+    }
+
+    private void load() {
+        mState = mDataMarshaller.unmarshal(mDataStorage.load(KEY_REGISTRATION), GeofenceRegistrationState.class, mState);
+    }
+}
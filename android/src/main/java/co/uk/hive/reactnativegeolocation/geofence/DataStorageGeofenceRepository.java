@@ -1,58 +1,239 @@
 package co.uk.hive.reactnativegeolocation.geofence;
 
+import android.util.Log;
+
 import co.uk.hive.reactnativegeolocation.DataMarshaller;
 import co.uk.hive.reactnativegeolocation.DataStorage;
 import com.annimon.stream.Optional;
-import com.annimon.stream.Stream;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Keeps geofences in a memory-mapped {@link GeofenceSnapshot} plus a {@link GeofenceJournal} of
+ * the changes since. A lookup by id, which is all a geofence broadcast needs, reads just that
+ * geofence; the catalog is only decoded once something needs all of it. Adding or removing some
+ * geofences does not need all of it either, only the journal and the changes kept in memory.
+ */
 public class DataStorageGeofenceRepository implements GeofenceRepository {
 
     public static final String KEY_GEOFENCES = "key_geofences";
 
+    private static final String TAG = "GeofenceRepository";
+
     private final DataStorage mDataStorage;
     private final DataMarshaller mDataMarshaller;
+    private final GeofenceJournal mGeofenceJournal;
+    private final File mSnapshotFile;
 
-    private List<Geofence> mGeofences = new LinkedList<>();
+    // Until the catalog is decoded
+    private GeofenceSnapshot mSnapshot;
+    private GeofenceJournal.Changes mChanges;
 
-    public DataStorageGeofenceRepository(DataStorage dataStorage, DataMarshaller dataMarshaller) {
+    // Keyed by geofence id, in insertion order
+    private final Map<String, Geofence> mGeofences = new LinkedHashMap<>();
+    private final GeofenceSpatialIndex mSpatialIndex = new GeofenceSpatialIndex();
+    private List<Geofence> mGeofenceList;
+    private boolean mDecoded;
+    private long mGeneration;
+
+    public DataStorageGeofenceRepository(DataStorage dataStorage, DataMarshaller dataMarshaller,
+                                         GeofenceJournal geofenceJournal, File snapshotFile) {
         mDataStorage = dataStorage;
         mDataMarshaller = dataMarshaller;
+        mGeofenceJournal = geofenceJournal;
+        mSnapshotFile = snapshotFile;
         load();
     }
 
     @Override
-    public List<Geofence> getGeofences() {
-        return mGeofences;
+    public synchronized List<Geofence> getGeofences() {
+        decode();
+        if (mGeofenceList == null) {
+            mGeofenceList = Collections.unmodifiableList(new ArrayList<>(mGeofences.values()));
+        }
+        return mGeofenceList;
+    }
+
+    @Override
+    public synchronized Optional<Geofence> getGeofenceById(String id) {
+        if (!mDecoded) {
+            return Optional.ofNullable(mChanges.find(id, mSnapshot));
+        }
+        return Optional.ofNullable(mGeofences.get(id));
+    }
+
+    @Override
+    public synchronized int getGeofenceCount() {
+        if (!mDecoded) {
+            return mChanges.size(mSnapshot);
+        }
+        return mGeofences.size();
     }
 
     @Override
-    public Optional<Geofence> getGeofenceById(String id) {
-        return Stream.of(mGeofences).filter(geofence -> geofence.getId().equals(id)).findFirst();
+    public synchronized void addGeofences(List<Geofence> geofences) {
+        for (Geofence geofence : geofences) {
+            if (mDecoded) {
+                put(geofence);
+            } else {
+                mChanges.put(geofence);
+            }
+        }
+        mGeofenceJournal.appendGeofences(geofences);
+        compactIfNeeded();
     }
 
     @Override
-    public void addGeofences(List<Geofence> geofences) {
-        Stream.of(geofences)
-                .filter(geofence -> !mGeofences.contains(geofence))
-                .forEach(geofence -> mGeofences.add(geofence));
-        save();
+    public synchronized void removeGeofences(Collection<String> ids) {
+        for (String id : ids) {
+            if (!mDecoded) {
+                mChanges.remove(id);
+                continue;
+            }
+            Geofence removed = mGeofences.remove(id);
+            if (removed != null) {
+                mSpatialIndex.remove(removed);
+                mGeofenceList = null;
+            }
+        }
+        mGeofenceJournal.appendRemovals(ids);
+        compactIfNeeded();
     }
 
     @Override
-    public void removeAllGeofences() {
-        mGeofences = new LinkedList<>();
-        save();
+    public synchronized void removeAllGeofences() {
+        // Nothing stored is needed to clear it, so the catalog is dropped rather than decoded
+        mSnapshot = null;
+        mChanges = null;
+        mGeofences.clear();
+        mSpatialIndex.clear();
+        mGeofenceList = null;
+        mDecoded = true;
+        mGeofenceJournal.appendClear();
+        writeSnapshot(Collections.emptyList());
     }
 
-    private void save() {
-        String data = mDataMarshaller.marshal(mGeofences);
-        mDataStorage.store(KEY_GEOFENCES, data);
+    @Override
+    public synchronized void replaceGeofences(List<Geofence> geofences) {
+        decode();
+        mGeofences.clear();
+        mSpatialIndex.clear();
+        mGeofenceList = null;
+        for (Geofence geofence : geofences) {
+            put(geofence);
+        }
+        // A snapshot is swapped in whole, so a crash never leaves a half-replaced set behind
+        if (!writeSnapshot(mGeofences.values())) {
+            mGeofenceJournal.appendClear();
+            mGeofenceJournal.appendGeofences(mGeofences.values());
+        }
+    }
+
+    @Override
+    public synchronized List<Geofence> getNearestGeofences(double latitude, double longitude, int count) {
+        decode();
+        return mSpatialIndex.findNearest(latitude, longitude, count);
+    }
+
+    /**
+     * Adds the geofence, replacing a stored geofence with the same id.
+     */
+    private void put(Geofence geofence) {
+        Geofence previous = mGeofences.put(geofence.getId(), geofence);
+        if (previous != null) {
+            mSpatialIndex.remove(previous);
+        }
+        mSpatialIndex.add(geofence);
+        mGeofenceList = null;
+    }
+
+    private void compactIfNeeded() {
+        if (!mGeofenceJournal.shouldCompact(getGeofenceCount())) {
+            return;
+        }
+        if (mDecoded) {
+            writeSnapshot(mGeofences.values());
+        } else {
+            // Compacts once decoded
+            decode();
+        }
+    }
+
+    /**
+     * Writes a snapshot of the next generation and empties the journal, whose changes it holds.
+     */
+    private boolean writeSnapshot(Collection<Geofence> geofences) {
+        long generation = mGeneration + 1;
+        if (!GeofenceSnapshot.write(mSnapshotFile, generation, geofences)) {
+            return false;
+        }
+        mGeneration = generation;
+        mGeofenceJournal.reset(generation);
+        return true;
     }
 
     private void load() {
-        mGeofences = mDataMarshaller.unmarshalList(mDataStorage.load(KEY_GEOFENCES), Geofence.class, mGeofences);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(mSnapshotFile);
+        if (snapshot == null && !mGeofenceJournal.exists()) {
+            migrateFromDataStorage();
+            return;
+        }
+
+        GeofenceJournal.Changes changes = mGeofenceJournal.replay();
+        if (snapshot == null) {
+            // A journal from before snapshots holds the whole catalog
+            if (changes.getGeneration() != GeofenceJournal.NO_GENERATION) {
+                Log.e(TAG, "Snapshot " + changes.getGeneration() + " is missing, keeping only later changes");
+            }
+            mGeneration = changes.getGeneration();
+            decode(changes.applyTo(null));
+            writeSnapshot(mGeofences.values());
+            return;
+        }
+
+        mSnapshot = snapshot;
+        mGeneration = snapshot.getGeneration();
+        if (changes.getGeneration() == mGeneration) {
+            mChanges = changes;
+        } else {
+            // Left over from before the snapshot was written, which already holds these changes
+            mChanges = new GeofenceJournal.Changes();
+            mGeofenceJournal.reset(mGeneration);
+        }
+    }
+
+    private void decode() {
+        if (!mDecoded) {
+            decode(mChanges.applyTo(mSnapshot));
+            mSnapshot = null;
+            mChanges = null;
+            compactIfNeeded();
+        }
+    }
+
+    private void decode(List<Geofence> geofences) {
+        for (Geofence geofence : geofences) {
+            put(geofence);
+        }
+        mDecoded = true;
+    }
+
+    /**
+     * Moves geofences stored by earlier versions as a single JSON string into a snapshot.
+     */
+    private void migrateFromDataStorage() {
+        List<Geofence> geofences = mDataMarshaller.unmarshalList(
+                mDataStorage.load(KEY_GEOFENCES), Geofence.class, new LinkedList<>());
+        decode(geofences);
+        if (writeSnapshot(mGeofences.values()) && !geofences.isEmpty()) {
+            mDataStorage.store(KEY_GEOFENCES, "");
+        }
     }
 }
@@ -0,0 +1,39 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.DataStorage;
+
+class DataStorageGeofenceWindowStore implements GeofenceWindowStore {
+
+    public static final String KEY_WINDOW = "key_window";
+
+    private GeofenceWindowState mState = new GeofenceWindowState();
+
+    private final DataStorage mDataStorage;
+    private final DataMarshaller mDataMarshaller;
+
+    public DataStorageGeofenceWindowStore(DataStorage dataStorage, DataMarshaller dataMarshaller) {
+        mDataStorage = dataStorage;
+        mDataMarshaller = dataMarshaller;
+        load();
+    }
+
+    @Override
+    public synchronized GeofenceWindowState getWindowState() {
+        return mState;
+    }
+
+    @Override
+    public synchronized void setWindowState(GeofenceWindowState state) {
+        mState = state;
+        save();
+    }
+
+    private void save() {
+        mDataStorage.store(KEY_WINDOW, mDataMarshaller.marshal(mState));
+    }
+
+    private void load() {
+        mState = mDataMarshaller.unmarshal(mDataStorage.load(KEY_WINDOW), GeofenceWindowState.class, mState);
+    }
+}
@@ -0,0 +1,42 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.DataStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class DataStorageRegisteredGeofenceStore implements RegisteredGeofenceStore {
+
+    public static final String KEY_REGISTERED_GEOFENCES = "key_registered_geofences";
+
+    private List<Geofence> mGeofences = new ArrayList<>();
+
+    private final DataStorage mDataStorage;
+    private final DataMarshaller mDataMarshaller;
+
+    public DataStorageRegisteredGeofenceStore(DataStorage dataStorage, DataMarshaller dataMarshaller) {
+        mDataStorage = dataStorage;
+        mDataMarshaller = dataMarshaller;
+        load();
+    }
+
+    @Override
+    public synchronized List<Geofence> getRegisteredGeofences() {
+        return mGeofences;
+    }
+
+    @Override
+    public synchronized void setRegisteredGeofences(List<Geofence> geofences) {
+        mGeofences = geofences;
+        save();
+    }
+
+    private void save() {
+        mDataStorage.store(KEY_REGISTERED_GEOFENCES, mDataMarshaller.marshal(mGeofences));
+    }
+
+    private void load() {
+        mGeofences = mDataMarshaller.unmarshalList(mDataStorage.load(KEY_REGISTERED_GEOFENCES), Geofence.class, mGeofences);
+    }
+}
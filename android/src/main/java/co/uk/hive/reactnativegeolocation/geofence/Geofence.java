@@ -2,6 +2,11 @@ package co.uk.hive.reactnativegeolocation.geofence;
 
 @SuppressWarnings("WeakerAccess")
 public class Geofence {
+    // Bits packing the notify flags, as in the snapshot and the columns JS can pass in bulk
+    public static final int FLAG_NOTIFY_ON_ENTER = 1;
+    public static final int FLAG_NOTIFY_ON_EXIT = 1 << 1;
+    public static final int FLAG_NOTIFY_ON_DWELL = 1 << 2;
+
     private final String mId;
     private final int mRadius;
     private final double mLatitude;
@@ -6,42 +6,120 @@ import com.annimon.stream.Optional;
 import com.annimon.stream.Stream;
 import com.annimon.stream.function.Function;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.uk.hive.reactnativegeolocation.LocationChecker;
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+
+import static co.uk.hive.reactnativegeolocation.geofence.GeofenceFingerprintStore.NO_FINGERPRINT;
 
 @SuppressWarnings("WeakerAccess")
 public class GeofenceController {
+    /**
+     * Turning location on fires several broadcasts within milliseconds, so restarts are requested
+     * for this long before one runs.
+     */
+    static final long RESTART_SETTLE_MILLIS = 2000;
+
     private final GeofenceEngine mGeofenceEngine;
     private final GeofenceRepository mGeofenceRepository;
     private final GeofenceActivator mGeofenceActivator;
+    private final GeofenceWindowStore mGeofenceWindowStore;
+    private final RegisteredGeofenceStore mRegisteredGeofenceStore;
+    private final GeofenceWindow mGeofenceWindow;
     private final ReRegistrationScheduler mReRegistrationScheduler;
+    private final GeofenceFingerprintStore mGeofenceFingerprintStore;
+    private final LocationChecker mLocationChecker;
+    private final GeofenceEngine.DelayedExecutor mRestartExecutor;
+    private final GeofenceDiagnostics mGeofenceDiagnostics;
+
+    // Callbacks of the restart requests waiting to settle, guarded by this
+    private final List<Function<? super Object, ? super Object>> mRestartSuccessCallbacks = new ArrayList<>();
+    private final List<Function<? super Object, ? super Object>> mRestartFailureCallbacks = new ArrayList<>();
+    private boolean mRestartForced;
+    private int mLastRestartRequest;
 
     GeofenceController(GeofenceEngine geofenceEngine,
             GeofenceRepository geofenceRepository,
                        GeofenceActivator geofenceActivator,
-                       ReRegistrationScheduler reRegistrationScheduler) {
+                       GeofenceWindowStore geofenceWindowStore,
+                       RegisteredGeofenceStore registeredGeofenceStore,
+                       ReRegistrationScheduler reRegistrationScheduler,
+                       GeofenceFingerprintStore geofenceFingerprintStore,
+                       LocationChecker locationChecker,
+                       GeofenceEngine.DelayedExecutor restartExecutor,
+                       GeofenceDiagnostics geofenceDiagnostics) {
         mGeofenceEngine = geofenceEngine;
         mGeofenceRepository = geofenceRepository;
         mGeofenceActivator = geofenceActivator;
+        mGeofenceWindowStore = geofenceWindowStore;
+        mRegisteredGeofenceStore = registeredGeofenceStore;
+        mGeofenceWindow = new GeofenceWindow(geofenceRepository);
         mReRegistrationScheduler = reRegistrationScheduler;
+        mGeofenceFingerprintStore = geofenceFingerprintStore;
+        mLocationChecker = locationChecker;
+        mRestartExecutor = restartExecutor;
+        mGeofenceDiagnostics = geofenceDiagnostics;
     }
 
     public void start(Function<? super Object, ? super Object> successCallback, Function<? super Object, ? super Object> failureCallback) {
         if (mGeofenceRepository.getGeofences().isEmpty()) {
             Log.w(getClass().getSimpleName(), "Starting geofences with none set, exiting");
+            successCallback.apply(null);
             return;
         }
         mGeofenceActivator.setGeofencesActivated(true);
-        mGeofenceEngine.addGeofences(mGeofenceRepository.getGeofences(), successCallback, failureCallback);
+        long fingerprint = getFingerprint();
+        // Restarts register again unless this registration succeeds
+        invalidateRegistration();
+        GeofenceWindowState windowState = mGeofenceWindowStore.getWindowState();
+        if (windowState.isEnabled()) {
+            mGeofenceEngine.getLastLocation(location -> {
+                // Play Services may have dropped the previous window, so it is registered in full,
+                // while ids that left it are still removed in case it has not
+                Set<String> registeredIds = new HashSet<>(windowState.getRegisteredIds());
+                registerWindow(getWindowCenter(location), registeredIds, registeredIds,
+                        keepFingerprint(fingerprint, successCallback), failureCallback);
+                return null;
+            });
+            return;
+        }
+        List<Geofence> geofences = mGeofenceRepository.getGeofences();
+        // Left over from a window disabled since geofences were last started
+        List<String> staleWindowIds = new ArrayList<>(windowState.getRegisteredIds());
+        staleWindowIds.removeAll(getGeofenceIds());
+        removeThenAdd(staleWindowIds, geofences, result -> {
+            if (!windowState.getRegisteredIds().isEmpty()) {
+                windowState.setRegisteredIds(new ArrayList<>());
+                mGeofenceWindowStore.setWindowState(windowState);
+            }
+            mRegisteredGeofenceStore.setRegisteredGeofences(geofences);
+            mGeofenceFingerprintStore.setFingerprint(fingerprint);
+            return successCallback.apply(result);
+        }, failureCallback);
     }
 
     public void stop(Function<? super Object, ? super Object> successCallback, Function<? super Object, ? super Object> failureCallback) {
         if (mGeofenceRepository.getGeofences().isEmpty()) {
             Log.w(getClass().getSimpleName(), "Stopping geofences with none set, exiting");
+            successCallback.apply(null);
             return;
         }
         mGeofenceActivator.setGeofencesActivated(false);
-        List<String> geofenceIds = getGeofenceIds();
-        if (!geofenceIds.isEmpty()) {
+        invalidateRegistration();
+        mRegisteredGeofenceStore.setRegisteredGeofences(new ArrayList<>());
+        List<String> geofenceIds = getRegisteredGeofenceIds();
+        if (geofenceIds.isEmpty()) {
+            successCallback.apply(null);
+        } else {
             mGeofenceEngine.removeGeofences(geofenceIds, successCallback, failureCallback);
         }
     }
@@ -52,6 +130,444 @@ public class GeofenceController {
         }
     }
 
+    /**
+     * Restarts the geofences once no other request has come for {@link #RESTART_SETTLE_MILLIS},
+     * calling back every request served by that restart. Unless forced, the restart is skipped
+     * while the stored geofences and the enabled location providers match the last successful
+     * registration. Force it when Play Services is known to have dropped the geofences, such as
+     * after a reboot.
+     */
+    public void requestRestart(boolean force,
+                               Function<? super Object, ? super Object> successCallback,
+                               Function<? super Object, ? super Object> failureCallback) {
+        int request;
+        synchronized (this) {
+            mRestartForced |= force;
+            mRestartSuccessCallbacks.add(successCallback);
+            mRestartFailureCallbacks.add(failureCallback);
+            request = ++mLastRestartRequest;
+        }
+        mRestartExecutor.execute(() -> runRequestedRestart(request), RESTART_SETTLE_MILLIS);
+    }
+
+    /**
+     * Makes the next requested restart register the geofences, for when Play Services has dropped
+     * them, as it does while location is off.
+     */
+    public void invalidateRegistration() {
+        mGeofenceFingerprintStore.setFingerprint(NO_FINGERPRINT);
+    }
+
+    private void runRequestedRestart(int request) {
+        List<Function<? super Object, ? super Object>> successCallbacks;
+        List<Function<? super Object, ? super Object>> failureCallbacks;
+        boolean forced;
+        synchronized (this) {
+            if (request != mLastRestartRequest) {
+                // A later request restarts once it has settled
+                return;
+            }
+            successCallbacks = new ArrayList<>(mRestartSuccessCallbacks);
+            failureCallbacks = new ArrayList<>(mRestartFailureCallbacks);
+            forced = mRestartForced;
+            mRestartSuccessCallbacks.clear();
+            mRestartFailureCallbacks.clear();
+            mRestartForced = false;
+        }
+        Function<? super Object, ? super Object> successCallback = result -> {
+            for (Function<? super Object, ? super Object> callback : successCallbacks) {
+                callback.apply(result);
+            }
+            return null;
+        };
+        Function<? super Object, ? super Object> failureCallback = error -> {
+            for (Function<? super Object, ? super Object> callback : failureCallbacks) {
+                callback.apply(error);
+            }
+            return null;
+        };
+
+        try {
+            if (!mGeofenceActivator.areGeofencesActivated() || mGeofenceRepository.getGeofences().isEmpty()) {
+                successCallback.apply(null);
+            } else if (!mLocationChecker.isLocationEnabled()) {
+                // Registering would fail, turning location on requests another restart
+                invalidateRegistration();
+                successCallback.apply(null);
+            } else if (!forced && mGeofenceFingerprintStore.getFingerprint() == getFingerprint()) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_SKIPPED, successCallbacks.size());
+                successCallback.apply(null);
+            } else {
+                start(successCallback, failureCallback);
+            }
+        } catch (RuntimeException e) {
+            // Runs on the geofence thread, which the exception would take down with the requests
+            // left waiting
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.TASK_FAILED, e.getClass().getName());
+            failureCallback.apply(e);
+        }
+    }
+
+    /**
+     * Stores the given geofences in place of all stored ones and, while geofences are started,
+     * registers only the differences from the previously registered set: stale ids are removed and
+     * new or changed geofences added. Unchanged geofences stay registered as they are.
+     */
+    public void replaceGeofences(List<Geofence> geofences,
+                                 Function<? super Object, ? super Object> successCallback,
+                                 Function<? super Object, ? super Object> failureCallback) {
+        List<Geofence> previousGeofences = mGeofenceRepository.getGeofences();
+        Set<String> changedIds = new HashSet<>();
+        for (Geofence geofence : geofences) {
+            Optional<Geofence> previous = mGeofenceRepository.getGeofenceById(geofence.getId());
+            if (previous.isPresent() && !previous.get().equals(geofence)) {
+                changedIds.add(geofence.getId());
+            }
+        }
+        mGeofenceRepository.replaceGeofences(geofences);
+
+        if (!mGeofenceActivator.areGeofencesActivated()) {
+            successCallback.apply(null);
+            return;
+        }
+        long fingerprint = getFingerprint();
+        invalidateRegistration();
+        registerReplacement(previousGeofences, changedIds, keepFingerprint(fingerprint, successCallback),
+                failureCallback);
+    }
+
+    private void registerReplacement(List<Geofence> previousGeofences, Set<String> changedIds,
+                                     Function<? super Object, ? super Object> successCallback,
+                                     Function<? super Object, ? super Object> failureCallback) {
+        if (mGeofenceWindowStore.getWindowState().isEnabled()) {
+            registerWindowChanges(changedIds, successCallback, failureCallback);
+            return;
+        }
+
+        List<Geofence> registered = mGeofenceRepository.getGeofences();
+        Map<String, Geofence> previouslyRegistered = new LinkedHashMap<>();
+        List<Geofence> registeredGeofences = mRegisteredGeofenceStore.getRegisteredGeofences();
+        if (registeredGeofences.isEmpty()) {
+            // Started before the registered set was recorded, when all stored geofences were registered
+            registeredGeofences = previousGeofences;
+        }
+        for (Geofence geofence : registeredGeofences) {
+            previouslyRegistered.put(geofence.getId(), geofence);
+        }
+        List<Geofence> geofencesToAdd = new ArrayList<>();
+        for (Geofence geofence : registered) {
+            // Adding a geofence with a registered id replaces it, so changed ones need no removal
+            if (!geofence.equals(previouslyRegistered.remove(geofence.getId()))) {
+                geofencesToAdd.add(geofence);
+            }
+        }
+        removeThenAdd(new ArrayList<>(previouslyRegistered.keySet()), geofencesToAdd, result -> {
+            mRegisteredGeofenceStore.setRegisteredGeofences(registered);
+            return successCallback.apply(result);
+        }, failureCallback);
+    }
+
+    /**
+     * Stores the given geofences, replacing stored ones with the same ids, and while geofences are
+     * started registers those that are new or changed. Other geofences are neither read in full nor
+     * registered again, unless windowing is enabled and the window has to be worked out anew.
+     */
+    public void upsertGeofences(List<Geofence> geofences,
+                                Function<? super Object, ? super Object> successCallback,
+                                Function<? super Object, ? super Object> failureCallback) {
+        Map<String, Geofence> upserted = new LinkedHashMap<>();
+        for (Geofence geofence : geofences) {
+            upserted.put(geofence.getId(), geofence);
+        }
+        List<Geofence> changed = new ArrayList<>();
+        List<Geofence> replaced = new ArrayList<>();
+        Set<String> changedIds = new HashSet<>();
+        for (Geofence geofence : upserted.values()) {
+            Optional<Geofence> previous = mGeofenceRepository.getGeofenceById(geofence.getId());
+            if (previous.isPresent() && previous.get().equals(geofence)) {
+                continue;
+            }
+            changed.add(geofence);
+            if (previous.isPresent()) {
+                replaced.add(previous.get());
+                changedIds.add(geofence.getId());
+            }
+        }
+        if (changed.isEmpty()) {
+            successCallback.apply(null);
+            return;
+        }
+        int previousCount = mGeofenceRepository.getGeofenceCount();
+        mGeofenceRepository.addGeofences(changed);
+
+        if (!mGeofenceActivator.areGeofencesActivated()) {
+            successCallback.apply(null);
+            return;
+        }
+        long fingerprint = updateFingerprint(previousCount, replaced, changed);
+        invalidateRegistration();
+        Function<? super Object, ? super Object> onRegistered = keepFingerprint(fingerprint, successCallback);
+        if (mGeofenceWindowStore.getWindowState().isEnabled()) {
+            registerWindowChanges(changedIds, onRegistered, failureCallback);
+            return;
+        }
+        // Adding a geofence with a registered id replaces it
+        mGeofenceEngine.addGeofences(changed, result -> {
+            updateRegisteredGeofences(Collections.emptySet(), changed);
+            return onRegistered.apply(result);
+        }, failureCallback);
+    }
+
+    /**
+     * Removes the geofences with the given ids from the stored ones and, while geofences are
+     * started, from Play Services. Ids that are not stored are ignored.
+     */
+    public void removeGeofences(Collection<String> ids,
+                                Function<? super Object, ? super Object> successCallback,
+                                Function<? super Object, ? super Object> failureCallback) {
+        Map<String, Geofence> removed = new LinkedHashMap<>();
+        for (String id : ids) {
+            Optional<Geofence> geofence = mGeofenceRepository.getGeofenceById(id);
+            if (geofence.isPresent()) {
+                removed.put(id, geofence.get());
+            }
+        }
+        if (removed.isEmpty()) {
+            successCallback.apply(null);
+            return;
+        }
+        int previousCount = mGeofenceRepository.getGeofenceCount();
+        mGeofenceRepository.removeGeofences(removed.keySet());
+
+        if (!mGeofenceActivator.areGeofencesActivated()) {
+            successCallback.apply(null);
+            return;
+        }
+        long fingerprint = updateFingerprint(previousCount, new ArrayList<>(removed.values()),
+                Collections.emptyList());
+        invalidateRegistration();
+        Function<? super Object, ? super Object> onRegistered = keepFingerprint(fingerprint, successCallback);
+        if (mGeofenceWindowStore.getWindowState().isEnabled()) {
+            // The window drops the removed geofences and takes in the next nearest
+            registerWindowChanges(Collections.emptySet(), onRegistered, failureCallback);
+            return;
+        }
+        List<String> removedIds = new ArrayList<>(removed.keySet());
+        mGeofenceEngine.removeGeofences(removedIds, result -> {
+            updateRegisteredGeofences(removed.keySet(), Collections.emptyList());
+            return onRegistered.apply(result);
+        }, failureCallback);
+    }
+
+    /**
+     * Applies a change to the registered set, which Play Services caps at 100 geofences.
+     */
+    private void updateRegisteredGeofences(Collection<String> removedIds, List<Geofence> addedGeofences) {
+        List<Geofence> registeredGeofences = mRegisteredGeofenceStore.getRegisteredGeofences();
+        if (registeredGeofences.isEmpty()) {
+            // Started before the registered set was recorded, all stored geofences are still registered
+            return;
+        }
+        Map<String, Geofence> registered = new LinkedHashMap<>();
+        for (Geofence geofence : registeredGeofences) {
+            registered.put(geofence.getId(), geofence);
+        }
+        for (String id : removedIds) {
+            registered.remove(id);
+        }
+        for (Geofence geofence : addedGeofences) {
+            registered.put(geofence.getId(), geofence);
+        }
+        mRegisteredGeofenceStore.setRegisteredGeofences(new ArrayList<>(registered.values()));
+    }
+
+    /**
+     * Moves the geofence window to the given location, registering only the geofences that entered
+     * it and removing the ones that left it. Does nothing when windowing is disabled.
+     */
+    public void moveWindow(double latitude, double longitude,
+                           Function<? super Object, ? super Object> successCallback,
+                           Function<? super Object, ? super Object> failureCallback) {
+        GeofenceWindowState windowState = mGeofenceWindowStore.getWindowState();
+        if (!windowState.isEnabled() || !mGeofenceActivator.areGeofencesActivated()) {
+            successCallback.apply(null);
+            return;
+        }
+        registerWindow(new LatLng(latitude, longitude), windowState.getRegisteredIds(), Collections.emptySet(),
+                successCallback, failureCallback);
+    }
+
+    /**
+     * Limits the registered geofences to the given number nearest to the user, 0 registers all of
+     * them. Takes effect the next time geofences are started.
+     */
+    public void setWindowSize(int size) {
+        GeofenceWindowState windowState = mGeofenceWindowStore.getWindowState();
+        // The registered ids are kept, so that the next start or move unregisters those left out
+        windowState.setSize(Math.max(0, Math.min(size, GeofenceWindow.MAX_SIZE)));
+        mGeofenceWindowStore.setWindowState(windowState);
+    }
+
+    /**
+     * Registers the window around its previous center again, after the stored geofences changed.
+     */
+    private void registerWindowChanges(Set<String> changedIds,
+                                       Function<? super Object, ? super Object> successCallback,
+                                       Function<? super Object, ? super Object> failureCallback) {
+        GeofenceWindowState windowState = mGeofenceWindowStore.getWindowState();
+        if (mGeofenceRepository.getGeofenceCount() == 0) {
+            removeThenAdd(windowState.getRegisteredIds(), Collections.emptyList(), result -> {
+                windowState.setRegisteredIds(new ArrayList<>());
+                mGeofenceWindowStore.setWindowState(windowState);
+                return successCallback.apply(result);
+            }, failureCallback);
+        } else {
+            registerWindow(getWindowCenter(null), windowState.getRegisteredIds(), changedIds,
+                    successCallback, failureCallback);
+        }
+    }
+
+    private void registerWindow(LatLng center, Collection<String> registeredIds, Set<String> changedIds,
+                                Function<? super Object, ? super Object> successCallback,
+                                Function<? super Object, ? super Object> failureCallback) {
+        GeofenceWindowState windowState = mGeofenceWindowStore.getWindowState();
+        GeofenceWindow.Plan plan = mGeofenceWindow.plan(
+                center.getLatitude(), center.getLongitude(), windowState.getSize(), registeredIds, changedIds);
+
+        Function<? super Object, ? super Object> onRegistered = result -> {
+            windowState.setCenter(center);
+            windowState.setRegisteredIds(plan.getWindowIds());
+            mGeofenceWindowStore.setWindowState(windowState);
+            return successCallback.apply(result);
+        };
+        removeThenAdd(plan.getIdsToRemove(), plan.getGeofencesToAdd(), onRegistered, failureCallback);
+    }
+
+    private void removeThenAdd(List<String> idsToRemove, List<Geofence> geofencesToAdd,
+                               Function<? super Object, ? super Object> successCallback,
+                               Function<? super Object, ? super Object> failureCallback) {
+        Function<? super Object, ? super Object> addGeofences = ignored -> {
+            if (geofencesToAdd.isEmpty()) {
+                return successCallback.apply(null);
+            }
+            mGeofenceEngine.addGeofences(geofencesToAdd, successCallback, failureCallback);
+            return null;
+        };
+
+        if (idsToRemove.isEmpty()) {
+            addGeofences.apply(null);
+        } else {
+            mGeofenceEngine.removeGeofences(idsToRemove, addGeofences, failureCallback);
+        }
+    }
+
+    private Function<? super Object, ? super Object> keepFingerprint(
+            long fingerprint, Function<? super Object, ? super Object> successCallback) {
+        return result -> {
+            mGeofenceFingerprintStore.setFingerprint(fingerprint);
+            return successCallback.apply(result);
+        };
+    }
+
+    private long getFingerprint() {
+        return getFingerprint(mGeofenceRepository.getGeofences(), mGeofenceWindowStore.getWindowState().getSize(),
+                mLocationChecker.getEnabledProviders());
+    }
+
+    /**
+     * Works out the fingerprint of the stored geofences after a change from the one kept for the
+     * geofences before it, without reading the unchanged geofences.
+     *
+     * @param removed geofences removed or replaced by the change
+     * @param added   geofences added or replacing others in the change
+     */
+    private long updateFingerprint(int previousCount, List<Geofence> removed, List<Geofence> added) {
+        long fingerprint = mGeofenceFingerprintStore.getFingerprint();
+        if (fingerprint == NO_FINGERPRINT) {
+            return NO_FINGERPRINT;
+        }
+        int windowSize = mGeofenceWindowStore.getWindowState().getSize();
+        int enabledProviders = mLocationChecker.getEnabledProviders();
+        // Kept for other provider states or window sizes, the result matches nothing, as it should
+        fingerprint -= hashSetProperties(previousCount, windowSize, enabledProviders);
+        fingerprint += hashSetProperties(previousCount - removed.size() + added.size(), windowSize, enabledProviders);
+        for (Geofence geofence : removed) {
+            fingerprint -= hash(geofence);
+        }
+        for (Geofence geofence : added) {
+            fingerprint += hash(geofence);
+        }
+        return fingerprint != NO_FINGERPRINT ? fingerprint : 1;
+    }
+
+    /**
+     * @return a hash of everything that decides what a restart registers, never
+     * {@link GeofenceFingerprintStore#NO_FINGERPRINT}
+     */
+    static long getFingerprint(List<Geofence> geofences, int windowSize, int enabledProviders) {
+        // Play Services does not care about order, so the geofences are summed, which also lets a
+        // change to some of them be added and subtracted
+        long fingerprint = hashSetProperties(geofences.size(), windowSize, enabledProviders);
+        for (Geofence geofence : geofences) {
+            fingerprint += hash(geofence);
+        }
+        return fingerprint != NO_FINGERPRINT ? fingerprint : 1;
+    }
+
+    private static long hash(Geofence geofence) {
+        long hash = geofence.getId().hashCode();
+        hash = 31 * hash + Double.doubleToLongBits(geofence.getLatitude());
+        hash = 31 * hash + Double.doubleToLongBits(geofence.getLongitude());
+        hash = 31 * hash + geofence.getRadius();
+        hash = 31 * hash + geofence.getLoiteringDelay();
+        hash = 31 * hash + (geofence.isNotifyOnEnter() ? Geofence.FLAG_NOTIFY_ON_ENTER : 0)
+                + (geofence.isNotifyOnExit() ? Geofence.FLAG_NOTIFY_ON_EXIT : 0)
+                + (geofence.isNotifyOnDwell() ? Geofence.FLAG_NOTIFY_ON_DWELL : 0);
+        return mix(hash);
+    }
+
+    private static long hashSetProperties(int count, int windowSize, int enabledProviders) {
+        return mix(((long) windowSize << 8 | enabledProviders) << 32 | (count & 0xFFFFFFFFL));
+    }
+
+    // The finalizer of MurmurHash3, so that similar geofences do not cancel out in the sum
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private LatLng getWindowCenter(LatLng lastLocation) {
+        if (lastLocation != null) {
+            return lastLocation;
+        }
+        LatLng previousCenter = mGeofenceWindowStore.getWindowState().getCenter();
+        if (previousCenter != null) {
+            return previousCenter;
+        }
+        Geofence first = mGeofenceRepository.getGeofences().get(0);
+        return new LatLng(first.getLatitude(), first.getLongitude());
+    }
+
+    private List<String> getRegisteredGeofenceIds() {
+        GeofenceWindowState windowState = mGeofenceWindowStore.getWindowState();
+        List<String> registeredIds = windowState.getRegisteredIds();
+        if (!registeredIds.isEmpty()) {
+            windowState.setRegisteredIds(new ArrayList<>());
+            mGeofenceWindowStore.setWindowState(windowState);
+        }
+        if (windowState.isEnabled()) {
+            return registeredIds;
+        }
+        // Ids of a window disabled since geofences were last started may still be registered
+        Set<String> geofenceIds = new LinkedHashSet<>(getGeofenceIds());
+        geofenceIds.addAll(registeredIds);
+        return new ArrayList<>(geofenceIds);
+    }
+
     private List<String> getGeofenceIds() {
         return Stream.of(mGeofenceRepository.getGeofences())
                 .map(Geofence::getId)
@@ -66,10 +582,18 @@ public class GeofenceController {
         mGeofenceRepository.removeAllGeofences();
     }
 
+    public GeofenceRegistrationState getRegistrationState() {
+        return mGeofenceEngine.getRegistrationState();
+    }
+
     public Optional<Geofence> getGeofenceById(String id) {
         return mGeofenceRepository.getGeofenceById(id);
     }
 
+    public int getGeofenceCount() {
+        return mGeofenceRepository.getGeofenceCount();
+    }
+
     public void setupReregistration() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             mReRegistrationScheduler.scheduleReRegistration();
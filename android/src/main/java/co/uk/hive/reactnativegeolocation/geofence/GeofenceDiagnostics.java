@@ -0,0 +1,304 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size in-memory log of what the geofencing code did, kept in release builds.
+ *
+ * Each record is three longs in a preallocated ring: a header with the sequence number and
+ * {@link Event}, a {@link System#nanoTime()} timestamp, and the geofence id handle with a status.
+ * Writing one takes an atomic increment, one clock read and a few ordered stores, and allocates
+ * nothing. Wall clock times are worked out from the monotonic clock when the log is read. The id
+ * handle is the id's hash, resolved back to the id through a table of recently seen ids when the
+ * log is read, so ids that collide in the table may come out as their hash.
+ *
+ * With a spill file, {@link #spill()} appends the records not yet spilled to it, starting another
+ * file once it reaches {@link #MAX_SPILL_FILE_BYTES} and keeping the previous one, so that the log
+ * outlives the process.
+ */
+public class GeofenceDiagnostics {
+
+    public static final String FILE_NAME = "connected-home_react-native-geolocation_diagnostics.log";
+    public static final int NO_STATUS = 0;
+
+    // A power of two
+    static final int CAPACITY = 1024;
+    static final long MAX_SPILL_FILE_BYTES = 64 * 1024;
+
+    private static final String TAG = "GeofenceDiagnostics";
+    private static final String PREVIOUS_FILE_SUFFIX = ".1";
+    private static final int RECORD_LONGS = 3;
+    private static final int ID_TABLE_SIZE = 1024;
+    private static final int SEQUENCE_SHIFT = 16;
+    private static final long HAS_ID = 1 << 15;
+    private static final long EVENT_MASK = HAS_ID - 1;
+
+    /**
+     * What a record means, and what its status holds. Spilled records store the ordinal, so new
+     * events go at the end.
+     */
+    public enum Event {
+        /** Status: number of geofences */
+        REGISTRATION_STARTED,
+        /** Status: number of geofences in the chunk */
+        CHUNK_REGISTERED,
+        /** Status: Play Services status code */
+        REQUEST_RETRIED,
+        /** Status: Play Services status code */
+        REQUEST_FAILED,
+        /** Status: number of geofences registered */
+        REGISTRATION_FINISHED,
+        /** Status: number of ids */
+        REMOVAL_FINISHED,
+        /** Status: transition type */
+        TRANSITION_RECEIVED,
+        UNKNOWN_GEOFENCE,
+        /** Status: Play Services status code */
+        GEOFENCING_ERROR,
+        EVENT_EMITTED,
+        EVENT_EMIT_FAILED,
+        EVENT_TO_HEADLESS,
+        EVENT_STORE_FAILED,
+        /** Status: number of events */
+        HEADLESS_TASK_STARTED,
+        WINDOW_MOVE_FAILED,
+        /** Id: the broadcast that started it, if any */
+        REREGISTRATION_STARTED,
+        REREGISTRATION_FINISHED,
+        REREGISTRATION_FAILED,
+        PERMISSION_MISSING,
+        SETTINGS_RESOLUTION_STARTED,
+        SETTINGS_RESOLUTION_FAILED,
+        SETTINGS_CHANGE_UNAVAILABLE,
+        SETTINGS_ACCEPTED,
+        SETTINGS_DECLINED,
+        /** Status: number of restart requests it served */
+        REREGISTRATION_SKIPPED,
+        /** Id: the exception type */
+        TASK_FAILED,
+    }
+
+    private static final Event[] EVENTS = Event.values();
+
+    private final AtomicLongArray mRecords = new AtomicLongArray(CAPACITY * RECORD_LONGS);
+    private final String[] mIds = new String[ID_TABLE_SIZE];
+    private final AtomicLong mNextSequence = new AtomicLong();
+    private final File mSpillFile;
+    private final long mStartMillis = System.currentTimeMillis();
+    private final long mStartNanos = System.nanoTime();
+
+    // Guarded by this
+    private long mSpilledSequence;
+
+    /**
+     * @param spillFile where {@link #spill()} writes, or null to keep records in memory only
+     */
+    public GeofenceDiagnostics(File spillFile) {
+        mSpillFile = spillFile;
+    }
+
+    public void record(Event event) {
+        record(event, null, NO_STATUS);
+    }
+
+    public void record(Event event, int status) {
+        record(event, null, status);
+    }
+
+    public void record(Event event, String id) {
+        record(event, id, NO_STATUS);
+    }
+
+    public void record(Event event, String id, int status) {
+        long sequence = mNextSequence.getAndIncrement();
+        int slot = (int) (sequence & (CAPACITY - 1)) * RECORD_LONGS;
+        long header = (sequence + 1) << SEQUENCE_SHIFT | event.ordinal();
+        int handle = 0;
+        if (id != null) {
+            handle = id.hashCode();
+            mIds[handle & (ID_TABLE_SIZE - 1)] = id;
+            header |= HAS_ID;
+        }
+        // Readers skip a slot whose header changed while they read it
+        mRecords.lazySet(slot, 0);
+        mRecords.lazySet(slot + 1, System.nanoTime());
+        mRecords.lazySet(slot + 2, (long) handle << 32 | (status & 0xFFFFFFFFL));
+        mRecords.lazySet(slot, header);
+    }
+
+    /**
+     * Appends the records written since the last spill to the spill file. Does nothing without one.
+     */
+    public synchronized void spill() {
+        if (mSpillFile == null) {
+            return;
+        }
+        List<Record> records = readMemory(mSpilledSequence);
+        if (records.isEmpty()) {
+            return;
+        }
+        if (mSpillFile.length() >= MAX_SPILL_FILE_BYTES) {
+            File previousFile = getPreviousSpillFile();
+            if (!previousFile.delete() && previousFile.exists() || !mSpillFile.renameTo(previousFile)) {
+                Log.w(TAG, "Failed to rotate " + mSpillFile.getName());
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(mSpillFile, true)))) {
+            for (Record record : records) {
+                out.writeLong(record.mSequence);
+                out.writeLong(record.mTimestamp);
+                out.writeLong(record.mNanoTime);
+                out.writeShort(record.mEvent.ordinal());
+                out.writeInt(record.mStatus);
+                out.writeUTF(record.mId != null ? record.mId : "");
+            }
+            mSpilledSequence = records.get(records.size() - 1).mSequence + 1;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to spill diagnostics", e);
+        }
+    }
+
+    /**
+     * @return the spilled records followed by those still only in memory, oldest first
+     */
+    public synchronized List<Record> read() {
+        List<Record> records = new ArrayList<>();
+        if (mSpillFile != null) {
+            readSpillFile(getPreviousSpillFile(), records);
+            readSpillFile(mSpillFile, records);
+        }
+        records.addAll(readMemory(mSpilledSequence));
+        return records;
+    }
+
+    /**
+     * Reads the ring from the given sequence, stopping at a record that is still being written so
+     * that the next read starts there.
+     */
+    private List<Record> readMemory(long fromSequence) {
+        long end = mNextSequence.get();
+        long sequence = Math.max(fromSequence, end - CAPACITY);
+        List<Record> records = new ArrayList<>((int) (end - sequence));
+        for (; sequence < end; sequence++) {
+            int slot = (int) (sequence & (CAPACITY - 1)) * RECORD_LONGS;
+            long header = mRecords.get(slot);
+            long nanoTime = mRecords.get(slot + 1);
+            long value = mRecords.get(slot + 2);
+            long stamp = header >>> SEQUENCE_SHIFT;
+            if (stamp != sequence + 1 || mRecords.get(slot) != header) {
+                if (stamp == 0 || stamp < sequence + 1) {
+                    break;
+                }
+                // Overwritten since end was read
+                continue;
+            }
+            int handle = (int) (value >>> 32);
+            String id = (header & HAS_ID) != 0 ? resolveId(handle) : null;
+            long timestamp = mStartMillis + (nanoTime - mStartNanos) / 1_000_000;
+            Event event = EVENTS[(int) (header & EVENT_MASK)];
+            records.add(new Record(sequence, timestamp, nanoTime, event, id, (int) value));
+        }
+        return records;
+    }
+
+    private String resolveId(int handle) {
+        String id = mIds[handle & (ID_TABLE_SIZE - 1)];
+        return id != null && id.hashCode() == handle ? id : "#" + Integer.toHexString(handle);
+    }
+
+    private void readSpillFile(File file, List<Record> records) {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                long sequence = in.readLong();
+                long timestamp = in.readLong();
+                long nanoTime = in.readLong();
+                int event = in.readShort();
+                int status = in.readInt();
+                String id = in.readUTF();
+                if (event >= 0 && event < EVENTS.length) {
+                    records.add(new Record(sequence, timestamp, nanoTime, EVENTS[event], id.isEmpty() ? null : id, status));
+                }
+            }
+        } catch (EOFException e) {
+            // End of file, or a record torn by a crash
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to read " + file.getName(), e);
+        }
+    }
+
+    private File getPreviousSpillFile() {
+        return new File(mSpillFile.getPath() + PREVIOUS_FILE_SUFFIX);
+    }
+
+    public static class Record {
+        private final long mSequence;
+        private final long mTimestamp;
+        private final long mNanoTime;
+        private final Event mEvent;
+        private final String mId;
+        private final int mStatus;
+
+        Record(long sequence, long timestamp, long nanoTime, Event event, String id, int status) {
+            mSequence = sequence;
+            mTimestamp = timestamp;
+            mNanoTime = nanoTime;
+            mEvent = event;
+            mId = id;
+            mStatus = status;
+        }
+
+        /**
+         * Numbers records in the order they were written. Starts again from 0 in a new process.
+         */
+        public long getSequence() {
+            return mSequence;
+        }
+
+        /**
+         * @return wall clock time in milliseconds
+         */
+        public long getTimestamp() {
+            return mTimestamp;
+        }
+
+        /**
+         * @return {@link System#nanoTime()}, only comparable between records of the same process
+         */
+        public long getNanoTime() {
+            return mNanoTime;
+        }
+
+        public Event getEvent() {
+            return mEvent;
+        }
+
+        /**
+         * @return the geofence id, its hash if it could not be resolved, or null
+         */
+        public String getId() {
+            return mId;
+        }
+
+        public int getStatus() {
+            return mStatus;
+        }
+    }
+}
@@ -5,9 +5,12 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.Handler;
 
-import com.annimon.stream.Stream;
 import com.annimon.stream.function.Function;
+import com.annimon.stream.function.Supplier;
+import com.google.android.gms.common.api.CommonStatusCodes;
+import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.GeofencingClient;
 import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationServices;
@@ -15,75 +18,139 @@ import com.google.android.gms.location.LocationServices;
 import android.util.Log;
 import com.google.android.gms.common.api.ApiException;
 import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.tasks.Task;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import static com.google.android.gms.location.Geofence.*;
 
 import co.uk.hive.reactnativegeolocation.PermissionChecker;
+import co.uk.hive.reactnativegeolocation.location.LatLng;
 
 public class GeofenceEngine {
     private static final String TAG = "GeofenceEngine";
+
+    /**
+     * Geofences per request. Play Services handles at most 100 per app, so a full catalog takes a
+     * few requests, of which {@link #MAX_CHUNKS_IN_FLIGHT} are outstanding at a time.
+     */
+    static final int CHUNK_SIZE = 25;
+    static final int MAX_CHUNKS_IN_FLIGHT = 2;
+    static final int MAX_ATTEMPTS = 5;
+    static final long INITIAL_BACKOFF_MILLIS = 1000;
+    static final long MAX_BACKOFF_MILLIS = 60_000;
+
     private final GeofencingClient mGeofencingClient;
+    private final FusedLocationProviderClient mLocationClient;
     private final PermissionChecker mPermissionChecker;
     private final PendingIntent mPendingIntent;
+    private final Executor mListenerExecutor;
+    private final DelayedExecutor mRetryExecutor;
+    private final GeofenceRegistrationStore mGeofenceRegistrationStore;
+    private final GeofenceMetrics mGeofenceMetrics;
+    private final GeofenceDiagnostics mGeofenceDiagnostics;
 
-    @SuppressLint("UnspecifiedImmutableFlag")
-    GeofenceEngine(Context context) {
-        mGeofencingClient = LocationServices.getGeofencingClient(context);
-        mPermissionChecker = new PermissionChecker(context);
+    public interface DelayedExecutor {
+        void execute(Runnable command, long delayMillis);
+    }
+
+    /**
+     * @param handler where results are delivered and retries run, the thread that calls in
+     */
+    GeofenceEngine(Context context, Handler handler, GeofenceRegistrationStore geofenceRegistrationStore,
+                   GeofenceMetrics geofenceMetrics, GeofenceDiagnostics geofenceDiagnostics) {
+        this(LocationServices.getGeofencingClient(context),
+                LocationServices.getFusedLocationProviderClient(context),
+                new PermissionChecker(context),
+                createPendingIntent(context),
+                handler::post,
+                handler::postDelayed,
+                geofenceRegistrationStore,
+                geofenceMetrics,
+                geofenceDiagnostics);
+    }
+
+    /**
+     * @param listenerExecutor runs Play Services listeners and registrations on a single thread
+     * @param retryExecutor    runs retries on the thread of the listener executor
+     */
+    GeofenceEngine(GeofencingClient geofencingClient,
+                   FusedLocationProviderClient locationClient,
+                   PermissionChecker permissionChecker,
+                   PendingIntent pendingIntent,
+                   Executor listenerExecutor,
+                   DelayedExecutor retryExecutor,
+                   GeofenceRegistrationStore geofenceRegistrationStore,
+                   GeofenceMetrics geofenceMetrics,
+                   GeofenceDiagnostics geofenceDiagnostics) {
+        mGeofencingClient = geofencingClient;
+        mLocationClient = locationClient;
+        mPermissionChecker = permissionChecker;
+        mPendingIntent = pendingIntent;
+        mListenerExecutor = listenerExecutor;
+        mRetryExecutor = retryExecutor;
+        mGeofenceRegistrationStore = geofenceRegistrationStore;
+        mGeofenceMetrics = geofenceMetrics;
+        mGeofenceDiagnostics = geofenceDiagnostics;
+    }
 
+    @SuppressLint("UnspecifiedImmutableFlag")
+    private static PendingIntent createPendingIntent(Context context) {
         Intent intent = new Intent(context, GeofenceEventBroadcastReceiver.class);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            mPendingIntent = PendingIntent.getBroadcast(context,
+            return PendingIntent.getBroadcast(context,
                     0, intent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_MUTABLE);
         } else {
-            mPendingIntent = PendingIntent.getBroadcast(context,
+            return PendingIntent.getBroadcast(context,
                     0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
         }
     }
 
-    @SuppressLint("MissingPermission")
+    /**
+     * Registers the geofences in chunks of {@link #CHUNK_SIZE}, retrying transient failures with
+     * capped exponential backoff. Succeeds once every chunk is registered, otherwise fails with the
+     * first error, or an {@link IllegalStateException} without all-the-time location access. The
+     * outcome of a registration is kept as the {@link GeofenceRegistrationState}. The window refresh
+     * geofence goes in a request of its own, which reports an exit straight away when the user is
+     * already outside it.
+     */
     public void addGeofences(List<Geofence> geofenceRequests, Function<? super Object, ? super Object> successCallback,
                              Function<? super Object, ? super Object> failureCallback) {
         if (!mPermissionChecker.isFullLocationPermissionGranted()) {
-            throw new IllegalStateException("All-the-time location access needs to be granted before calling addGeofences");
+            // Thrown on the geofence thread, this would take the process down
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.PERMISSION_MISSING);
+            failureCallback.apply(new IllegalStateException(
+                    "All-the-time location access needs to be granted before calling addGeofences"));
+            return;
         }
 
-        List<com.google.android.gms.location.Geofence> geofences = Stream.of(geofenceRequests)
-                .map(geofence -> new com.google.android.gms.location.Geofence.Builder()
-                        .setRequestId(geofence.getId())
-                        .setCircularRegion(
-                                geofence.getLatitude(),
-                                geofence.getLongitude(),
-                                geofence.getRadius())
-                        .setLoiteringDelay(geofence.getLoiteringDelay())
-                        .setTransitionTypes(defineTransitionTypes(geofence))
-                        .setExpirationDuration(NEVER_EXPIRE)
-                        .build())
-                .toList();
-
-        GeofencingRequest geofencingRequest = new GeofencingRequest.Builder()
-                .addGeofences(geofences)
-                .setInitialTrigger(defineInitialTrigger())
-                .build();
+        List<Chunk> chunks = new ArrayList<>();
+        List<com.google.android.gms.location.Geofence> geofences = new ArrayList<>(CHUNK_SIZE);
+        for (Geofence geofence : geofenceRequests) {
+            if (GeofenceWindow.isRefreshGeofence(geofence.getId())) {
+                // A user already outside the refresh geofence has to hear about it, or the window
+                // would never move. The stored geofences keep their silent initial trigger.
+                chunks.add(new Chunk(Collections.singletonList(toPlayGeofence(geofence)),
+                        GeofencingRequest.INITIAL_TRIGGER_EXIT));
+                continue;
+            }
+            geofences.add(toPlayGeofence(geofence));
+            if (geofences.size() == CHUNK_SIZE) {
+                chunks.add(new Chunk(geofences, defineInitialTrigger()));
+                geofences = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!geofences.isEmpty()) {
+            chunks.add(new Chunk(geofences, defineInitialTrigger()));
+        }
 
-        mGeofencingClient
-                .addGeofences(geofencingRequest, mPendingIntent)
-                .addOnSuccessListener(result -> {
-                    Log.d(TAG, "addGeofences: success (" + geofences.size() + " geofence(s))");
-                    successCallback.apply(result);
-                })
-                .addOnFailureListener(e -> {
-                    if (e instanceof ApiException) {
-                        int code = ((ApiException) e).getStatusCode();
-                        String msg = GeofenceStatusCodes.getStatusCodeString(code) + " (" + code + ")";
-                        Log.e(TAG, "addGeofences: failed with " + msg, e);
-                    } else {
-                        Log.e(TAG, "addGeofences: failed", e);
-                    }
-                    failureCallback.apply(e);
-                });
+        // Whichever thread calls in, the registration runs where its listeners do
+        Registration registration = new Registration(chunks, geofenceRequests.size(),
+                successCallback, failureCallback);
+        mListenerExecutor.execute(registration::start);
     }
 
     public void removeGeofences(
@@ -91,18 +158,107 @@ public class GeofenceEngine {
             Function<? super Object, ? super Object> successCallback,
             Function<? super Object, ? super Object> failureCallback
     ) {
-        mGeofencingClient
-                .removeGeofences(geofenceIds)
-                .addOnSuccessListener(result -> {
-                    Log.d(TAG, "removeGeofences: success (" + geofenceIds.size() + " id(s))");
-                    successCallback.apply(result);
-                })
-                .addOnFailureListener(e -> {
-                    Log.e(TAG, "removeGeofences: failed", e);
-                    failureCallback.apply(e);
+        long startNanos = System.nanoTime();
+        submit("removeGeofences", () -> mGeofencingClient.removeGeofences(geofenceIds), 1,
+                result -> {
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REMOVAL_FINISHED, geofenceIds.size());
+                    mGeofenceMetrics.recordRemoval(getMillisSince(startNanos), true);
+                    return successCallback.apply(result);
+                },
+                error -> {
+                    mGeofenceMetrics.recordRemoval(getMillisSince(startNanos), false);
+                    return failureCallback.apply(error);
+                },
+                null);
+    }
+
+    /**
+     * Passes the last known location to the callback, or null when there is none.
+     */
+    @SuppressLint("MissingPermission")
+    public void getLastLocation(Function<LatLng, Object> callback) {
+        mLocationClient
+                .getLastLocation()
+                .addOnSuccessListener(mListenerExecutor, location -> callback.apply(location != null
+                        ? new LatLng(location.getLatitude(), location.getLongitude())
+                        : null))
+                .addOnFailureListener(mListenerExecutor, e -> {
+                    Log.e(TAG, "getLastLocation: failed", e);
+                    callback.apply(null);
                 });
     }
 
+    public GeofenceRegistrationState getRegistrationState() {
+        return mGeofenceRegistrationStore.getRegistrationState();
+    }
+
+    /**
+     * Sends the request, sending it again after a backoff while it fails with a retryable status.
+     */
+    private void submit(String name, Supplier<Task<Void>> request, int attempt,
+                        Function<? super Object, ? super Object> successCallback,
+                        Function<? super Object, ? super Object> failureCallback,
+                        Registration registration) {
+        request.get()
+                .addOnSuccessListener(mListenerExecutor, successCallback::apply)
+                .addOnFailureListener(mListenerExecutor, e -> {
+                    int statusCode = getStatusCode(e);
+                    if (isRetryable(statusCode) && attempt < MAX_ATTEMPTS) {
+                        long delay = getBackoffMillis(attempt);
+                        mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REQUEST_RETRIED, statusCode);
+                        if (registration != null) {
+                            registration.mRetryCount++;
+                        }
+                        mRetryExecutor.execute(() -> submit(name, request, attempt + 1,
+                                successCallback, failureCallback, registration), delay);
+                    } else {
+                        mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REQUEST_FAILED, statusCode);
+                        Log.e(TAG, name + ": failed with " + GeofenceStatusCodes.getStatusCodeString(statusCode)
+                                + " (" + statusCode + ")", e);
+                        failureCallback.apply(e);
+                    }
+                });
+    }
+
+    private static long getMillisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    static long getBackoffMillis(int attempt) {
+        return Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(attempt - 1, 16));
+    }
+
+    static boolean isRetryable(int statusCode) {
+        switch (statusCode) {
+            case GeofenceStatusCodes.GEOFENCE_REQUEST_TOO_FREQUENT:
+            case CommonStatusCodes.NETWORK_ERROR:
+            case CommonStatusCodes.INTERNAL_ERROR:
+            case CommonStatusCodes.TIMEOUT:
+            case CommonStatusCodes.API_NOT_CONNECTED:
+                return true;
+            default:
+                // Location off, too many geofences or missing permission do not go away by retrying
+                return false;
+        }
+    }
+
+    private static int getStatusCode(Exception e) {
+        return e instanceof ApiException ? ((ApiException) e).getStatusCode() : CommonStatusCodes.ERROR;
+    }
+
+    private com.google.android.gms.location.Geofence toPlayGeofence(Geofence geofence) {
+        return new com.google.android.gms.location.Geofence.Builder()
+                .setRequestId(geofence.getId())
+                .setCircularRegion(
+                        geofence.getLatitude(),
+                        geofence.getLongitude(),
+                        geofence.getRadius())
+                .setLoiteringDelay(geofence.getLoiteringDelay())
+                .setTransitionTypes(defineTransitionTypes(geofence))
+                .setExpirationDuration(NEVER_EXPIRE)
+                .build();
+    }
+
     private int defineTransitionTypes(Geofence geofence) {
         return (geofence.isNotifyOnEnter() ? GEOFENCE_TRANSITION_ENTER : 0)
                 | (geofence.isNotifyOnExit() ? GEOFENCE_TRANSITION_EXIT : 0)
@@ -112,4 +268,131 @@ public class GeofenceEngine {
     private int defineInitialTrigger() {
         return 0; // do not notify at the moment of setting the geofence
     }
+
+    private static class Chunk {
+        private final List<com.google.android.gms.location.Geofence> mGeofences;
+        private final int mInitialTrigger;
+
+        Chunk(List<com.google.android.gms.location.Geofence> geofences, int initialTrigger) {
+            mGeofences = geofences;
+            mInitialTrigger = initialTrigger;
+        }
+    }
+
+    /**
+     * One addGeofences call. It is started on the listener executor, whose thread also runs every
+     * listener and retry, so its state needs no locking.
+     */
+    private class Registration {
+        private final List<Chunk> mChunks;
+        private final int mRequestedCount;
+        private final Function<? super Object, ? super Object> mSuccessCallback;
+        private final Function<? super Object, ? super Object> mFailureCallback;
+
+        private int mNextChunk;
+        private int mChunksInFlight;
+        private int mRegisteredCount;
+        private int mFailedCount;
+        private int mRetryCount;
+        private Exception mError;
+        private long mStartNanos;
+
+        Registration(List<Chunk> chunks, int requestedCount,
+                     Function<? super Object, ? super Object> successCallback,
+                     Function<? super Object, ? super Object> failureCallback) {
+            mChunks = chunks;
+            mRequestedCount = requestedCount;
+            mSuccessCallback = successCallback;
+            mFailureCallback = failureCallback;
+        }
+
+        void start() {
+            mStartNanos = System.nanoTime();
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REGISTRATION_STARTED, mRequestedCount);
+            saveState(GeofenceRegistrationState.Status.REGISTERING);
+            if (mChunks.isEmpty()) {
+                finish();
+                return;
+            }
+            while (mChunksInFlight < MAX_CHUNKS_IN_FLIGHT && mNextChunk < mChunks.size()) {
+                submitNextChunk();
+            }
+        }
+
+        private void submitNextChunk() {
+            Chunk chunk = mChunks.get(mNextChunk++);
+            int size = chunk.mGeofences.size();
+            mChunksInFlight++;
+
+            GeofencingRequest geofencingRequest = new GeofencingRequest.Builder()
+                    .addGeofences(chunk.mGeofences)
+                    .setInitialTrigger(chunk.mInitialTrigger)
+                    .build();
+            submit("addGeofences", () -> addGeofences(geofencingRequest), 1,
+                    result -> {
+                        mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.CHUNK_REGISTERED, size);
+                        mRegisteredCount += size;
+                        onChunkDone();
+                        return null;
+                    },
+                    error -> {
+                        mFailedCount += size;
+                        if (mError == null) {
+                            mError = (Exception) error;
+                        }
+                        onChunkDone();
+                        return null;
+                    },
+                    this);
+        }
+
+        @SuppressLint("MissingPermission")
+        private Task<Void> addGeofences(GeofencingRequest geofencingRequest) {
+            return mGeofencingClient.addGeofences(geofencingRequest, mPendingIntent);
+        }
+
+        private void onChunkDone() {
+            mChunksInFlight--;
+            if (mError != null) {
+                // The remaining chunks would fail the same way
+                while (mNextChunk < mChunks.size()) {
+                    mFailedCount += mChunks.get(mNextChunk++).mGeofences.size();
+                }
+            }
+            if (mNextChunk < mChunks.size()) {
+                submitNextChunk();
+            } else if (mChunksInFlight == 0) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            mGeofenceMetrics.recordRegistration(getMillisSince(mStartNanos), mError == null);
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REGISTRATION_FINISHED, mRegisteredCount);
+            if (mError == null) {
+                saveState(GeofenceRegistrationState.Status.REGISTERED);
+                mSuccessCallback.apply(null);
+            } else {
+                saveState(mRegisteredCount > 0
+                        ? GeofenceRegistrationState.Status.PARTIALLY_REGISTERED
+                        : GeofenceRegistrationState.Status.FAILED);
+                mFailureCallback.apply(mError);
+            }
+        }
+
+        private void saveState(GeofenceRegistrationState.Status status) {
+            GeofenceRegistrationState state = new GeofenceRegistrationState();
+            state.setStatus(status);
+            state.setRequestedCount(mRequestedCount);
+            state.setRegisteredCount(mRegisteredCount);
+            state.setFailedCount(mFailedCount);
+            state.setRetryCount(mRetryCount);
+            if (mError != null) {
+                state.setLastErrorCode(getStatusCode(mError));
+                state.setLastError(mError.getMessage());
+            }
+            state.setUpdatedAt(System.currentTimeMillis());
+            mGeofenceRegistrationStore.setRegistrationState(state);
+        }
+    }
 }
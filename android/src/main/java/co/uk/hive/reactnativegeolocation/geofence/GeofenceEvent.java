@@ -0,0 +1,117 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.os.BaseBundle;
+
+import androidx.annotation.Nullable;
+
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+
+/**
+ * A geofence transition on its way to JS, written straight to the bridge, the outbox and the job
+ * extras without going through a Bundle.
+ */
+public class GeofenceEvent {
+
+    public static final long NO_SEQUENCE = -1;
+
+    static final String KEY_ACTION = "action";
+    static final String KEY_IDENTIFIER = "identifier";
+    static final String KEY_TIMESTAMP = "timestamp";
+    static final String KEY_LOCATION = "location";
+    static final String KEY_COORDS = "coords";
+    static final String KEY_LATITUDE = "latitude";
+    static final String KEY_LONGITUDE = "longitude";
+
+    private final String mAction;
+    private final String mIdentifier;
+    private final long mTimestamp;
+    private final LatLng mLocation;
+    // Assigned once the outbox has stored the event
+    private long mSequence;
+
+    public GeofenceEvent(String action, String identifier, long timestamp, LatLng location, long sequence) {
+        mAction = action;
+        mIdentifier = identifier;
+        mTimestamp = timestamp;
+        mLocation = location;
+        mSequence = sequence;
+    }
+
+    /**
+     * Reads an event stored as nested bundles, as events were before this class.
+     */
+    static GeofenceEvent fromBundle(BaseBundle bundle) {
+        BaseBundle coords = getBundle(getBundle(bundle, KEY_LOCATION), KEY_COORDS);
+        return new GeofenceEvent(
+                bundle.getString(KEY_ACTION),
+                bundle.getString(KEY_IDENTIFIER),
+                bundle.getLong(KEY_TIMESTAMP),
+                new LatLng(
+                        coords != null ? coords.getDouble(KEY_LATITUDE) : 0,
+                        coords != null ? coords.getDouble(KEY_LONGITUDE) : 0),
+                bundle.getLong(GeofenceEventOutbox.KEY_SEQUENCE, NO_SEQUENCE));
+    }
+
+    @Nullable
+    private static BaseBundle getBundle(@Nullable BaseBundle bundle, String key) {
+        Object value = bundle != null ? bundle.get(key) : null;
+        return value instanceof BaseBundle ? (BaseBundle) value : null;
+    }
+
+    /**
+     * @return ENTER, EXIT or DWELL
+     */
+    public String getAction() {
+        return mAction;
+    }
+
+    public String getIdentifier() {
+        return mIdentifier;
+    }
+
+    /**
+     * @return seconds since the epoch
+     */
+    public long getTimestamp() {
+        return mTimestamp;
+    }
+
+    public LatLng getLocation() {
+        return mLocation;
+    }
+
+    public long getSequence() {
+        return mSequence;
+    }
+
+    public boolean hasSequence() {
+        return mSequence != NO_SEQUENCE;
+    }
+
+    void setSequence(long sequence) {
+        mSequence = sequence;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        GeofenceEvent that = (GeofenceEvent) o;
+
+        if (mTimestamp != that.mTimestamp) return false;
+        if (mSequence != that.mSequence) return false;
+        if (Double.compare(that.mLocation.getLatitude(), mLocation.getLatitude()) != 0) return false;
+        if (Double.compare(that.mLocation.getLongitude(), mLocation.getLongitude()) != 0) return false;
+        if (mAction != null ? !mAction.equals(that.mAction) : that.mAction != null) return false;
+        return mIdentifier != null ? mIdentifier.equals(that.mIdentifier) : that.mIdentifier == null;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = mIdentifier != null ? mIdentifier.hashCode() : 0;
+        result = 31 * result + (int) (mTimestamp ^ (mTimestamp >>> 32));
+        result = 31 * result + (int) (mSequence ^ (mSequence >>> 32));
+        return result;
+    }
+}
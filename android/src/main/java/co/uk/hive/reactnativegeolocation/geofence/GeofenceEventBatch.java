@@ -0,0 +1,112 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.os.BaseBundle;
+import android.os.PersistableBundle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+
+/**
+ * Layout of the job extras carrying geofence events to the headless task. The events are stored
+ * column-wise, one array per field, so a batch costs a handful of entries however many events it
+ * holds. Extras scheduled before that, with one bundle per event stored under its index or a
+ * single event, are still read.
+ */
+class GeofenceEventBatch {
+
+    private static final String KEY_EVENTS = "events";
+    private static final String KEY_COUNT = "count";
+    private static final String KEY_ACTIONS = "actions";
+    private static final String KEY_IDENTIFIERS = "identifiers";
+    private static final String KEY_TIMESTAMPS = "timestamps";
+    private static final String KEY_LATITUDES = "latitudes";
+    private static final String KEY_LONGITUDES = "longitudes";
+    private static final String KEY_SEQUENCES = "sequences";
+
+    static PersistableBundle toExtras(List<GeofenceEvent> events) {
+        int count = events.size();
+        String[] actions = new String[count];
+        String[] identifiers = new String[count];
+        long[] timestamps = new long[count];
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        long[] sequences = new long[count];
+        for (int i = 0; i < count; i++) {
+            GeofenceEvent event = events.get(i);
+            actions[i] = event.getAction();
+            identifiers[i] = event.getIdentifier();
+            timestamps[i] = event.getTimestamp();
+            latitudes[i] = event.getLocation().getLatitude();
+            longitudes[i] = event.getLocation().getLongitude();
+            sequences[i] = event.getSequence();
+        }
+
+        PersistableBundle batch = new PersistableBundle();
+        batch.putInt(KEY_COUNT, count);
+        batch.putStringArray(KEY_ACTIONS, actions);
+        batch.putStringArray(KEY_IDENTIFIERS, identifiers);
+        batch.putLongArray(KEY_TIMESTAMPS, timestamps);
+        batch.putDoubleArray(KEY_LATITUDES, latitudes);
+        batch.putDoubleArray(KEY_LONGITUDES, longitudes);
+        batch.putLongArray(KEY_SEQUENCES, sequences);
+        PersistableBundle extras = new PersistableBundle();
+        extras.putPersistableBundle(KEY_EVENTS, batch);
+        return extras;
+    }
+
+    static List<GeofenceEvent> readEvents(BaseBundle extras) {
+        List<GeofenceEvent> events = new ArrayList<>();
+        Object batch = extras != null ? extras.get(KEY_EVENTS) : null;
+        if (batch instanceof BaseBundle) {
+            BaseBundle batchBundle = (BaseBundle) batch;
+            if (batchBundle.containsKey(KEY_IDENTIFIERS)) {
+                readColumns(batchBundle, events);
+            } else {
+                readIndexed(batchBundle, events);
+            }
+        }
+        if (events.isEmpty() && isLegacyEvent(extras)) {
+            events.add(GeofenceEvent.fromBundle(extras));
+        }
+        return events;
+    }
+
+    private static void readColumns(BaseBundle batch, List<GeofenceEvent> events) {
+        String[] actions = batch.getStringArray(KEY_ACTIONS);
+        String[] identifiers = batch.getStringArray(KEY_IDENTIFIERS);
+        long[] timestamps = batch.getLongArray(KEY_TIMESTAMPS);
+        double[] latitudes = batch.getDoubleArray(KEY_LATITUDES);
+        double[] longitudes = batch.getDoubleArray(KEY_LONGITUDES);
+        long[] sequences = batch.getLongArray(KEY_SEQUENCES);
+        int count = batch.getInt(KEY_COUNT);
+        if (actions == null || identifiers == null || timestamps == null || latitudes == null
+                || longitudes == null || sequences == null) {
+            return;
+        }
+        if (actions.length < count || identifiers.length < count || timestamps.length < count
+                || latitudes.length < count || longitudes.length < count || sequences.length < count) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            events.add(new GeofenceEvent(actions[i], identifiers[i], timestamps[i],
+                    new LatLng(latitudes[i], longitudes[i]), sequences[i]));
+        }
+    }
+
+    private static void readIndexed(BaseBundle batch, List<GeofenceEvent> events) {
+        int count = batch.getInt(KEY_COUNT);
+        for (int i = 0; i < count; i++) {
+            Object event = batch.get(String.valueOf(i));
+            if (event instanceof BaseBundle) {
+                events.add(GeofenceEvent.fromBundle((BaseBundle) event));
+            }
+        }
+    }
+
+    // A single event scheduled before events were batched, e.g. persisted across an app update
+    private static boolean isLegacyEvent(BaseBundle extras) {
+        return extras != null && extras.containsKey(GeofenceEvent.KEY_IDENTIFIER);
+    }
+}
@@ -1,12 +1,13 @@
 package co.uk.hive.reactnativegeolocation.geofence;
 
+import android.app.Application;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Bundle;
-import android.os.PersistableBundle;
+import android.location.Location;
 import android.util.Log;
 import co.uk.hive.reactnativegeolocation.ForegroundChecker;
+import co.uk.hive.reactnativegeolocation.ForegroundTracker;
 import co.uk.hive.reactnativegeolocation.RNMapper;
 import com.annimon.stream.Optional;
 import com.annimon.stream.Stream;
@@ -19,12 +20,19 @@ import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.google.android.gms.location.GeofenceStatusCodes;
 import com.google.android.gms.location.GeofencingEvent;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class GeofenceEventBroadcastReceiver extends BroadcastReceiver {
     private static final String TAG = GeofenceEventBroadcastReceiver.class.getSimpleName();
     private static final String GEOFENCE_EVENT_NAME = "geofence";
 
     private GeofenceController mGeofenceController;
     private ForegroundChecker mForegroundChecker;
+    private GeofenceEventOutbox mGeofenceEventOutbox;
+    private GeofenceMetrics mGeofenceMetrics;
+    private GeofenceDiagnostics mGeofenceDiagnostics;
     private final GeofenceMapper mGeofenceMapper = new GeofenceMapper();
     private final RNMapper mRnMapper = new RNMapper();
 
@@ -35,33 +43,140 @@ public class GeofenceEventBroadcastReceiver extends BroadcastReceiver {
                     GeofenceServiceLocator.getGeofenceController(context.getApplicationContext());
         }
 
+        if (mGeofenceEventOutbox == null) {
+            mGeofenceEventOutbox =
+                    GeofenceServiceLocator.getGeofenceEventOutbox(context.getApplicationContext());
+        }
+
+        if (mGeofenceMetrics == null) {
+            mGeofenceMetrics = GeofenceServiceLocator.getGeofenceMetrics();
+        }
+
+        if (mGeofenceDiagnostics == null) {
+            mGeofenceDiagnostics = GeofenceServiceLocator.getGeofenceDiagnostics(context.getApplicationContext());
+        }
+
         if (mForegroundChecker == null) {
+            Context appContext = context.getApplicationContext();
+            if (appContext instanceof Application) {
+                // Later events in this process then skip the process importance check
+                ForegroundTracker.install((Application) appContext);
+            }
             mForegroundChecker = new ForegroundChecker(context);
         }
 
-        GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
+        // The repository and the outbox are shared with the geofence thread, which may be busy
+        // decoding or writing them, so the event is handled there rather than on the main thread
+        long receivedMillis = System.currentTimeMillis();
+        PendingResult pendingResult = goAsync();
+        Runnable finish = createFinish(pendingResult);
+        GeofenceServiceLocator.getGeofenceHandler().post(() -> {
+            try {
+                GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
+                handleGeofencingEvent(context, geofencingEvent, receivedMillis);
+                // Without a location there is nowhere to move the window to
+                if (isWindowRefreshExit(geofencingEvent) && geofencingEvent.getTriggeringLocation() != null) {
+                    moveWindow(geofencingEvent.getTriggeringLocation(), finish);
+                    return;
+                }
+            } catch (RuntimeException e) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.TASK_FAILED, e.getClass().getName());
+                Log.e(TAG, "Failed to handle geofencing event", e);
+            }
+            finish.run();
+        });
+    }
+
+    /**
+     * Finishes the broadcast once, however many paths try to.
+     */
+    private Runnable createFinish(PendingResult pendingResult) {
+        AtomicBoolean finished = new AtomicBoolean();
+        return () -> {
+            if (finished.compareAndSet(false, true)) {
+                // The process may be killed once the broadcast is finished
+                mGeofenceDiagnostics.spill();
+                pendingResult.finish();
+            }
+        };
+    }
+
+    private void handleGeofencingEvent(Context context, GeofencingEvent geofencingEvent, long receivedMillis) {
         if (geofencingEvent == null) {
             Log.w(TAG, "GeofencingEvent.fromIntent returned null");
             return;
         }
 
         if (geofencingEvent.hasError()) {
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.GEOFENCING_ERROR, geofencingEvent.getErrorCode());
+            if (geofencingEvent.getErrorCode() == GeofenceStatusCodes.GEOFENCE_NOT_AVAILABLE) {
+                // Location was turned off and Play Services dropped the geofences
+                mGeofenceController.invalidateRegistration();
+            }
             String errorMessage =
                     GeofenceStatusCodes.getStatusCodeString(geofencingEvent.getErrorCode());
             Log.e(TAG, errorMessage);
             return;
         }
 
-        Stream.of(geofencingEvent.getTriggeringGeofences())
-                .map(gmsGeofence -> mGeofenceController.getGeofenceById(gmsGeofence.getRequestId()))
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .forEach(geofence -> sendEvent(context, geofence, geofencingEvent));
+        // All transitions of one event go out together, as a single headless job if needed
+        long timestamp = receivedMillis / 1000;
+        int transition = geofencingEvent.getGeofenceTransition();
+        List<GeofenceEvent> events = new ArrayList<>();
+        for (com.google.android.gms.location.Geofence gmsGeofence : geofencingEvent.getTriggeringGeofences()) {
+            String id = gmsGeofence.getRequestId();
+            Optional<Geofence> geofence = mGeofenceController.getGeofenceById(id);
+            if (geofence.isPresent()) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, id, transition);
+                events.add(mGeofenceMapper.toEvent(geofencingEvent, geofence.get(), timestamp));
+            } else {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.UNKNOWN_GEOFENCE, id, transition);
+            }
+        }
+        if (!events.isEmpty()) {
+            Location location = geofencingEvent.getTriggeringLocation();
+            sendEvents(context, events, location != null ? location.getTime() : receivedMillis);
+        }
     }
 
-    private void sendEvent(Context context, Geofence geofence, GeofencingEvent event) {
-        long timestamp = System.currentTimeMillis() / 1000;
-        PersistableBundle bundle = mGeofenceMapper.toBundle(event, geofence, timestamp);
+    private boolean isWindowRefreshExit(GeofencingEvent event) {
+        return event != null && !event.hasError()
+                && event.getGeofenceTransition() == com.google.android.gms.location.Geofence.GEOFENCE_TRANSITION_EXIT
+                && Stream.of(event.getTriggeringGeofences())
+                        .anyMatch(gmsGeofence -> GeofenceWindow.isRefreshGeofence(gmsGeofence.getRequestId()));
+    }
+
+    /**
+     * Runs on the geofence thread, finishing the broadcast once Play Services has taken the new
+     * window.
+     */
+    private void moveWindow(Location location, Runnable finish) {
+        mGeofenceController.moveWindow(
+                location.getLatitude(), location.getLongitude(),
+                result -> {
+                    finish.run();
+                    return null;
+                },
+                error -> {
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.WINDOW_MOVE_FAILED);
+                    Log.e(TAG, "Failed to move geofence window: " + error);
+                    finish.run();
+                    return null;
+                });
+    }
+
+    /**
+     * @param fixTime wall clock time of the fix that triggered the events, or of their receipt
+     *                without one, for the delivery lag
+     */
+    private void sendEvents(Context context, List<GeofenceEvent> events, long fixTime) {
+        // Kept until JS acknowledges them, whichever way they are delivered
+        for (GeofenceEvent event : events) {
+            if (mGeofenceEventOutbox.append(event) == GeofenceEventOutbox.NO_SEQUENCE) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.EVENT_STORE_FAILED, event.getIdentifier());
+                Log.w(TAG, "Failed to store geofence event, delivering it without a sequence");
+            }
+        }
 
         ReactContext reactContext = getReactContext(context);
 
@@ -69,18 +184,32 @@ public class GeofenceEventBroadcastReceiver extends BroadcastReceiver {
                 mForegroundChecker.isAppInForeground()
                         && hasActiveInstance(reactContext);
 
+        List<GeofenceEvent> undelivered = events;
         if (canEmitToForegroundRN) {
-            try {
-                emitRNEvent(reactContext, bundle);
-                return;
-            } catch (Throwable t) {
-                // If RN is "active" but JS isn't ready or emit throws, fall back to Headless JS.
-                Log.w(TAG, "Emit to RN failed; falling back to Headless JS", t);
+            undelivered = new ArrayList<>();
+            for (GeofenceEvent event : events) {
+                try {
+                    emitRNEvent(reactContext, event);
+                    mGeofenceMetrics.recordDelivery(System.currentTimeMillis() - fixTime, false);
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.EVENT_EMITTED, event.getIdentifier());
+                } catch (Throwable t) {
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.EVENT_EMIT_FAILED, event.getIdentifier());
+                    // If RN is "active" but JS isn't ready or emit throws, fall back to Headless JS.
+                    Log.w(TAG, "Emit to RN failed; falling back to Headless JS", t);
+                    undelivered.add(event);
+                }
             }
         }
 
         // Background OR RN not ready OR emit failed then Headless JS
-        runHeadlessJsTask(context, bundle);
+        if (!undelivered.isEmpty()) {
+            runHeadlessJsTask(context, undelivered);
+            long lagMillis = System.currentTimeMillis() - fixTime;
+            for (GeofenceEvent event : undelivered) {
+                mGeofenceMetrics.recordDelivery(lagMillis, true);
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.EVENT_TO_HEADLESS, event.getIdentifier());
+            }
+        }
     }
 
     /**
@@ -95,17 +224,17 @@ public class GeofenceEventBroadcastReceiver extends BroadcastReceiver {
         }
     }
 
-    private void emitRNEvent(ReactContext reactContext, PersistableBundle bundle) {
+    private void emitRNEvent(ReactContext reactContext, GeofenceEvent event) {
         reactContext
                 .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                .emit(GEOFENCE_EVENT_NAME, mRnMapper.fromBundle(new Bundle(bundle)));
+                .emit(GEOFENCE_EVENT_NAME, mRnMapper.writeGeofenceEvent(event));
     }
 
-    private void runHeadlessJsTask(Context context, PersistableBundle bundle) {
-        GeofenceHeadlessJsTaskService.start(context, bundle);
+    private void runHeadlessJsTask(Context context, List<GeofenceEvent> events) {
+        GeofenceHeadlessJsTaskService.start(context, events);
         // ensure CPU stays awake while JS task spins up
         // IMPORTANT: If starting HeadlessJsTaskService from BroadcastReceiver,
-        // acquireWakeLockNow MUST be called before onReceive() returns,
+        // acquireWakeLockNow MUST be called before the broadcast is finished,
         // otherwise the CPU may sleep before the service starts.
         HeadlessJsTaskService.acquireWakeLockNow(context);
     }
@@ -0,0 +1,191 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.util.Log;
+
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.RecordLog;
+
+/**
+ * Durable queue of geofence events waiting to be handled by JS.
+ *
+ * Every event gets a sequence number and stays on disk until JS acknowledges it, so an event is
+ * delivered at least once and in order even if the JS task throws or its job is dropped. Events are
+ * synced to the storage device before they are delivered, so that they also outlive a power loss.
+ * Acknowledgements are not, as losing one only delivers its events again. When full, the oldest
+ * events are dropped.
+ *
+ * One record per line: {@code E<tab>sequence<tab>event json} or {@code K<tab>sequence}, the latter
+ * acknowledging every event up to and including that sequence.
+ */
+public class GeofenceEventOutbox {
+
+    public static final String FILE_NAME = "connected-home_react-native-geolocation_geofence-events.outbox";
+    public static final String KEY_SEQUENCE = "sequence";
+    public static final long NO_SEQUENCE = GeofenceEvent.NO_SEQUENCE;
+
+    static final int MAX_EVENTS = 500;
+
+    private static final String TAG = "GeofenceEventOutbox";
+    private static final char RECORD_EVENT = 'E';
+    private static final char RECORD_ACKNOWLEDGE = 'K';
+    private static final char SEPARATOR = '\t';
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 100;
+
+    private final RecordLog mRecordLog;
+    private final DataMarshaller mDataMarshaller;
+
+    private final ArrayDeque<Entry> mEntries = new ArrayDeque<>();
+    private long mLastSequence;
+    private int mRecordCount;
+    private boolean mLoaded;
+
+    public GeofenceEventOutbox(File file, DataMarshaller dataMarshaller) {
+        mRecordLog = new RecordLog(file);
+        mDataMarshaller = dataMarshaller;
+    }
+
+    /**
+     * Stores the event and sets its sequence number.
+     *
+     * @return the sequence number, or {@link #NO_SEQUENCE} if the event could not be stored
+     */
+    public synchronized long append(GeofenceEvent event) {
+        load();
+        long sequence = mLastSequence + 1;
+        event.setSequence(sequence);
+        String json = mDataMarshaller.marshal(event);
+
+        StringBuilder records = new StringBuilder();
+        Entry dropped = mEntries.size() >= MAX_EVENTS ? mEntries.peekFirst() : null;
+        if (dropped != null) {
+            appendAcknowledgeRecord(records, dropped.mSequence);
+        }
+        records.append(RECORD_EVENT).append(SEPARATOR).append(sequence).append(SEPARATOR)
+                .append(json).append(RecordLog.END_OF_RECORD);
+
+        if (!mRecordLog.append(records, true)) {
+            event.setSequence(NO_SEQUENCE);
+            return NO_SEQUENCE;
+        }
+        if (dropped != null) {
+            Log.w(TAG, "Outbox full, dropping event " + dropped.mSequence);
+            mEntries.pollFirst();
+            mRecordCount++;
+        }
+        mEntries.addLast(new Entry(sequence, json));
+        mRecordCount++;
+        mLastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * @return up to {@code limit} unacknowledged events, oldest first
+     */
+    public synchronized List<GeofenceEvent> peek(int limit) {
+        load();
+        List<GeofenceEvent> events = new ArrayList<>(Math.min(limit, mEntries.size()));
+        Iterator<Entry> iterator = mEntries.iterator();
+        while (iterator.hasNext() && events.size() < limit) {
+            GeofenceEvent event = mDataMarshaller.unmarshal(iterator.next().mJson, GeofenceEvent.class, null);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Removes every event up to and including the given sequence number.
+     */
+    public synchronized void acknowledge(long sequence) {
+        load();
+        if (mEntries.isEmpty() || mEntries.peekFirst().mSequence > sequence) {
+            return;
+        }
+        while (!mEntries.isEmpty() && mEntries.peekFirst().mSequence <= sequence) {
+            mEntries.pollFirst();
+        }
+
+        if (mRecordCount > MIN_RECORDS_BEFORE_COMPACTION && mRecordCount > 2 * mEntries.size()) {
+            compact();
+        } else {
+            StringBuilder records = new StringBuilder();
+            appendAcknowledgeRecord(records, sequence);
+            if (mRecordLog.append(records)) {
+                mRecordCount++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        load();
+        return mEntries.size();
+    }
+
+    /**
+     * Rewrites the log with the unacknowledged events, keeping the last sequence number so that
+     * numbering carries on where it left off.
+     */
+    private void compact() {
+        StringBuilder records = new StringBuilder();
+        appendAcknowledgeRecord(records, mLastSequence - mEntries.size());
+        for (Entry entry : mEntries) {
+            records.append(RECORD_EVENT).append(SEPARATOR).append(entry.mSequence).append(SEPARATOR)
+                    .append(entry.mJson).append(RecordLog.END_OF_RECORD);
+        }
+        if (mRecordLog.rewrite(records)) {
+            mRecordCount = mEntries.size() + 1;
+        }
+    }
+
+    private void load() {
+        if (mLoaded) {
+            return;
+        }
+        mLoaded = true;
+        mRecordCount = Math.max(0, mRecordLog.replay(this::apply));
+    }
+
+    private boolean apply(String record) {
+        String[] fields = record.split(String.valueOf(SEPARATOR), 3);
+        try {
+            long sequence = Long.parseLong(fields[1]);
+            if (record.charAt(0) == RECORD_EVENT && fields.length == 3) {
+                mDataMarshaller.unmarshal(fields[2], GeofenceEvent.class, null);
+                mEntries.addLast(new Entry(sequence, fields[2]));
+            } else if (record.charAt(0) == RECORD_ACKNOWLEDGE) {
+                while (!mEntries.isEmpty() && mEntries.peekFirst().mSequence <= sequence) {
+                    mEntries.pollFirst();
+                }
+            } else {
+                return false;
+            }
+            mLastSequence = Math.max(mLastSequence, sequence);
+            return true;
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException | JsonParseException e) {
+            return false;
+        }
+    }
+
+    private static void appendAcknowledgeRecord(StringBuilder records, long sequence) {
+        records.append(RECORD_ACKNOWLEDGE).append(SEPARATOR).append(sequence).append(RecordLog.END_OF_RECORD);
+    }
+
+    private static class Entry {
+        private final long mSequence;
+        private final String mJson;
+
+        Entry(long sequence, String json) {
+            mSequence = sequence;
+            mJson = json;
+        }
+    }
+}
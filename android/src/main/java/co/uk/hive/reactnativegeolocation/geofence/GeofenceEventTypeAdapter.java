@@ -0,0 +1,122 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+
+import static co.uk.hive.reactnativegeolocation.geofence.GeofenceEvent.*;
+
+/**
+ * Streams {@link GeofenceEvent} as the JSON object JS receives, which is also how the outbox stored
+ * events written from bundles.
+ */
+public class GeofenceEventTypeAdapter extends TypeAdapter<GeofenceEvent> {
+
+    @Override
+    public void write(JsonWriter out, GeofenceEvent event) throws IOException {
+        if (event == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (event.getAction() != null) {
+            out.name(KEY_ACTION).value(event.getAction());
+        }
+        if (event.getIdentifier() != null) {
+            out.name(KEY_IDENTIFIER).value(event.getIdentifier());
+        }
+        out.name(KEY_TIMESTAMP).value(event.getTimestamp());
+        out.name(KEY_LOCATION).beginObject();
+        out.name(KEY_COORDS).beginObject();
+        out.name(KEY_LATITUDE).value(event.getLocation().getLatitude());
+        out.name(KEY_LONGITUDE).value(event.getLocation().getLongitude());
+        out.endObject();
+        out.endObject();
+        if (event.hasSequence()) {
+            out.name(GeofenceEventOutbox.KEY_SEQUENCE).value(event.getSequence());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public GeofenceEvent read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String action = null;
+        String identifier = null;
+        long timestamp = 0;
+        LatLng location = null;
+        long sequence = NO_SEQUENCE;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case KEY_ACTION:
+                    action = in.nextString();
+                    break;
+                case KEY_IDENTIFIER:
+                    identifier = in.nextString();
+                    break;
+                case KEY_TIMESTAMP:
+                    timestamp = in.nextLong();
+                    break;
+                case KEY_LOCATION:
+                    location = readLocation(in);
+                    break;
+                case GeofenceEventOutbox.KEY_SEQUENCE:
+                    sequence = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new GeofenceEvent(action, identifier, timestamp,
+                location != null ? location : new LatLng(0, 0), sequence);
+    }
+
+    private static LatLng readLocation(JsonReader in) throws IOException {
+        LatLng location = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            if (in.nextName().equals(KEY_COORDS) && in.peek() == JsonToken.BEGIN_OBJECT) {
+                location = readCoords(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return location;
+    }
+
+    private static LatLng readCoords(JsonReader in) throws IOException {
+        double latitude = 0;
+        double longitude = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (name.equals(KEY_LATITUDE)) {
+                latitude = in.nextDouble();
+            } else if (name.equals(KEY_LONGITUDE)) {
+                longitude = in.nextDouble();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+        return new LatLng(latitude, longitude);
+    }
+}
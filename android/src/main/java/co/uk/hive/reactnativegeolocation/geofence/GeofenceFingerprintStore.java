@@ -0,0 +1,13 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+/**
+ * Remembers the fingerprint of the last successful registration of the full geofence set, so that
+ * re-registering an unchanged set with unchanged location providers can be skipped.
+ */
+public interface GeofenceFingerprintStore {
+    long NO_FINGERPRINT = 0;
+
+    long getFingerprint();
+
+    void setFingerprint(long fingerprint);
+}
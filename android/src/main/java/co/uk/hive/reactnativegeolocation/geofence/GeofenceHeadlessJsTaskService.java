@@ -7,46 +7,82 @@ import android.content.Context;
 import android.os.Bundle;
 import android.os.PersistableBundle;
 import androidx.annotation.Nullable;
-import android.util.Log;
 import co.uk.hive.reactnativegeolocation.RNMapper;
 import com.facebook.react.JobHeadlessJsTaskService;
 import com.facebook.react.jstasks.HeadlessJsTaskConfig;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class GeofenceHeadlessJsTaskService extends JobHeadlessJsTaskService {
 
     private static final int JOB_ID = 434;
 
     private static final String HEADLESS_TASK_NAME = "GeofenceEventTask";
-    private static final String HEADLESS_TASK_ARGUMENT_NAME = "geofence";
+    private static final String HEADLESS_TASK_ARGUMENT_NAME = "geofences";
+    private static final long TASK_TIMEOUT_PER_EVENT_MILLIS = 5000;
+    private static final int MAX_EVENTS_PER_TASK = 50;
 
     private RNMapper mRnMapper;
+    private GeofenceEventOutbox mGeofenceEventOutbox;
 
     @Override
     public void onCreate() {
         super.onCreate();
         mRnMapper = new RNMapper();
+        mGeofenceEventOutbox = GeofenceServiceLocator.getGeofenceEventOutbox(getApplicationContext());
     }
 
     @Override
     protected @Nullable
     HeadlessJsTaskConfig getTaskConfig(Bundle extras) {
-        Log.d(getClass().getSimpleName(), "Running GeofenceHeadlessJsTaskService");
-        if (extras != null) {
-            return new HeadlessJsTaskConfig(
-                    HEADLESS_TASK_NAME,
-                    mRnMapper.writeGeofenceTaskParams(HEADLESS_TASK_ARGUMENT_NAME, extras),
-                    5000,
-                    true
-            );
+        // The outbox also holds events from earlier tasks that JS did not acknowledge
+        List<GeofenceEvent> events = mGeofenceEventOutbox.peek(MAX_EVENTS_PER_TASK);
+        for (GeofenceEvent event : GeofenceEventBatch.readEvents(extras)) {
+            if (!event.hasSequence()) {
+                events.add(event);
+            }
+        }
+        if (events.isEmpty()) {
+            return null;
         }
-        return null;
+        GeofenceDiagnostics geofenceDiagnostics = GeofenceServiceLocator.getGeofenceDiagnostics(getApplicationContext());
+        geofenceDiagnostics.record(GeofenceDiagnostics.Event.HEADLESS_TASK_STARTED, events.size());
+        GeofenceServiceLocator.getGeofenceMetrics().recordHeadlessJob(events.size());
+        geofenceDiagnostics.spill();
+        return new HeadlessJsTaskConfig(
+                HEADLESS_TASK_NAME,
+                mRnMapper.writeGeofenceTaskParams(HEADLESS_TASK_ARGUMENT_NAME, events),
+                TASK_TIMEOUT_PER_EVENT_MILLIS * events.size(),
+                true
+        );
+    }
+
+    @Override
+    protected void onReactContextReady(long waitMillis, boolean coldStart) {
+        GeofenceServiceLocator.getGeofenceMetrics().recordHeadlessStart(waitMillis, coldStart);
     }
 
-    public static void start(Context context, PersistableBundle params) {
+    /**
+     * Schedules one job delivering the given events together with any events still waiting in a
+     * previously scheduled job, which the new job replaces.
+     */
+    public static void start(Context context, List<GeofenceEvent> events) {
         JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
         if (jobScheduler != null) {
-            jobScheduler.schedule(buildJobInfo(context, params));
+            List<GeofenceEvent> batch = new ArrayList<>(getPendingEvents(jobScheduler));
+            batch.addAll(events);
+            jobScheduler.schedule(buildJobInfo(context, GeofenceEventBatch.toExtras(batch)));
+        }
+    }
+
+    private static List<GeofenceEvent> getPendingEvents(JobScheduler jobScheduler) {
+        for (JobInfo jobInfo : jobScheduler.getAllPendingJobs()) {
+            if (jobInfo.getId() == JOB_ID) {
+                return GeofenceEventBatch.readEvents(jobInfo.getExtras());
+            }
         }
+        return new ArrayList<>();
     }
 
     private static JobInfo buildJobInfo(Context context, PersistableBundle params) {
@@ -0,0 +1,270 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import androidx.annotation.Nullable;
+
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.RecordLog;
+
+/**
+ * Append-only log of geofence changes, so that a change costs I/O proportional to its own size
+ * rather than to the whole catalog. Changes are not synced, so a power loss can drop the last of
+ * them.
+ *
+ * One record per line: {@code A<tab>geofence json}, {@code R<tab>id json} or {@code C}, after a
+ * {@code G<tab>generation} record naming the {@link GeofenceSnapshot} the changes apply to. Logs
+ * written before snapshots existed have no generation record and hold the whole catalog.
+ */
+public class GeofenceJournal {
+
+    public static final String FILE_NAME = "connected-home_react-native-geolocation_geofences.journal";
+    public static final long NO_GENERATION = 0;
+
+    private static final char RECORD_GENERATION = 'G';
+    private static final char RECORD_ADD = 'A';
+    private static final char RECORD_REMOVE = 'R';
+    private static final char RECORD_CLEAR = 'C';
+    private static final char SEPARATOR = '\t';
+    private static final int MIN_RECORDS_BEFORE_COMPACTION = 1000;
+
+    private final RecordLog mRecordLog;
+    private final DataMarshaller mDataMarshaller;
+
+    private int mRecordCount;
+    private boolean mWriteFailed;
+    private long mGeneration = NO_GENERATION;
+    private boolean mGenerationWritten = true;
+
+    public GeofenceJournal(File file, DataMarshaller dataMarshaller) {
+        mRecordLog = new RecordLog(file);
+        mDataMarshaller = dataMarshaller;
+    }
+
+    public boolean exists() {
+        return mRecordLog.exists();
+    }
+
+    /**
+     * Reads the changes in the log, without applying them to a snapshot.
+     */
+    public Changes replay() {
+        Changes changes = new Changes();
+        mRecordCount = mRecordLog.replay(record -> apply(record, changes));
+        if (mRecordCount < 0) {
+            mRecordCount = 0;
+            mWriteFailed = true;
+        }
+        mGeneration = changes.mGeneration;
+        return changes;
+    }
+
+    public void appendGeofences(Collection<Geofence> geofences) {
+        StringBuilder records = new StringBuilder();
+        for (Geofence geofence : geofences) {
+            appendRecord(records, RECORD_ADD, mDataMarshaller.marshal(geofence));
+        }
+        append(records, geofences.size());
+    }
+
+    public void appendRemovals(Collection<String> ids) {
+        StringBuilder records = new StringBuilder();
+        for (String id : ids) {
+            appendRecord(records, RECORD_REMOVE, mDataMarshaller.marshal(id));
+        }
+        append(records, ids.size());
+    }
+
+    public void appendClear() {
+        StringBuilder records = new StringBuilder();
+        records.append(RECORD_CLEAR).append(RecordLog.END_OF_RECORD);
+        append(records, 1);
+    }
+
+    public boolean shouldCompact(int liveCount) {
+        return mWriteFailed
+                || (mRecordCount > MIN_RECORDS_BEFORE_COMPACTION && mRecordCount > 2 * liveCount);
+    }
+
+    /**
+     * Empties the log once a snapshot of the given generation holds every change in it. Until the
+     * log is rewritten, changes from an older generation are ignored on replay, so a crash between
+     * writing the snapshot and this leaves nothing applied twice.
+     */
+    public void reset(long generation) {
+        mGeneration = generation;
+        mGenerationWritten = false;
+        append(new StringBuilder(), 0);
+    }
+
+    public long getBytesWritten() {
+        return mRecordLog.getBytesWritten();
+    }
+
+    private void append(StringBuilder records, int recordCount) {
+        if (mGenerationWritten) {
+            if (recordCount == 0) {
+                return;
+            }
+            if (mRecordLog.append(records)) {
+                mRecordCount += recordCount;
+            } else {
+                // The next compaction rewrites the log from memory
+                mWriteFailed = true;
+            }
+            return;
+        }
+
+        // Changes must not land in a log still naming the previous generation
+        StringBuilder log = new StringBuilder();
+        log.append(RECORD_GENERATION).append(SEPARATOR).append(mGeneration).append(RecordLog.END_OF_RECORD);
+        log.append(records);
+        if (mRecordLog.rewrite(log)) {
+            mGenerationWritten = true;
+            mRecordCount = 1 + recordCount;
+            mWriteFailed = false;
+        } else {
+            mWriteFailed = true;
+        }
+    }
+
+    private boolean apply(String record, Changes changes) {
+        if (record.isEmpty()) {
+            return false;
+        }
+        try {
+            switch (record.charAt(0)) {
+                case RECORD_GENERATION:
+                    changes.mGeneration = Long.parseLong(payload(record));
+                    return true;
+                case RECORD_ADD: {
+                    Geofence geofence = mDataMarshaller.unmarshal(payload(record), Geofence.class, null);
+                    if (geofence == null || geofence.getId() == null) {
+                        return false;
+                    }
+                    changes.put(geofence);
+                    return true;
+                }
+                case RECORD_REMOVE: {
+                    String id = mDataMarshaller.unmarshal(payload(record), String.class, null);
+                    if (id == null) {
+                        return false;
+                    }
+                    changes.remove(id);
+                    return true;
+                }
+                case RECORD_CLEAR:
+                    changes.mCleared = true;
+                    changes.mAdded.clear();
+                    changes.mRemoved.clear();
+                    return true;
+                default:
+                    return false;
+            }
+        } catch (JsonParseException | NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String payload(String record) {
+        return record.length() > 2 && record.charAt(1) == SEPARATOR ? record.substring(2) : "";
+    }
+
+    private static void appendRecord(StringBuilder records, char type, String payload) {
+        records.append(type).append(SEPARATOR).append(payload).append(RecordLog.END_OF_RECORD);
+    }
+
+    /**
+     * Changes recorded since a snapshot, which can answer a lookup by id without the snapshot
+     * being decoded in full.
+     */
+    public static class Changes {
+        private long mGeneration = NO_GENERATION;
+        private boolean mCleared;
+        // Keyed by geofence id, in the order they were added
+        private final Map<String, Geofence> mAdded = new LinkedHashMap<>();
+        private final Set<String> mRemoved = new HashSet<>();
+
+        public long getGeneration() {
+            return mGeneration;
+        }
+
+        /**
+         * Records a geofence as added, replacing one with the same id.
+         */
+        void put(Geofence geofence) {
+            mAdded.put(geofence.getId(), geofence);
+        }
+
+        void remove(String id) {
+            mAdded.remove(id);
+            mRemoved.add(id);
+        }
+
+        /**
+         * @param snapshot the snapshot the changes were recorded against, or null if there is none
+         */
+        @Nullable
+        public Geofence find(String id, @Nullable GeofenceSnapshot snapshot) {
+            Geofence geofence = mAdded.get(id);
+            if (geofence != null || mCleared || mRemoved.contains(id) || snapshot == null) {
+                return geofence;
+            }
+            return snapshot.find(id);
+        }
+
+        /**
+         * Counts the geofences {@link #applyTo} would return, looking up only the changed ones.
+         *
+         * @param snapshot the snapshot the changes were recorded against, or null if there is none
+         */
+        public int size(@Nullable GeofenceSnapshot snapshot) {
+            boolean keepsSnapshot = snapshot != null && !mCleared;
+            int size = keepsSnapshot ? snapshot.size() : 0;
+            for (String id : mRemoved) {
+                if (keepsSnapshot && snapshot.find(id) != null) {
+                    size--;
+                }
+            }
+            for (String id : mAdded.keySet()) {
+                if (!keepsSnapshot || mRemoved.contains(id) || snapshot.find(id) == null) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        /**
+         * Geofences updated in place keep their position, while geofences added, or removed and
+         * added again, come after the snapshot's.
+         *
+         * @param snapshot the snapshot the changes were recorded against, or null if there is none
+         */
+        public List<Geofence> applyTo(@Nullable GeofenceSnapshot snapshot) {
+            Map<String, Geofence> geofences = new LinkedHashMap<>();
+            if (snapshot != null && !mCleared) {
+                for (Geofence geofence : snapshot.toList()) {
+                    if (!mRemoved.contains(geofence.getId())) {
+                        Geofence updated = mAdded.get(geofence.getId());
+                        geofences.put(geofence.getId(), updated != null ? updated : geofence);
+                    }
+                }
+            }
+            for (Geofence geofence : mAdded.values()) {
+                if (!geofences.containsKey(geofence.getId())) {
+                    geofences.put(geofence.getId(), geofence);
+                }
+            }
+            return new ArrayList<>(geofences.values());
+        }
+    }
+}
@@ -1,28 +1,20 @@
 package co.uk.hive.reactnativegeolocation.geofence;
 
 import android.location.Location;
-import android.os.PersistableBundle;
+import co.uk.hive.reactnativegeolocation.location.LatLng;
 import com.google.android.gms.location.GeofencingEvent;
 
 import static com.google.android.gms.location.Geofence.*;
 
 class GeofenceMapper {
-    PersistableBundle toBundle(GeofencingEvent event, Geofence geofence, long timestamp) {
-        PersistableBundle bundle = new PersistableBundle();
-        bundle.putString("action", getGeofenceAction(event.getGeofenceTransition()));
-        bundle.putString("identifier", geofence.getId());
-        bundle.putLong("timestamp", timestamp);
-        bundle.putPersistableBundle("location", getLocationBundle(event.getTriggeringLocation()));
-        return bundle;
-    }
-
-    private PersistableBundle getLocationBundle(Location triggeringLocation) {
-        PersistableBundle bundle = new PersistableBundle();
-        PersistableBundle coordsBundle = new PersistableBundle();
-        coordsBundle.putDouble("latitude", triggeringLocation.getLatitude());
-        coordsBundle.putDouble("longitude", triggeringLocation.getLongitude());
-        bundle.putPersistableBundle("coords", coordsBundle);
-        return bundle;
+    GeofenceEvent toEvent(GeofencingEvent event, Geofence geofence, long timestamp) {
+        Location triggeringLocation = event.getTriggeringLocation();
+        return new GeofenceEvent(
+                getGeofenceAction(event.getGeofenceTransition()),
+                geofence.getId(),
+                timestamp,
+                new LatLng(triggeringLocation.getLatitude(), triggeringLocation.getLongitude()),
+                GeofenceEvent.NO_SEQUENCE);
     }
 
     private String getGeofenceAction(int geofenceTransition) {
@@ -0,0 +1,132 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.LatencyHistogram;
+
+/**
+ * Counters and latencies of registering geofences and delivering their events, kept in memory for
+ * the life of the process. Recording takes a lock and a few increments, so it stays on in release
+ * builds.
+ */
+public class GeofenceMetrics {
+
+    private final LatencyHistogram mRegistrationLatency = new LatencyHistogram();
+    private final LatencyHistogram mRemovalLatency = new LatencyHistogram();
+    private final LatencyHistogram mDeliveryLag = new LatencyHistogram();
+    private final LatencyHistogram mHeadlessStartLatency = new LatencyHistogram();
+
+    private long mRegistrationFailures;
+    private long mRemovalFailures;
+    private long mEventsEmitted;
+    private long mEventsToHeadless;
+    private long mHeadlessWarmStarts;
+    private long mHeadlessJobsStarted;
+    private long mHeadlessEventsDelivered;
+
+    /**
+     * @param millis from the addGeofences call until every chunk was accepted or given up on,
+     *               retries included
+     */
+    void recordRegistration(long millis, boolean success) {
+        mRegistrationLatency.record(millis);
+        if (!success) {
+            synchronized (this) {
+                mRegistrationFailures++;
+            }
+        }
+    }
+
+    void recordRemoval(long millis, boolean success) {
+        mRemovalLatency.record(millis);
+        if (!success) {
+            synchronized (this) {
+                mRemovalFailures++;
+            }
+        }
+    }
+
+    /**
+     * @param lagMillis from the fix that triggered the transition until the event was emitted to JS
+     *                  or handed to a headless job
+     */
+    void recordDelivery(long lagMillis, boolean headless) {
+        mDeliveryLag.record(lagMillis);
+        synchronized (this) {
+            if (headless) {
+                mEventsToHeadless++;
+            } else {
+                mEventsEmitted++;
+            }
+        }
+    }
+
+    /**
+     * @param millis spent waiting for a React context to be created, 0 when one was running
+     */
+    void recordHeadlessStart(long millis, boolean coldStart) {
+        if (coldStart) {
+            mHeadlessStartLatency.record(millis);
+        } else {
+            synchronized (this) {
+                mHeadlessWarmStarts++;
+            }
+        }
+    }
+
+    /**
+     * @param eventCount events the job hands to its headless task, more than one when events were
+     *                   batched into one job
+     */
+    void recordHeadlessJob(int eventCount) {
+        synchronized (this) {
+            mHeadlessJobsStarted++;
+            mHeadlessEventsDelivered += eventCount;
+        }
+    }
+
+    public LatencyHistogram getRegistrationLatency() {
+        return mRegistrationLatency;
+    }
+
+    public LatencyHistogram getRemovalLatency() {
+        return mRemovalLatency;
+    }
+
+    public LatencyHistogram getDeliveryLag() {
+        return mDeliveryLag;
+    }
+
+    /**
+     * Only headless tasks that had to create a React context.
+     */
+    public LatencyHistogram getHeadlessStartLatency() {
+        return mHeadlessStartLatency;
+    }
+
+    public synchronized long getRegistrationFailures() {
+        return mRegistrationFailures;
+    }
+
+    public synchronized long getRemovalFailures() {
+        return mRemovalFailures;
+    }
+
+    public synchronized long getEventsEmitted() {
+        return mEventsEmitted;
+    }
+
+    public synchronized long getEventsToHeadless() {
+        return mEventsToHeadless;
+    }
+
+    public synchronized long getHeadlessWarmStarts() {
+        return mHeadlessWarmStarts;
+    }
+
+    public synchronized long getHeadlessJobsStarted() {
+        return mHeadlessJobsStarted;
+    }
+
+    public synchronized long getHeadlessEventsDelivered() {
+        return mHeadlessEventsDelivered;
+    }
+}
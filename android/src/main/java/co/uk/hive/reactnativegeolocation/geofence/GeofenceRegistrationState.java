@@ -0,0 +1,91 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+/**
+ * Persisted outcome of the latest attempt to register geofences with Play Services.
+ */
+public class GeofenceRegistrationState {
+
+    public enum Status {
+        NOT_REGISTERED,
+        REGISTERING,
+        REGISTERED,
+        PARTIALLY_REGISTERED,
+        FAILED
+    }
+
+    private Status mStatus = Status.NOT_REGISTERED;
+    private int mRequestedCount;
+    private int mRegisteredCount;
+    private int mFailedCount;
+    private int mRetryCount;
+    private int mLastErrorCode;
+    private String mLastError;
+    private long mUpdatedAt;
+
+    public Status getStatus() {
+        return mStatus;
+    }
+
+    public void setStatus(Status status) {
+        mStatus = status;
+    }
+
+    public int getRequestedCount() {
+        return mRequestedCount;
+    }
+
+    public void setRequestedCount(int requestedCount) {
+        mRequestedCount = requestedCount;
+    }
+
+    public int getRegisteredCount() {
+        return mRegisteredCount;
+    }
+
+    public void setRegisteredCount(int registeredCount) {
+        mRegisteredCount = registeredCount;
+    }
+
+    public int getFailedCount() {
+        return mFailedCount;
+    }
+
+    public void setFailedCount(int failedCount) {
+        mFailedCount = failedCount;
+    }
+
+    public int getRetryCount() {
+        return mRetryCount;
+    }
+
+    public void setRetryCount(int retryCount) {
+        mRetryCount = retryCount;
+    }
+
+    /**
+     * @return the Play Services status code of the last failure, 0 if there was none
+     */
+    public int getLastErrorCode() {
+        return mLastErrorCode;
+    }
+
+    public void setLastErrorCode(int lastErrorCode) {
+        mLastErrorCode = lastErrorCode;
+    }
+
+    public String getLastError() {
+        return mLastError;
+    }
+
+    public void setLastError(String lastError) {
+        mLastError = lastError;
+    }
+
+    public long getUpdatedAt() {
+        return mUpdatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        mUpdatedAt = updatedAt;
+    }
+}
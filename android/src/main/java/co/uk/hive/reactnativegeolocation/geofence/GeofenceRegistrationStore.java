@@ -0,0 +1,7 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+public interface GeofenceRegistrationStore {
+    GeofenceRegistrationState getRegistrationState();
+
+    void setRegistrationState(GeofenceRegistrationState state);
+}
@@ -2,14 +2,37 @@ package co.uk.hive.reactnativegeolocation.geofence;
 
 import com.annimon.stream.Optional;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface GeofenceRepository {
+    /**
+     * Stores the given geofences, replacing stored geofences with the same ids. Costs I/O for the
+     * given geofences only.
+     */
     void addGeofences(List<Geofence> geofences);
 
+    /**
+     * Removes the geofences with the given ids, ignoring ids that are not stored. Costs I/O for the
+     * given ids only.
+     */
+    void removeGeofences(Collection<String> ids);
+
     void removeAllGeofences();
 
+    /**
+     * Replaces all stored geofences with the given ones in a single write.
+     */
+    void replaceGeofences(List<Geofence> geofences);
+
     List<Geofence> getGeofences();
 
     Optional<Geofence> getGeofenceById(String id);
+
+    /**
+     * Counts the stored geofences without reading all of them.
+     */
+    int getGeofenceCount();
+
+    List<Geofence> getNearestGeofences(double latitude, double longitude, int count);
 }
@@ -1,45 +1,177 @@
 package co.uk.hive.reactnativegeolocation.geofence;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
 import co.uk.hive.reactnativegeolocation.BundleTypeAdapterFactory;
 import co.uk.hive.reactnativegeolocation.DataMarshaller;
 import co.uk.hive.reactnativegeolocation.DataStorage;
+import co.uk.hive.reactnativegeolocation.LocationChecker;
 import co.uk.hive.reactnativegeolocation.location.LocationController;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import java.io.File;
+
+/**
+ * Builds the object graph once per process. Geofence broadcasts and jobs often start a cold
+ * process, so every later caller reuses the already loaded repository instead of parsing it again.
+ */
 public class GeofenceServiceLocator {
+
+    private static volatile GeofenceController sGeofenceController;
+    private static volatile LocationController sLocationController;
+    private static volatile GeofenceEventOutbox sGeofenceEventOutbox;
+    private static volatile GeofenceDiagnostics sGeofenceDiagnostics;
+    private static volatile Handler sGeofenceHandler;
+
+    private static final GeofenceMetrics sGeofenceMetrics = new GeofenceMetrics();
+
+    private static DataStorage sDataStorage;
+    private static DataMarshaller sDataMarshaller;
+
     public static GeofenceController getGeofenceController(Context context) {
-        return new GeofenceController(
-                new GeofenceEngine(context),
-                getGeofenceRepository(context),
-                getGeofenceActivator(context),
-                new ReRegistrationScheduler(context));
+        GeofenceController geofenceController = sGeofenceController;
+        if (geofenceController == null) {
+            synchronized (GeofenceServiceLocator.class) {
+                geofenceController = sGeofenceController;
+                if (geofenceController == null) {
+                    geofenceController = createGeofenceController(context.getApplicationContext());
+                    sGeofenceController = geofenceController;
+                }
+            }
+        }
+        return geofenceController;
     }
 
     public static LocationController getLocationController(Context context) {
-        return new LocationController(context);
+        LocationController locationController = sLocationController;
+        if (locationController == null) {
+            synchronized (GeofenceServiceLocator.class) {
+                locationController = sLocationController;
+                if (locationController == null) {
+                    locationController = new LocationController(context.getApplicationContext());
+                    sLocationController = locationController;
+                }
+            }
+        }
+        return locationController;
+    }
+
+    /**
+     * Runs geofence registration and storage one task at a time on a background thread, which is
+     * also where Play Services calls back. {@link GeofenceController} is only used from there.
+     */
+    public static Handler getGeofenceHandler() {
+        Handler geofenceHandler = sGeofenceHandler;
+        if (geofenceHandler == null) {
+            synchronized (GeofenceServiceLocator.class) {
+                geofenceHandler = sGeofenceHandler;
+                if (geofenceHandler == null) {
+                    HandlerThread thread = new HandlerThread("RNGeolocation-geofences");
+                    thread.start();
+                    geofenceHandler = new Handler(thread.getLooper());
+                    sGeofenceHandler = geofenceHandler;
+                }
+            }
+        }
+        return geofenceHandler;
+    }
+
+    public static GeofenceMetrics getGeofenceMetrics() {
+        return sGeofenceMetrics;
+    }
+
+    public static GeofenceDiagnostics getGeofenceDiagnostics(Context context) {
+        GeofenceDiagnostics geofenceDiagnostics = sGeofenceDiagnostics;
+        if (geofenceDiagnostics == null) {
+            synchronized (GeofenceServiceLocator.class) {
+                geofenceDiagnostics = sGeofenceDiagnostics;
+                if (geofenceDiagnostics == null) {
+                    geofenceDiagnostics = new GeofenceDiagnostics(
+                            new File(context.getFilesDir(), GeofenceDiagnostics.FILE_NAME));
+                    sGeofenceDiagnostics = geofenceDiagnostics;
+                }
+            }
+        }
+        return geofenceDiagnostics;
+    }
+
+    public static GeofenceEventOutbox getGeofenceEventOutbox(Context context) {
+        GeofenceEventOutbox geofenceEventOutbox = sGeofenceEventOutbox;
+        if (geofenceEventOutbox == null) {
+            synchronized (GeofenceServiceLocator.class) {
+                geofenceEventOutbox = sGeofenceEventOutbox;
+                if (geofenceEventOutbox == null) {
+                    geofenceEventOutbox = new GeofenceEventOutbox(
+                            new File(context.getFilesDir(), GeofenceEventOutbox.FILE_NAME), getDataMarshaller());
+                    sGeofenceEventOutbox = geofenceEventOutbox;
+                }
+            }
+        }
+        return geofenceEventOutbox;
+    }
+
+    private static GeofenceController createGeofenceController(Context context) {
+        return new GeofenceController(
+                new GeofenceEngine(context, getGeofenceHandler(), getGeofenceRegistrationStore(context),
+                        getGeofenceMetrics(), getGeofenceDiagnostics(context)),
+                getGeofenceRepository(context),
+                getGeofenceActivator(context),
+                getGeofenceWindowStore(context),
+                getRegisteredGeofenceStore(context),
+                new ReRegistrationScheduler(context),
+                getGeofenceFingerprintStore(context),
+                new LocationChecker(context),
+                getGeofenceHandler()::postDelayed,
+                getGeofenceDiagnostics(context));
     }
 
     private static GeofenceRepository getGeofenceRepository(Context context) {
-        return new DataStorageGeofenceRepository(getDataStorage(context), getDataMarshaller());
+        return new DataStorageGeofenceRepository(getDataStorage(context), getDataMarshaller(),
+                new GeofenceJournal(new File(context.getFilesDir(), GeofenceJournal.FILE_NAME), getDataMarshaller()),
+                new File(context.getFilesDir(), GeofenceSnapshot.FILE_NAME));
     }
 
     private static GeofenceActivator getGeofenceActivator(Context context) {
         return new DataStorageGeofenceActivator(getDataStorage(context), getDataMarshaller());
     }
 
-    private static DataStorage getDataStorage(Context context) {
-        return new DataStorage(context);
+    private static GeofenceWindowStore getGeofenceWindowStore(Context context) {
+        return new DataStorageGeofenceWindowStore(getDataStorage(context), getDataMarshaller());
+    }
+
+    private static RegisteredGeofenceStore getRegisteredGeofenceStore(Context context) {
+        return new DataStorageRegisteredGeofenceStore(getDataStorage(context), getDataMarshaller());
+    }
+
+    private static GeofenceFingerprintStore getGeofenceFingerprintStore(Context context) {
+        return new DataStorageGeofenceFingerprintStore(getDataStorage(context), getDataMarshaller());
+    }
+
+    private static GeofenceRegistrationStore getGeofenceRegistrationStore(Context context) {
+        return new DataStorageGeofenceRegistrationStore(getDataStorage(context), getDataMarshaller());
+    }
+
+    private static synchronized DataStorage getDataStorage(Context context) {
+        if (sDataStorage == null) {
+            sDataStorage = new DataStorage(context.getApplicationContext());
+        }
+        return sDataStorage;
     }
 
-    private static DataMarshaller getDataMarshaller() {
-        return new DataMarshaller(getGson());
+    private static synchronized DataMarshaller getDataMarshaller() {
+        if (sDataMarshaller == null) {
+            sDataMarshaller = new DataMarshaller(getGson());
+        }
+        return sDataMarshaller;
     }
 
     private static Gson getGson() {
         return new GsonBuilder()
                 .registerTypeAdapterFactory(new BundleTypeAdapterFactory())
+                .registerTypeAdapter(Geofence.class, new GeofenceTypeAdapter())
+                .registerTypeAdapter(GeofenceEvent.class, new GeofenceEventTypeAdapter())
                 .create();
     }
 }
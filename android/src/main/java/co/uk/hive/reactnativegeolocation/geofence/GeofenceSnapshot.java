@@ -0,0 +1,275 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable binary snapshot of the geofence catalog, read through a memory-mapped file so that a
+ * single geofence can be looked up without parsing the rest.
+ *
+ * Fixed-width columns, all big-endian:
+ * <pre>
+ * header    magic, version, generation (long), count, id bytes length
+ * columns   latitude[count] (double), longitude[count] (double), radius[count],
+ *           loitering delay[count], flags[count] (byte)
+ * id table  id offset[count + 1] into the id bytes, record index[count] in id byte order
+ * ids       UTF-8 bytes of every id, in record order
+ * </pre>
+ */
+public class GeofenceSnapshot {
+
+    public static final String FILE_NAME = "connected-home_react-native-geolocation_geofences.snapshot";
+
+    private static final String TAG = "GeofenceSnapshot";
+    private static final int MAGIC = 0x47465331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    // Bytes per geofence across the columns and the id table
+    private static final int RECORD_SIZE = 8 + 8 + 4 + 4 + 1 + 4 + 4;
+
+    private final ByteBuffer mBuffer;
+    private final long mGeneration;
+    private final int mCount;
+    private final int mLongitudes;
+    private final int mRadii;
+    private final int mLoiteringDelays;
+    private final int mFlags;
+    private final int mIdOffsets;
+    private final int mIdOrder;
+    private final int mIds;
+
+    private GeofenceSnapshot(ByteBuffer buffer, long generation, int count) {
+        mBuffer = buffer;
+        mGeneration = generation;
+        mCount = count;
+        mLongitudes = HEADER_SIZE + 8 * count;
+        mRadii = mLongitudes + 8 * count;
+        mLoiteringDelays = mRadii + 4 * count;
+        mFlags = mLoiteringDelays + 4 * count;
+        mIdOffsets = mFlags + count;
+        mIdOrder = mIdOffsets + 4 * (count + 1);
+        mIds = mIdOrder + 4 * count;
+    }
+
+    /**
+     * @return the snapshot, or null if there is none or it cannot be read
+     */
+    @Nullable
+    public static GeofenceSnapshot open(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // The mapping stays valid after the channel is closed
+            buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to map " + file.getName(), e);
+            return null;
+        }
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            Log.e(TAG, "Unknown format in " + file.getName());
+            return null;
+        }
+        long generation = buffer.getLong(8);
+        int count = buffer.getInt(16);
+        int idBytesLength = buffer.getInt(20);
+        if (count < 0 || idBytesLength < 0
+                || buffer.capacity() != HEADER_SIZE + (long) RECORD_SIZE * count + 4 + idBytesLength) {
+            Log.e(TAG, "Truncated " + file.getName());
+            return null;
+        }
+        return new GeofenceSnapshot(buffer, generation, count);
+    }
+
+    /**
+     * Writes the geofences through a temporary file renamed over the snapshot, so a crash leaves
+     * either the old or the new snapshot in place. Geofences without an id are left out.
+     */
+    public static boolean write(File file, long generation, Collection<Geofence> geofences) {
+        List<Geofence> records = new ArrayList<>(geofences.size());
+        for (Geofence geofence : geofences) {
+            if (geofence.getId() != null) {
+                records.add(geofence);
+            }
+        }
+        int count = records.size();
+        byte[][] ids = new byte[count][];
+        int idBytesLength = 0;
+        for (int i = 0; i < count; i++) {
+            ids[i] = records.get(i).getId().getBytes(StandardCharsets.UTF_8);
+            idBytesLength += ids[i].length;
+        }
+        Integer[] idOrder = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            idOrder[i] = i;
+        }
+        Arrays.sort(idOrder, (first, second) -> compareBytes(ids[first], ids[second]));
+
+        File temporary = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temporary, false)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeInt(count);
+            out.writeInt(idBytesLength);
+            for (Geofence geofence : records) {
+                out.writeDouble(geofence.getLatitude());
+            }
+            for (Geofence geofence : records) {
+                out.writeDouble(geofence.getLongitude());
+            }
+            for (Geofence geofence : records) {
+                out.writeInt(geofence.getRadius());
+            }
+            for (Geofence geofence : records) {
+                out.writeInt(geofence.getLoiteringDelay());
+            }
+            for (Geofence geofence : records) {
+                out.writeByte(getFlags(geofence));
+            }
+            int idOffset = 0;
+            for (byte[] id : ids) {
+                out.writeInt(idOffset);
+                idOffset += id.length;
+            }
+            out.writeInt(idOffset);
+            for (Integer index : idOrder) {
+                out.writeInt(index);
+            }
+            for (byte[] id : ids) {
+                out.write(id);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write " + temporary.getName(), e);
+            return false;
+        }
+        if (!temporary.renameTo(file)) {
+            Log.e(TAG, "Failed to replace " + file.getName());
+            return false;
+        }
+        return true;
+    }
+
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * Binary searches the id table, decoding only the geofence found.
+     */
+    @Nullable
+    public Geofence find(String id) {
+        byte[] key = id.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int index = mBuffer.getInt(mIdOrder + 4 * middle);
+            int comparison = compareId(index, key);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return get(index);
+            }
+        }
+        return null;
+    }
+
+    public Geofence get(int index) {
+        byte flags = mBuffer.get(mFlags + index);
+        return new Geofence(
+                readId(index),
+                mBuffer.getInt(mRadii + 4 * index),
+                mBuffer.getDouble(HEADER_SIZE + 8 * index),
+                mBuffer.getDouble(mLongitudes + 8 * index),
+                (flags & Geofence.FLAG_NOTIFY_ON_ENTER) != 0,
+                (flags & Geofence.FLAG_NOTIFY_ON_EXIT) != 0,
+                (flags & Geofence.FLAG_NOTIFY_ON_DWELL) != 0,
+                mBuffer.getInt(mLoiteringDelays + 4 * index));
+    }
+
+    /**
+     * Decodes every geofence, in the order they were written.
+     */
+    public List<Geofence> toList() {
+        List<Geofence> geofences = new ArrayList<>(mCount);
+        for (int i = 0; i < mCount; i++) {
+            geofences.add(get(i));
+        }
+        return geofences;
+    }
+
+    private String readId(int index) {
+        int start = mBuffer.getInt(mIdOffsets + 4 * index);
+        byte[] id = new byte[mBuffer.getInt(mIdOffsets + 4 * (index + 1)) - start];
+        ByteBuffer ids = mBuffer.duplicate();
+        ids.position(mIds + start);
+        ids.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private int compareId(int index, byte[] key) {
+        int start = mIds + mBuffer.getInt(mIdOffsets + 4 * index);
+        int length = mIds + mBuffer.getInt(mIdOffsets + 4 * (index + 1)) - start;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = (mBuffer.get(start + i) & 0xff) - (key[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return length - key.length;
+    }
+
+    private static int compareBytes(byte[] first, byte[] second) {
+        int common = Math.min(first.length, second.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = (first[i] & 0xff) - (second[i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return first.length - second.length;
+    }
+
+    private static byte getFlags(Geofence geofence) {
+        int flags = 0;
+        if (geofence.isNotifyOnEnter()) {
+            flags |= Geofence.FLAG_NOTIFY_ON_ENTER;
+        }
+        if (geofence.isNotifyOnExit()) {
+            flags |= Geofence.FLAG_NOTIFY_ON_EXIT;
+        }
+        if (geofence.isNotifyOnDwell()) {
+            flags |= Geofence.FLAG_NOTIFY_ON_DWELL;
+        }
+        return (byte) flags;
+    }
+}
@@ -0,0 +1,178 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Uniform lat/lng grid over the stored geofences, used to find the geofences nearest to a location
+ * without scanning the whole catalog.
+ *
+ * Distances are equirectangular approximations, which is accurate enough to rank geofences a few
+ * kilometres apart. The grid does not wrap around the antimeridian.
+ */
+class GeofenceSpatialIndex {
+
+    static final double DEFAULT_CELL_SIZE_DEGREES = 0.05;
+
+    private static final double METERS_PER_DEGREE = 111_320d;
+
+    private final double mCellSizeDegrees;
+    private final Map<Long, List<Geofence>> mCells = new HashMap<>();
+    private int mSize;
+
+    GeofenceSpatialIndex() {
+        this(DEFAULT_CELL_SIZE_DEGREES);
+    }
+
+    GeofenceSpatialIndex(double cellSizeDegrees) {
+        mCellSizeDegrees = cellSizeDegrees;
+    }
+
+    void add(Geofence geofence) {
+        long key = cellKey(cell(geofence.getLatitude()), cell(geofence.getLongitude()));
+        List<Geofence> cell = mCells.get(key);
+        if (cell == null) {
+            cell = new ArrayList<>(4);
+            mCells.put(key, cell);
+        }
+        cell.add(geofence);
+        mSize++;
+    }
+
+    void remove(Geofence geofence) {
+        long key = cellKey(cell(geofence.getLatitude()), cell(geofence.getLongitude()));
+        List<Geofence> cell = mCells.get(key);
+        if (cell != null && cell.remove(geofence)) {
+            mSize--;
+            if (cell.isEmpty()) {
+                mCells.remove(key);
+            }
+        }
+    }
+
+    void clear() {
+        mCells.clear();
+        mSize = 0;
+    }
+
+    int size() {
+        return mSize;
+    }
+
+    /**
+     * Returns up to {@code count} geofences ordered by distance from the given point, nearest first.
+     */
+    List<Geofence> findNearest(double latitude, double longitude, int count) {
+        if (count <= 0 || mSize == 0) {
+            return Collections.emptyList();
+        }
+
+        final double cosLatitude = Math.cos(Math.toRadians(latitude));
+        final int centerLatCell = cell(latitude);
+        final int centerLngCell = cell(longitude);
+        final PriorityQueue<Candidate> nearest = new PriorityQueue<>(count + 1,
+                (a, b) -> Double.compare(b.mDistance, a.mDistance));
+
+        for (int ring = 0; ; ring++) {
+            if (nearest.size() == count && ringLowerBound(ring, cosLatitude) > nearest.peek().mDistance) {
+                break;
+            }
+            long ringWidth = 2L * ring + 1;
+            if (ringWidth * ringWidth > 4L * mCells.size()) {
+                // The rings have grown past the occupied area, scanning the remaining cells is cheaper
+                scanCellsOutsideRing(ring, centerLatCell, centerLngCell, latitude, longitude, cosLatitude, count, nearest);
+                break;
+            }
+            for (int dLat = -ring; dLat <= ring; dLat++) {
+                boolean edgeRow = dLat == -ring || dLat == ring;
+                for (int dLng = -ring; dLng <= ring; dLng += edgeRow ? 1 : 2 * ring) {
+                    List<Geofence> cell = mCells.get(cellKey(centerLatCell + dLat, centerLngCell + dLng));
+                    if (cell != null) {
+                        offer(cell, latitude, longitude, cosLatitude, count, nearest);
+                    }
+                }
+            }
+        }
+
+        Candidate[] ordered = nearest.toArray(new Candidate[0]);
+        Arrays.sort(ordered, (a, b) -> Double.compare(a.mDistance, b.mDistance));
+        List<Geofence> result = new ArrayList<>(ordered.length);
+        for (Candidate candidate : ordered) {
+            result.add(candidate.mGeofence);
+        }
+        return result;
+    }
+
+    private void scanCellsOutsideRing(int ring, int centerLatCell, int centerLngCell,
+                                      double latitude, double longitude, double cosLatitude,
+                                      int count, PriorityQueue<Candidate> nearest) {
+        for (Map.Entry<Long, List<Geofence>> entry : mCells.entrySet()) {
+            long key = entry.getKey();
+            int latCell = (int) (key >> 32);
+            int lngCell = (int) key;
+            if (Math.max(Math.abs(latCell - centerLatCell), Math.abs(lngCell - centerLngCell)) >= ring) {
+                offer(entry.getValue(), latitude, longitude, cosLatitude, count, nearest);
+            }
+        }
+    }
+
+    private static void offer(List<Geofence> cell, double latitude, double longitude, double cosLatitude,
+                              int count, PriorityQueue<Candidate> nearest) {
+        for (int i = 0, size = cell.size(); i < size; i++) {
+            Geofence geofence = cell.get(i);
+            double distance = distanceMeters(latitude, longitude, cosLatitude,
+                    geofence.getLatitude(), geofence.getLongitude());
+            if (nearest.size() < count) {
+                nearest.add(new Candidate(geofence, distance));
+            } else if (distance < nearest.peek().mDistance) {
+                nearest.poll();
+                nearest.add(new Candidate(geofence, distance));
+            }
+        }
+    }
+
+    /**
+     * Smallest possible distance between a point in the center cell and any point in the given ring.
+     */
+    private double ringLowerBound(int ring, double cosLatitude) {
+        if (ring <= 1) {
+            return 0;
+        }
+        return (ring - 1) * mCellSizeDegrees * METERS_PER_DEGREE * Math.abs(cosLatitude);
+    }
+
+    static double distanceMeters(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        return distanceMeters(fromLatitude, fromLongitude, Math.cos(Math.toRadians(fromLatitude)),
+                toLatitude, toLongitude);
+    }
+
+    private static double distanceMeters(double fromLatitude, double fromLongitude, double cosLatitude,
+                                         double toLatitude, double toLongitude) {
+        double dLat = toLatitude - fromLatitude;
+        double dLng = (toLongitude - fromLongitude) * cosLatitude;
+        return Math.sqrt(dLat * dLat + dLng * dLng) * METERS_PER_DEGREE;
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / mCellSizeDegrees);
+    }
+
+    private static long cellKey(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    private static class Candidate {
+        private final Geofence mGeofence;
+        private final double mDistance;
+
+        Candidate(Geofence geofence, double distance) {
+            mGeofence = geofence;
+            mDistance = distance;
+        }
+    }
+}
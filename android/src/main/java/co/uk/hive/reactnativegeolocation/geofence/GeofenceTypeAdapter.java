@@ -0,0 +1,109 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Streams {@link Geofence} without reflection, under short keys. Geofences written by Gson's
+ * reflective adapter, keyed by field name, are still read.
+ */
+public class GeofenceTypeAdapter extends TypeAdapter<Geofence> {
+
+    private static final String KEY_ID = "i";
+    private static final String KEY_RADIUS = "r";
+    private static final String KEY_LATITUDE = "la";
+    private static final String KEY_LONGITUDE = "lo";
+    private static final String KEY_NOTIFY_ON_ENTER = "en";
+    private static final String KEY_NOTIFY_ON_EXIT = "ex";
+    private static final String KEY_NOTIFY_ON_DWELL = "dw";
+    private static final String KEY_LOITERING_DELAY = "ld";
+
+    @Override
+    public void write(JsonWriter out, Geofence geofence) throws IOException {
+        if (geofence == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (geofence.getId() != null) {
+            out.name(KEY_ID).value(geofence.getId());
+        }
+        out.name(KEY_RADIUS).value(geofence.getRadius());
+        out.name(KEY_LATITUDE).value(geofence.getLatitude());
+        out.name(KEY_LONGITUDE).value(geofence.getLongitude());
+        out.name(KEY_NOTIFY_ON_ENTER).value(geofence.isNotifyOnEnter());
+        out.name(KEY_NOTIFY_ON_EXIT).value(geofence.isNotifyOnExit());
+        out.name(KEY_NOTIFY_ON_DWELL).value(geofence.isNotifyOnDwell());
+        out.name(KEY_LOITERING_DELAY).value(geofence.getLoiteringDelay());
+        out.endObject();
+    }
+
+    @Override
+    public Geofence read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String id = null;
+        int radius = 0;
+        double latitude = 0;
+        double longitude = 0;
+        boolean notifyOnEnter = false;
+        boolean notifyOnExit = false;
+        boolean notifyOnDwell = false;
+        int loiteringDelay = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case KEY_ID:
+                case "mId":
+                    id = in.nextString();
+                    break;
+                case KEY_RADIUS:
+                case "mRadius":
+                    radius = in.nextInt();
+                    break;
+                case KEY_LATITUDE:
+                case "mLatitude":
+                    latitude = in.nextDouble();
+                    break;
+                case KEY_LONGITUDE:
+                case "mLongitude":
+                    longitude = in.nextDouble();
+                    break;
+                case KEY_NOTIFY_ON_ENTER:
+                case "mNotifyOnEnter":
+                    notifyOnEnter = in.nextBoolean();
+                    break;
+                case KEY_NOTIFY_ON_EXIT:
+                case "mNotifyOnExit":
+                    notifyOnExit = in.nextBoolean();
+                    break;
+                case KEY_NOTIFY_ON_DWELL:
+                case "mNotifyOnDwell":
+                    notifyOnDwell = in.nextBoolean();
+                    break;
+                case KEY_LOITERING_DELAY:
+                case "mLoiteringDelay":
+                    loiteringDelay = in.nextInt();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new Geofence(id, radius, latitude, longitude, notifyOnEnter, notifyOnExit, notifyOnDwell,
+                loiteringDelay);
+    }
+}
@@ -0,0 +1,109 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Works out which geofences to register when only the ones nearest to the user can be active.
+ *
+ * Play Services accepts at most 100 geofences per app, so the window holds up to {@link #MAX_SIZE}
+ * stored geofences plus a refresh geofence centered on the user. Exiting the refresh geofence moves
+ * the window.
+ */
+class GeofenceWindow {
+
+    static final String REFRESH_GEOFENCE_ID = "co.uk.hive.reactnativegeolocation.WINDOW_REFRESH";
+    static final int MAX_SIZE = 99;
+
+    private static final int MIN_REFRESH_RADIUS = 500;
+
+    private final GeofenceRepository mGeofenceRepository;
+
+    GeofenceWindow(GeofenceRepository geofenceRepository) {
+        mGeofenceRepository = geofenceRepository;
+    }
+
+    static boolean isRefreshGeofence(String id) {
+        return REFRESH_GEOFENCE_ID.equals(id);
+    }
+
+    Plan plan(double latitude, double longitude, int size, Collection<String> registeredIds) {
+        return plan(latitude, longitude, size, registeredIds, Collections.emptySet());
+    }
+
+    /**
+     * @param registeredIds ids registered for the previous window, these are not added again
+     * @param changedIds    registered ids whose geofence has changed since, these are added again
+     *                      if they stay in the window
+     */
+    Plan plan(double latitude, double longitude, int size, Collection<String> registeredIds,
+              Set<String> changedIds) {
+        size = Math.min(size, MAX_SIZE);
+        List<Geofence> nearest = mGeofenceRepository.getNearestGeofences(latitude, longitude, size + 1);
+        List<Geofence> window = nearest.subList(0, Math.min(size, nearest.size()));
+
+        Set<String> previousIds = new HashSet<>(registeredIds);
+        Set<String> windowIds = new HashSet<>(window.size() * 2);
+        List<Geofence> geofencesToAdd = new ArrayList<>();
+        for (Geofence geofence : window) {
+            windowIds.add(geofence.getId());
+            if (!previousIds.contains(geofence.getId()) || changedIds.contains(geofence.getId())) {
+                geofencesToAdd.add(geofence);
+            }
+        }
+
+        // Only needed while some geofences are left out of the window
+        if (nearest.size() > size) {
+            geofencesToAdd.add(createRefreshGeofence(latitude, longitude, nearest.get(size)));
+            windowIds.add(REFRESH_GEOFENCE_ID);
+        }
+
+        List<String> idsToRemove = new ArrayList<>();
+        for (String id : previousIds) {
+            if (!windowIds.contains(id)) {
+                idsToRemove.add(id);
+            }
+        }
+
+        return new Plan(idsToRemove, geofencesToAdd, new ArrayList<>(windowIds));
+    }
+
+    /**
+     * The refresh geofence covers half the way to the closest geofence outside the window, so it is
+     * exited well before that geofence could be entered.
+     */
+    private Geofence createRefreshGeofence(double latitude, double longitude, Geofence closestOutside) {
+        double distance = GeofenceSpatialIndex.distanceMeters(latitude, longitude,
+                closestOutside.getLatitude(), closestOutside.getLongitude()) - closestOutside.getRadius();
+        int radius = (int) Math.max(MIN_REFRESH_RADIUS, distance / 2);
+        return new Geofence(REFRESH_GEOFENCE_ID, radius, latitude, longitude, false, true, false, 0);
+    }
+
+    static class Plan {
+        private final List<String> mIdsToRemove;
+        private final List<Geofence> mGeofencesToAdd;
+        private final List<String> mWindowIds;
+
+        Plan(List<String> idsToRemove, List<Geofence> geofencesToAdd, List<String> windowIds) {
+            mIdsToRemove = idsToRemove;
+            mGeofencesToAdd = geofencesToAdd;
+            mWindowIds = windowIds;
+        }
+
+        List<String> getIdsToRemove() {
+            return mIdsToRemove;
+        }
+
+        List<Geofence> getGeofencesToAdd() {
+            return mGeofencesToAdd;
+        }
+
+        List<String> getWindowIds() {
+            return mWindowIds;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+
+/**
+ * Persisted state of the geofence window: how many geofences it holds, which ids are currently
+ * registered with Play Services and where the window was last centered.
+ */
+public class GeofenceWindowState {
+    private int mSize;
+    private List<String> mRegisteredIds = new ArrayList<>();
+    private LatLng mCenter;
+
+    public boolean isEnabled() {
+        return mSize > 0;
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+    public void setSize(int size) {
+        mSize = size;
+    }
+
+    public List<String> getRegisteredIds() {
+        return mRegisteredIds;
+    }
+
+    public void setRegisteredIds(List<String> registeredIds) {
+        mRegisteredIds = registeredIds;
+    }
+
+    public LatLng getCenter() {
+        return mCenter;
+    }
+
+    public void setCenter(LatLng center) {
+        mCenter = center;
+    }
+}
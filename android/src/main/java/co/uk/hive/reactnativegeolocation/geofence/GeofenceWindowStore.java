@@ -0,0 +1,7 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+public interface GeofenceWindowStore {
+    GeofenceWindowState getWindowState();
+
+    void setWindowState(GeofenceWindowState state);
+}
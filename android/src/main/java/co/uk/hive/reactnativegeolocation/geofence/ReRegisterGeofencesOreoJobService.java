@@ -5,8 +5,6 @@ import android.app.job.JobService;
 import android.os.Build;
 import androidx.annotation.RequiresApi;
 
-import com.annimon.stream.function.Function;
-
 import co.uk.hive.reactnativegeolocation.LocationChecker;
 import co.uk.hive.reactnativegeolocation.PermissionChecker;
 
@@ -15,24 +13,42 @@ public class ReRegisterGeofencesOreoJobService extends JobService {
 
     private static final boolean COMPLETE = false;
 
-    private Function<? super Object, ? super Object> mEmptyCallback = o -> null;
+    private GeofenceDiagnostics mGeofenceDiagnostics;
 
     @Override
     public boolean onStartJob(JobParameters jobParameters) {
+        mGeofenceDiagnostics = GeofenceServiceLocator.getGeofenceDiagnostics(getApplicationContext());
         if (!isFullLocationPermissionGranted()) {
-            GeofenceLog.d("All-the-time location access not granted. Cannot restart geofencing");
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.PERMISSION_MISSING);
             return COMPLETE;
         }
         
+        GeofenceController geofenceController = GeofenceServiceLocator.getGeofenceController(this);
         LocationChecker locationChecker = new LocationChecker(this);
+        ReRegistrationScheduler scheduler = new ReRegistrationScheduler(this);
+        scheduler.scheduleReRegistration();
         if (locationChecker.isLocationEnabled()) {
-            GeofenceController geofenceController = GeofenceServiceLocator.getGeofenceController(this);
-            geofenceController.restart(mEmptyCallback, mEmptyCallback);
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_STARTED);
+            // Provider changes come in bursts and often leave the registration as it was
+            geofenceController.requestRestart(false,
+                    result -> {
+                        mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_FINISHED);
+                        jobFinished(jobParameters, false);
+                        return null;
+                    },
+                    // The failure is also kept as the registration state, which JS can query
+                    error -> {
+                        mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_FAILED);
+                        jobFinished(jobParameters, false);
+                        return null;
+                    });
+            // Finished by the callbacks
+            return true;
         }
 
-        ReRegistrationScheduler scheduler = new ReRegistrationScheduler(this);
-        scheduler.scheduleReRegistration();
-        return true;
+        // Play Services drops the geofences while location is off
+        geofenceController.invalidateRegistration();
+        return COMPLETE;
     }
 
     @Override
@@ -10,7 +10,6 @@ import co.uk.hive.reactnativegeolocation.LocationChecker;
 import co.uk.hive.reactnativegeolocation.PermissionChecker;
 
 import com.annimon.stream.Stream;
-import com.annimon.stream.function.Function;
 
 import java.util.Objects;
 
@@ -26,16 +25,30 @@ import static co.uk.hive.reactnativegeolocation.geofence.ReRegisterGeofencesRece
  *   - this app package replaced
  *   - Google Play Services data cleared
  *
+ * Requests are collapsed by {@link GeofenceController#requestRestart}. All but location services
+ * enabled are known to drop the geofences, so they force the restart.
+ *
  * Details:
  *   - https://developer.android.com/training/location/geofencing#re-register-geofences-only-when-required
  *   - https://stackoverflow.com/a/50869301/1688728
  */
 public class ReRegisterGeofencesReceiver extends BroadcastReceiver {
 
-    private Function<? super Object, ? super Object> mEmptyCallback = o -> null;
+    private static final String ACTION_QUICKBOOT_POWERON = "android.intent.action.QUICKBOOT_POWERON";
+    private static final String ACTION_HTC_QUICKBOOT_POWERON = "com.htc.intent.action.QUICKBOOT_POWERON";
+
+    private GeofenceDiagnostics mGeofenceDiagnostics;
 
     @Override
     public void onReceive(Context context, Intent intent) {
+        if (mGeofenceDiagnostics == null) {
+            mGeofenceDiagnostics = GeofenceServiceLocator.getGeofenceDiagnostics(context.getApplicationContext());
+        }
+
+        if (isLocationSettingsChange(intent.getAction())) {
+            GeofenceServiceLocator.getLocationController(context).invalidateLocationSettings();
+        }
+
         if (!actionMatches(Objects.requireNonNull(intent.getAction()))) {
             return;
         }
@@ -44,29 +57,65 @@ public class ReRegisterGeofencesReceiver extends BroadcastReceiver {
             return;
         }
 
+        // The controller stores are shared with the geofence thread, which may be busy decoding or
+        // writing them, so the rest runs there. This keeps the process alive until it settles.
+        PendingResult pendingResult = goAsync();
+        GeofenceServiceLocator.getGeofenceHandler().post(() -> {
+            try {
+                reRegister(context, intent, pendingResult);
+            } catch (RuntimeException e) {
+                mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.TASK_FAILED, e.getClass().getName());
+                pendingResult.finish();
+            }
+        });
+    }
+
+    private void reRegister(Context context, Intent intent, PendingResult pendingResult) {
         if (CHANGED_TO_DISABLED.equals(isLocationServicesChanged(context, intent))) {
+            // Play Services drops the geofences while location is off
+            GeofenceServiceLocator.getGeofenceController(context).invalidateRegistration();
+            pendingResult.finish();
             return;
         }
 
         if (!isFullLocationPermissionGranted(context)) {
-            GeofenceLog.d("All-the-time location access not granted. Cannot restart geofencing");
+            mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.PERMISSION_MISSING);
+            pendingResult.finish();
             return;
         }
 
-        GeofenceLog.d("Attempting to restart geofences due to: " + intent.getAction());
+        mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_STARTED, intent.getAction());
         GeofenceController geofenceController = GeofenceServiceLocator.getGeofenceController(context);
-        geofenceController.restart(mEmptyCallback, mEmptyCallback);
+        geofenceController.requestRestart(!LocationManager.MODE_CHANGED_ACTION.equals(intent.getAction()),
+                result -> {
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_FINISHED);
+                    pendingResult.finish();
+                    return null;
+                },
+                // The failure is also kept as the registration state, which JS can query
+                error -> {
+                    mGeofenceDiagnostics.record(GeofenceDiagnostics.Event.REREGISTRATION_FAILED);
+                    pendingResult.finish();
+                    return null;
+                });
     }
 
     private boolean actionMatches(String action) {
         return Stream.of(
                 Intent.ACTION_BOOT_COMPLETED,
+                ACTION_QUICKBOOT_POWERON,
+                ACTION_HTC_QUICKBOOT_POWERON,
                 Intent.ACTION_MY_PACKAGE_REPLACED,
                 Intent.ACTION_PACKAGE_DATA_CLEARED,
                 LocationManager.MODE_CHANGED_ACTION)
                 .anyMatch(action::equals);
     }
 
+    private boolean isLocationSettingsChange(String action) {
+        return LocationManager.MODE_CHANGED_ACTION.equals(action)
+                || LocationManager.PROVIDERS_CHANGED_ACTION.equals(action);
+    }
+
     private boolean packageOtherThanGmsCleared(Intent intent) {
         if (Intent.ACTION_PACKAGE_DATA_CLEARED.equals(intent.getAction())) {
             Uri uri = intent.getData();
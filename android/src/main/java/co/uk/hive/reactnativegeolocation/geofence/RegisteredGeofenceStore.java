@@ -0,0 +1,13 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import java.util.List;
+
+/**
+ * Remembers the geofences last registered with Play Services, so that a new set only needs the
+ * differences registered.
+ */
+public interface RegisteredGeofenceStore {
+    List<Geofence> getRegisteredGeofences();
+
+    void setRegisteredGeofences(List<Geofence> geofences);
+}
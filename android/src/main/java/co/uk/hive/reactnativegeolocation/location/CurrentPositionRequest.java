@@ -1,23 +1,97 @@
 package co.uk.hive.reactnativegeolocation.location;
 
+import android.provider.Settings;
+
+import com.google.android.gms.location.Granularity;
+import com.google.android.gms.location.Priority;
+
 import java.util.concurrent.TimeUnit;
 
 /**
- * No parameters are used at the moment.
+ * Supports a subset of the parameters below: timeout, maximumAge, minAccuracy and, in place of
+ * desiredAccuracy, a Play Services priority and granularity.
  *
  * See https://transistorsoft.github.io/react-native-background-geolocation/interfaces/_react_native_background_geolocation_.currentpositionrequest.html
  */
 public class CurrentPositionRequest {
 
     public static final int DEFAULT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+    public static final long DEFAULT_MAXIMUM_AGE = 0;
+    public static final float DEFAULT_MIN_ACCURACY = 0;
+    public static final int DEFAULT_PRIORITY = Priority.PRIORITY_HIGH_ACCURACY;
+    public static final int DEFAULT_GRANULARITY = Granularity.GRANULARITY_FINE;
 
     private long mTimeout;
+    private long mMaximumAge;
+    private float mMinAccuracy;
+    private int mPriority;
+    private int mGranularity;
 
     public CurrentPositionRequest(int timeout) {
+        this(timeout, DEFAULT_MAXIMUM_AGE, DEFAULT_MIN_ACCURACY);
+    }
+
+    /**
+     * @param maximumAge  age in milliseconds up to which an earlier fix is accepted, 0 always
+     *                    requests a fresh one
+     * @param minAccuracy accuracy radius in meters an earlier fix must be within, 0 accepts any
+     */
+    public CurrentPositionRequest(int timeout, long maximumAge, float minAccuracy) {
+        this(timeout, maximumAge, minAccuracy, DEFAULT_PRIORITY, DEFAULT_GRANULARITY);
+    }
+
+    /**
+     * @param priority    one of the {@link Priority} constants
+     * @param granularity one of the {@link Granularity} constants
+     */
+    public CurrentPositionRequest(int timeout, long maximumAge, float minAccuracy, int priority, int granularity) {
         mTimeout = timeout;
+        mMaximumAge = maximumAge;
+        mMinAccuracy = minAccuracy;
+        mPriority = priority;
+        mGranularity = granularity;
     }
 
     public long getTimeout() {
         return mTimeout;
     }
+
+    public long getMaximumAge() {
+        return mMaximumAge;
+    }
+
+    public float getMinAccuracy() {
+        return mMinAccuracy;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public int getGranularity() {
+        return mGranularity;
+    }
+
+    public boolean isPassive() {
+        return mPriority == Priority.PRIORITY_PASSIVE;
+    }
+
+    /**
+     * Whether a fix obtained for this request is good enough to answer the other one. Lower
+     * priority values are the more accurate ones.
+     */
+    public boolean isAtLeastAsPreciseAs(CurrentPositionRequest other) {
+        return mPriority <= other.mPriority
+                && (mGranularity == Granularity.GRANULARITY_FINE || mGranularity == other.mGranularity);
+    }
+
+    /**
+     * @param locationMode the {@link Settings.Secure#LOCATION_MODE} of Android 8 and below
+     */
+    public boolean isSatisfiedByLocationMode(int locationMode) {
+        if (mPriority == Priority.PRIORITY_HIGH_ACCURACY) {
+            return locationMode == Settings.Secure.LOCATION_MODE_HIGH_ACCURACY;
+        }
+        return locationMode != Settings.Secure.LOCATION_MODE_OFF;
+    }
 }
@@ -0,0 +1,44 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+import com.google.android.gms.location.Granularity;
+import com.google.android.gms.location.Priority;
+
+/**
+ * Accuracy tiers for a position request, from the GPS fix down to whatever other apps have
+ * already caused the device to compute.
+ */
+public enum DesiredAccuracy {
+    HIGH(Priority.PRIORITY_HIGH_ACCURACY, Granularity.GRANULARITY_FINE),
+    // Roughly city-block precision from Wi-Fi and cell towers, without GPS
+    BALANCED(Priority.PRIORITY_BALANCED_POWER_ACCURACY, Granularity.GRANULARITY_PERMISSION_LEVEL),
+    LOW(Priority.PRIORITY_LOW_POWER, Granularity.GRANULARITY_COARSE),
+    PASSIVE(Priority.PRIORITY_PASSIVE, Granularity.GRANULARITY_COARSE);
+
+    private final int mPriority;
+    private final int mGranularity;
+
+    DesiredAccuracy(int priority, int granularity) {
+        mPriority = priority;
+        mGranularity = granularity;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public int getGranularity() {
+        return mGranularity;
+    }
+
+    /**
+     * @return the tier with the given case-insensitive name, or {@link #HIGH} if there is none
+     */
+    public static DesiredAccuracy fromName(String name) {
+        for (DesiredAccuracy desiredAccuracy : values()) {
+            if (desiredAccuracy.name().equalsIgnoreCase(name)) {
+                return desiredAccuracy;
+            }
+        }
+        return HIGH;
+    }
+}
@@ -0,0 +1,45 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+/**
+ * Most recent location fix, kept so that requests accepting an older fix are answered without
+ * the location provider. Times are on the elapsed realtime clock, which keeps running in deep
+ * sleep and is not affected by wall clock changes.
+ */
+class LastLocationCache {
+
+    private boolean mHasFix;
+    private double mLatitude;
+    private double mLongitude;
+    private float mAccuracy;
+    private long mElapsedRealtimeMillis;
+
+    /**
+     * Keeps the fix unless a more recent one is already cached.
+     *
+     * @param accuracy accuracy radius in meters, 0 when unknown
+     */
+    synchronized void update(double latitude, double longitude, float accuracy, long elapsedRealtimeMillis) {
+        if (mHasFix && elapsedRealtimeMillis < mElapsedRealtimeMillis) {
+            return;
+        }
+        mHasFix = true;
+        mLatitude = latitude;
+        mLongitude = longitude;
+        mAccuracy = accuracy;
+        mElapsedRealtimeMillis = elapsedRealtimeMillis;
+    }
+
+    /**
+     * @return the cached fix if it satisfies the request, otherwise null
+     */
+    synchronized LatLng get(CurrentPositionRequest request, long nowElapsedRealtimeMillis) {
+        if (!mHasFix || request.getMaximumAge() <= 0
+                || nowElapsedRealtimeMillis - mElapsedRealtimeMillis > request.getMaximumAge()) {
+            return null;
+        }
+        if (request.getMinAccuracy() > 0 && (mAccuracy <= 0 || mAccuracy > request.getMinAccuracy())) {
+            return null;
+        }
+        return new LatLng(mLatitude, mLongitude);
+    }
+}
@@ -2,24 +2,33 @@ package co.uk.hive.reactnativegeolocation.location;
 
 import android.Manifest;
 import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
 import android.location.Location;
 import android.location.LocationManager;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.Log;
 
 import androidx.annotation.MainThread;
 import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import com.annimon.stream.Stream;
 import com.annimon.stream.function.Function;
 import com.google.android.gms.location.CurrentLocationRequest;
 import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.Granularity;
 import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationResult;
@@ -34,7 +43,14 @@ public class LocationController {
     private final Context mContext;
     private final FusedLocationProviderClient mLocationClient;
     private final Handler mHandler;
+    private final LastLocationCache mLastLocationCache = new LastLocationCache();
+    private final List<InFlightPosition> mInFlightPositions = new ArrayList<>();
+    private final Map<Integer, LocationCallback> mWatches = new HashMap<>();
+    private final LocationDeliveryStats mDeliveryStats = new LocationDeliveryStats();
+    private volatile int mSatisfiedPriority = NO_SATISFIED_PRIORITY;
+    private boolean mSettingsChangeReceiverRegistered;
     private static final long CURRENT_LOCATION_REQUEST_DURATION_MILLIS = 3000;
+    private static final int NO_SATISFIED_PRIORITY = Integer.MAX_VALUE;
     private static final boolean IS_ANDROID_8_OR_BELOW = !(Build.VERSION.SDK_INT >= Build.VERSION_CODES.P);
 
     public LocationController(Context context) {
@@ -43,13 +59,17 @@ public class LocationController {
         mHandler = new Handler(Looper.getMainLooper());
     }
 
-    private boolean isLocationEnabled() {
+    private boolean isLocationEnabled(CurrentPositionRequest currentPositionRequest) {
         final LocationManager locationManager = (LocationManager) mContext.getSystemService(Context.LOCATION_SERVICE);
         if (locationManager != null) {
             if (!IS_ANDROID_8_OR_BELOW) {
                 return locationManager.isLocationEnabled();
-            } else {
+            } else if (currentPositionRequest.getPriority() == Priority.PRIORITY_HIGH_ACCURACY) {
                 return locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
+            } else {
+                // Lower tiers are served by the network provider as well
+                return locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER)
+                        || locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER);
             }
         }
         return false;
@@ -66,7 +86,7 @@ public class LocationController {
             return;
         }
 
-        if (!isLocationEnabled()) {
+        if (!isLocationEnabled(currentPositionRequest)) {
             failureCallback.apply(LocationError.LOCATION_DISABLED);
             return;
         }
@@ -76,10 +96,157 @@ public class LocationController {
             return;
         }
 
+        LatLng cachedLocation = mLastLocationCache.get(currentPositionRequest, SystemClock.elapsedRealtime());
+        if (cachedLocation != null) {
+            successCallback.apply(cachedLocation);
+            return;
+        }
+
+        if (currentPositionRequest.getMaximumAge() > 0) {
+            // The provider's last known fix may be recent enough, and it does not turn on GPS either
+            mLocationClient.getLastLocation()
+                    .addOnSuccessListener(TaskExecutors.MAIN_THREAD, location -> {
+                        cacheLocation(location);
+                        LatLng lastLocation = mLastLocationCache.get(currentPositionRequest, SystemClock.elapsedRealtime());
+                        if (lastLocation != null) {
+                            successCallback.apply(lastLocation);
+                        } else {
+                            requestFreshPosition(currentPositionRequest, successCallback, failureCallback);
+                        }
+                    })
+                    .addOnFailureListener(TaskExecutors.MAIN_THREAD,
+                            e -> requestFreshPosition(currentPositionRequest, successCallback, failureCallback));
+            return;
+        }
+
+        requestFreshPosition(currentPositionRequest, successCallback, failureCallback);
+    }
+
+    /**
+     * Joins a fresh position request already in flight if it is due to finish within this
+     * request's timeout and asks for at least the same accuracy, so that concurrent callers share
+     * one provider session.
+     */
+    private void requestFreshPosition(CurrentPositionRequest currentPositionRequest,
+                                      Function<LatLng, Object> successCallback,
+                                      Function<Object, Object> failureCallback) {
+        long deadline = SystemClock.elapsedRealtime() + currentPositionRequest.getTimeout();
+        InFlightPosition inFlightPosition;
+        synchronized (mInFlightPositions) {
+            for (InFlightPosition candidate : mInFlightPositions) {
+                if (candidate.mDeadline <= deadline && candidate.mRequest.isAtLeastAsPreciseAs(currentPositionRequest)) {
+                    candidate.attach(successCallback, failureCallback);
+                    return;
+                }
+            }
+            inFlightPosition = new InFlightPosition(currentPositionRequest, deadline);
+            inFlightPosition.attach(successCallback, failureCallback);
+            mInFlightPositions.add(inFlightPosition);
+        }
+
+        startFreshPosition(currentPositionRequest,
+                location -> {
+                    for (Function<LatLng, Object> callback : complete(inFlightPosition).mSuccessCallbacks) {
+                        callback.apply(location);
+                    }
+                    return null;
+                },
+                error -> {
+                    for (Function<Object, Object> callback : complete(inFlightPosition).mFailureCallbacks) {
+                        callback.apply(error);
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Subscribes to location updates until {@link #clearWatch(int)}. Updates closer than the
+     * request's distance filter to the last reported one are not passed on; the rest of each
+     * provider result, a whole batch when batching, goes to the callback in one call.
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized void watchPosition(int watchId, WatchPositionRequest watchPositionRequest,
+                                           Function<List<LatLng>, Object> locationsCallback,
+                                           Function<Object, Object> failureCallback) {
+        if (!hasPermissions()) {
+            failureCallback.apply(LocationError.PERMISSION_DENIED);
+            return;
+        }
+
+        LocationWatch watch = new LocationWatch(watchPositionRequest.getDistanceFilter());
+        LocationCallback callback = new LocationCallback() {
+            @Override
+            public void onLocationResult(LocationResult result) {
+                List<Location> locations = result.getLocations();
+                List<LatLng> reported = new ArrayList<>(locations.size());
+                for (Location location : locations) {
+                    cacheLocation(location);
+                    if (watch.shouldReport(location.getLatitude(), location.getLongitude())) {
+                        reported.add(new LatLng(location.getLatitude(), location.getLongitude()));
+                    }
+                }
+                mDeliveryStats.record(locations.size(), reported.size(), watchPositionRequest.isBatched());
+                if (!reported.isEmpty()) {
+                    locationsCallback.apply(reported);
+                }
+            }
+        };
+        mWatches.put(watchId, callback);
+
+        LocationRequest locationRequest = new LocationRequest.Builder(
+                watchPositionRequest.getPriority(), watchPositionRequest.getInterval())
+                .setMinUpdateIntervalMillis(watchPositionRequest.getFastestInterval())
+                .setMinUpdateDistanceMeters(watchPositionRequest.getDistanceFilter())
+                // Lets the provider buffer fixes while the device sleeps
+                .setMaxUpdateDelayMillis(watchPositionRequest.getMaxUpdateDelay())
+                .build();
+        mLocationClient.requestLocationUpdates(locationRequest, callback, Looper.getMainLooper())
+                .addOnFailureListener(TaskExecutors.MAIN_THREAD, e -> {
+                    Log.e(LocationController.class.getName(), "watchPosition: failed", e);
+                    clearWatch(watchId);
+                    failureCallback.apply(e);
+                });
+    }
+
+    public synchronized void clearWatch(int watchId) {
+        LocationCallback callback = mWatches.remove(watchId);
+        if (callback != null) {
+            mLocationClient.removeLocationUpdates(callback);
+        }
+    }
+
+    public LocationDeliveryStats getDeliveryStats() {
+        return mDeliveryStats;
+    }
+
+    public synchronized void clearWatches() {
+        for (LocationCallback callback : mWatches.values()) {
+            mLocationClient.removeLocationUpdates(callback);
+        }
+        mWatches.clear();
+    }
+
+    private InFlightPosition complete(InFlightPosition inFlightPosition) {
+        synchronized (mInFlightPositions) {
+            mInFlightPositions.remove(inFlightPosition);
+        }
+        return inFlightPosition;
+    }
+
+    @MainThread
+    private void startFreshPosition(CurrentPositionRequest currentPositionRequest,
+                                    Function<LatLng, Object> successCallback,
+                                    Function<Object, Object> failureCallback) {
+        // A passive request only picks up fixes other apps cause, so no setting can be missing
+        if (currentPositionRequest.isPassive()) {
+            requestLocation(currentPositionRequest, successCallback, failureCallback);
+            return;
+        }
+
         // Android 8 and below
         if (IS_ANDROID_8_OR_BELOW) {
             try {
-                if (getLocationMode(mContext) == Settings.Secure.LOCATION_MODE_HIGH_ACCURACY) {
+                if (currentPositionRequest.isSatisfiedByLocationMode(getLocationMode(mContext))) {
                     requestLocation(currentPositionRequest, successCallback, failureCallback);
                 } else {
                     failureCallback.apply(LocationError.LOCATION_SETTINGS_FAILED);
@@ -92,13 +259,54 @@ public class LocationController {
         }
 
         // Android 9+
+        if (mSatisfiedPriority <= currentPositionRequest.getPriority()) {
+            requestLocation(currentPositionRequest, successCallback, failureCallback);
+            return;
+        }
         final LocationRequest locationRequest = getLocationRequest(currentPositionRequest);
         LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder().addLocationRequest(locationRequest);
         SettingsClient client = LocationServices.getSettingsClient(mContext);
 
         client.checkLocationSettings(builder.build())
                 .addOnFailureListener(TaskExecutors.MAIN_THREAD, failureCallback::apply)
-                .addOnSuccessListener(TaskExecutors.MAIN_THREAD, ignored -> requestLocation(currentPositionRequest, successCallback, failureCallback));
+                .addOnSuccessListener(TaskExecutors.MAIN_THREAD, ignored -> {
+                    cacheLocationSettingsVerdict(currentPositionRequest.getPriority());
+                    requestLocation(currentPositionRequest, successCallback, failureCallback);
+                });
+    }
+
+    /**
+     * A satisfied settings check holds for its priority and every cheaper one until the location
+     * mode or providers change, or a fix fails.
+     */
+    private void cacheLocationSettingsVerdict(int priority) {
+        if (!mSettingsChangeReceiverRegistered) {
+            // Manifest receivers no longer get these broadcasts on Android 8+, so listen while running.
+            // Apps targeting Android 14 must say whether a runtime receiver is exported.
+            IntentFilter filter = new IntentFilter(LocationManager.MODE_CHANGED_ACTION);
+            filter.addAction(LocationManager.PROVIDERS_CHANGED_ACTION);
+            ContextCompat.registerReceiver(mContext, new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    invalidateLocationSettings();
+                }
+            }, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+            mSettingsChangeReceiverRegistered = true;
+        }
+        mSatisfiedPriority = Math.min(mSatisfiedPriority, priority);
+    }
+
+    public void invalidateLocationSettings() {
+        mSatisfiedPriority = NO_SATISFIED_PRIORITY;
+    }
+
+    private void cacheLocation(Location location) {
+        if (location == null || Double.isNaN(location.getLatitude()) || Double.isNaN(location.getLongitude())) {
+            return;
+        }
+        mLastLocationCache.update(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : 0,
+                location.getElapsedRealtimeNanos() / 1_000_000);
     }
 
     private int getLocationMode(Context context) throws Settings.SettingNotFoundException {
@@ -115,8 +323,8 @@ public class LocationController {
     private LocationRequest getLocationRequest(CurrentPositionRequest currentPositionRequest) {
         return new LocationRequest.Builder(5000)
                 .setMaxUpdates(1)
-                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
-                .setGranularity(Granularity.GRANULARITY_FINE)
+                .setPriority(currentPositionRequest.getPriority())
+                .setGranularity(currentPositionRequest.getGranularity())
                 .setDurationMillis(currentPositionRequest.getTimeout())
                 .build();
     }
@@ -135,21 +343,44 @@ public class LocationController {
         }
 
         final CurrentLocationRequest currentLocationRequest = new CurrentLocationRequest.Builder()
-                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
-                .setGranularity(Granularity.GRANULARITY_FINE)
+                .setPriority(currentPositionRequest.getPriority())
+                .setGranularity(currentPositionRequest.getGranularity())
                 .setDurationMillis(currentPositionRequest.getTimeout()).build();
 
         final Task<Location> currentLocationTask = mLocationClient.getCurrentLocation(currentLocationRequest, null);
         currentLocationTask.addOnSuccessListener(location -> {
             if (location == null || Double.isNaN(location.getLatitude()) || Double.isNaN(location.getLongitude())) {
+                if (!currentPositionRequest.isPassive()) {
+                    invalidateLocationSettings();
+                }
                 failureCallback.apply(LocationError.LOCATION_IS_NULL);
             } else {
+                cacheLocation(location);
                 successCallback.apply(new LatLng(location.getLatitude(), location.getLongitude()));
             }
         });
         currentLocationTask.addOnFailureListener(e -> {
             Log.e(LocationController.class.getName(), e.getMessage() != null ? e.getMessage() : "Unable to access current position!");
+            invalidateLocationSettings();
             failureCallback.apply(LocationError.CURRENT_LOCATION_FAILED);
         });
     }
+
+    private static class InFlightPosition {
+        private final CurrentPositionRequest mRequest;
+        private final long mDeadline;
+        private final List<Function<LatLng, Object>> mSuccessCallbacks = new ArrayList<>(2);
+        private final List<Function<Object, Object>> mFailureCallbacks = new ArrayList<>(2);
+
+        InFlightPosition(CurrentPositionRequest request, long deadline) {
+            mRequest = request;
+            mDeadline = deadline;
+        }
+
+        // Only called while holding mInFlightPositions, before the request completes
+        void attach(Function<LatLng, Object> successCallback, Function<Object, Object> failureCallback) {
+            mSuccessCallbacks.add(successCallback);
+            mFailureCallbacks.add(failureCallback);
+        }
+    }
 }
@@ -0,0 +1,53 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+/**
+ * Counts how location updates of position watches reach JS, to check how far provider-side
+ * batching cuts wake-ups and bridge calls.
+ */
+public class LocationDeliveryStats {
+
+    private long mDeliveries;
+    private long mBridgeCalls;
+    private long mLocationsReceived;
+    private long mLocationsReported;
+    private int mLargestBatch;
+
+    /**
+     * @param received locations in one result from the provider, which is one wake-up
+     * @param reported locations that passed the distance filter and went to JS
+     * @param batched  whether the reported locations went in one bridge call, rather than one each
+     */
+    synchronized void record(int received, int reported, boolean batched) {
+        mDeliveries++;
+        mLocationsReceived += received;
+        mLargestBatch = Math.max(mLargestBatch, received);
+        if (reported > 0) {
+            mBridgeCalls += batched ? 1 : reported;
+            mLocationsReported += reported;
+        }
+    }
+
+    public synchronized long getDeliveries() {
+        return mDeliveries;
+    }
+
+    public synchronized long getBridgeCalls() {
+        return mBridgeCalls;
+    }
+
+    public synchronized long getLocationsReceived() {
+        return mLocationsReceived;
+    }
+
+    public synchronized long getLocationsReported() {
+        return mLocationsReported;
+    }
+
+    public synchronized int getLargestBatch() {
+        return mLargestBatch;
+    }
+
+    public synchronized double getAverageBatch() {
+        return mDeliveries == 0 ? 0 : (double) mLocationsReceived / mDeliveries;
+    }
+}
@@ -0,0 +1,40 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+/**
+ * Decides which updates of a position watch are reported, dropping those closer than the
+ * distance filter to the last reported location.
+ */
+class LocationWatch {
+
+    private static final double METERS_PER_DEGREE = 111_320d;
+
+    private final float mDistanceFilter;
+
+    private boolean mHasReported;
+    private double mLastLatitude;
+    private double mLastLongitude;
+
+    LocationWatch(float distanceFilter) {
+        mDistanceFilter = distanceFilter;
+    }
+
+    boolean shouldReport(double latitude, double longitude) {
+        if (mHasReported && mDistanceFilter > 0
+                && distanceMeters(mLastLatitude, mLastLongitude, latitude, longitude) < mDistanceFilter) {
+            return false;
+        }
+        mHasReported = true;
+        mLastLatitude = latitude;
+        mLastLongitude = longitude;
+        return true;
+    }
+
+    /**
+     * Equirectangular approximation, accurate for the short distances a filter compares against.
+     */
+    static double distanceMeters(double fromLatitude, double fromLongitude, double toLatitude, double toLongitude) {
+        double dLat = toLatitude - fromLatitude;
+        double dLng = (toLongitude - fromLongitude) * Math.cos(Math.toRadians(fromLatitude));
+        return Math.sqrt(dLat * dLat + dLng * dLng) * METERS_PER_DEGREE;
+    }
+}
@@ -0,0 +1,67 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+import com.google.android.gms.location.Priority;
+
+import java.util.concurrent.TimeUnit;
+
+public class WatchPositionRequest {
+
+    public static final long DEFAULT_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    public static final long DEFAULT_FASTEST_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    public static final float DEFAULT_DISTANCE_FILTER = 0;
+    public static final int DEFAULT_PRIORITY = Priority.PRIORITY_HIGH_ACCURACY;
+    public static final long DEFAULT_MAX_UPDATE_DELAY = 0;
+
+    private final long mInterval;
+    private final long mFastestInterval;
+    private final float mDistanceFilter;
+    private final int mPriority;
+    private final long mMaxUpdateDelay;
+
+    public WatchPositionRequest(long interval, long fastestInterval, float distanceFilter, int priority) {
+        this(interval, fastestInterval, distanceFilter, priority, DEFAULT_MAX_UPDATE_DELAY);
+    }
+
+    /**
+     * @param interval        desired time between updates in milliseconds
+     * @param fastestInterval shortest time between updates in milliseconds, when other apps
+     *                        request locations more often
+     * @param distanceFilter  meters the device must move from the last reported location before
+     *                        an update is reported, 0 reports every update
+     * @param priority        one of the {@link Priority} constants
+     * @param maxUpdateDelay  milliseconds the provider may hold updates back to deliver them
+     *                        together, 0 delivers each update as it comes
+     */
+    public WatchPositionRequest(long interval, long fastestInterval, float distanceFilter, int priority,
+                                long maxUpdateDelay) {
+        mInterval = interval;
+        mFastestInterval = fastestInterval;
+        mDistanceFilter = distanceFilter;
+        mPriority = priority;
+        mMaxUpdateDelay = maxUpdateDelay;
+    }
+
+    public long getInterval() {
+        return mInterval;
+    }
+
+    public long getFastestInterval() {
+        return mFastestInterval;
+    }
+
+    public float getDistanceFilter() {
+        return mDistanceFilter;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public long getMaxUpdateDelay() {
+        return mMaxUpdateDelay;
+    }
+
+    public boolean isBatched() {
+        return mMaxUpdateDelay > 0;
+    }
+}
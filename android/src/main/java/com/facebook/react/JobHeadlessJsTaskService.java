@@ -68,10 +68,12 @@ public abstract class JobHeadlessJsTaskService extends JobService implements Hea
                 getReactNativeHost().getReactInstanceManager();
         ReactContext reactContext = reactInstanceManager.getCurrentReactContext();
         if (reactContext == null) {
+            final long startNanos = System.nanoTime();
             reactInstanceManager
                     .addReactInstanceEventListener(new ReactInstanceManager.ReactInstanceEventListener() {
                         @Override
                         public void onReactContextInitialized(ReactContext reactContext) {
+                            onReactContextReady((System.nanoTime() - startNanos) / 1_000_000, true);
                             invokeStartTask(reactContext, taskConfig);
                             reactInstanceManager.removeReactInstanceEventListener(this);
                         }
@@ -80,10 +82,19 @@ public abstract class JobHeadlessJsTaskService extends JobService implements Hea
                 reactInstanceManager.createReactContextInBackground();
             }
         } else {
+            onReactContextReady(0, false);
             invokeStartTask(reactContext, taskConfig);
         }
     }
 
+    /**
+     * Called by {@link #startTask} once a React context is there to run the task in.
+     *
+     * @param waitMillis how long the task waited for the React context
+     * @param coldStart whether the React context had to be created first
+     */
+    protected void onReactContextReady(long waitMillis, boolean coldStart) { }
+
     private void invokeStartTask(ReactContext reactContext, final HeadlessJsTaskConfig taskConfig) {
         final HeadlessJsTaskContext headlessJsTaskContext = HeadlessJsTaskContext.getInstance(reactContext);
         headlessJsTaskContext.addTaskEventListener(this);
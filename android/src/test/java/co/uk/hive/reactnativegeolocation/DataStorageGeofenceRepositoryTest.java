@@ -2,22 +2,33 @@ package co.uk.hive.reactnativegeolocation;
 
 import co.uk.hive.reactnativegeolocation.geofence.DataStorageGeofenceRepository;
 import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceJournal;
+import co.uk.hive.reactnativegeolocation.geofence.GeofenceSnapshot;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.File;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
 import static co.uk.hive.reactnativegeolocation.geofence.DataStorageGeofenceRepository.KEY_GEOFENCES;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @RunWith(MockitoJUnitRunner.class)
 public class DataStorageGeofenceRepositoryTest {
@@ -30,6 +41,13 @@ public class DataStorageGeofenceRepositoryTest {
     @Mock
     private DataMarshaller mDataMarshaller;
 
+    @Mock
+    private GeofenceJournal mGeofenceJournal;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mSnapshotFile;
     private DataStorageGeofenceRepository mSut;
 
     private List<Geofence> mGeofences = new LinkedList<>();
@@ -38,7 +56,8 @@ public class DataStorageGeofenceRepositoryTest {
     public void setUp() {
         givenDependencies();
         givenGeofences();
-        mSut = new DataStorageGeofenceRepository(mDataStorage, mDataMarshaller);
+        mSnapshotFile = new File(mTemporaryFolder.getRoot(), GeofenceSnapshot.FILE_NAME);
+        mSut = new DataStorageGeofenceRepository(mDataStorage, mDataMarshaller, mGeofenceJournal, mSnapshotFile);
     }
 
     @Test
@@ -56,6 +75,95 @@ public class DataStorageGeofenceRepositoryTest {
         assertEquals(mGeofences, mSut.getGeofences());
     }
 
+    @Test
+    public void replacesGeofenceWithSameId() {
+        Geofence resized = new Geofence("1", 500, 0, 0, false, false, false, 0);
+
+        mSut.addGeofences(Collections.singletonList(resized));
+
+        assertEquals(2, mSut.getGeofences().size());
+        assertEquals(resized, mSut.getGeofences().get(0));
+        assertEquals(resized, mSut.getGeofenceById("1").get());
+    }
+
+    @Test
+    public void findsGeofenceById() {
+        assertEquals(mGeofences.get(1), mSut.getGeofenceById("2").get());
+        assertFalse(mSut.getGeofenceById("3").isPresent());
+    }
+
+    @Test
+    public void migratesStoredGeofencesToSnapshot() {
+        assertEquals(mGeofences, GeofenceSnapshot.open(mSnapshotFile).toList());
+        verify(mGeofenceJournal).reset(1);
+        verify(mDataStorage).store(KEY_GEOFENCES, "");
+    }
+
+    @Test
+    public void looksUpGeofencesInSnapshot() {
+        GeofenceJournal.Changes noChanges = new GeofenceJournal.Changes();
+        given(mGeofenceJournal.replay()).willReturn(noChanges);
+
+        DataStorageGeofenceRepository repository = new DataStorageGeofenceRepository(
+                mDataStorage, mDataMarshaller, mGeofenceJournal, mSnapshotFile);
+
+        assertEquals(mGeofences.get(1), repository.getGeofenceById("2").get());
+        assertFalse(repository.getGeofenceById("3").isPresent());
+        assertEquals(mGeofences, repository.getGeofences());
+        // The journal was from before the snapshot
+        verify(mGeofenceJournal, times(2)).reset(1);
+    }
+
+    @Test
+    public void journalsAddedGeofences() {
+        List<Geofence> added = Collections.singletonList(TestData.createGeofence("3"));
+
+        mSut.addGeofences(added);
+
+        verify(mGeofenceJournal).appendGeofences(added);
+    }
+
+    @Test
+    public void removesGeofencesById() {
+        mSut.removeGeofences(Arrays.asList("1", "3"));
+
+        assertEquals(Collections.singletonList(mGeofences.get(1)), mSut.getGeofences());
+        assertFalse(mSut.getGeofenceById("1").isPresent());
+        assertEquals(1, mSut.getGeofenceCount());
+        verify(mGeofenceJournal).appendRemovals(Arrays.asList("1", "3"));
+    }
+
+    @Test
+    public void changesSnapshotGeofencesBeforeDecodingThem() {
+        GeofenceJournal.Changes noChanges = new GeofenceJournal.Changes();
+        given(mGeofenceJournal.replay()).willReturn(noChanges);
+        DataStorageGeofenceRepository repository = new DataStorageGeofenceRepository(
+                mDataStorage, mDataMarshaller, mGeofenceJournal, mSnapshotFile);
+        Geofence resized = new Geofence("2", 500, 0, 0, false, false, false, 0);
+        Geofence added = TestData.createGeofence("3");
+
+        repository.addGeofences(Arrays.asList(resized, added));
+        repository.removeGeofences(Collections.singletonList("1"));
+
+        assertFalse(repository.getGeofenceById("1").isPresent());
+        assertEquals(resized, repository.getGeofenceById("2").get());
+        assertEquals(2, repository.getGeofenceCount());
+        assertEquals(Arrays.asList(resized, added), repository.getGeofences());
+        verify(mGeofenceJournal).appendRemovals(Collections.singletonList("1"));
+    }
+
+    @Test
+    public void replacesAllGeofencesInOneSnapshot() {
+        List<Geofence> replacement = Collections.singletonList(TestData.createGeofence("3"));
+
+        mSut.replaceGeofences(replacement);
+
+        assertEquals(replacement, mSut.getGeofences());
+        assertFalse(mSut.getGeofenceById("1").isPresent());
+        assertEquals(replacement, GeofenceSnapshot.open(mSnapshotFile).toList());
+        verify(mGeofenceJournal).reset(2);
+    }
+
     @Test
     public void removesGeofences() {
         mSut.addGeofences(mGeofences);
@@ -65,10 +173,25 @@ public class DataStorageGeofenceRepositoryTest {
         assertTrue(geofences.isEmpty());
     }
 
+    @Test
+    public void removesGeofencesWithoutDecodingThem() {
+        GeofenceJournal.Changes noChanges = spy(new GeofenceJournal.Changes());
+        given(mGeofenceJournal.replay()).willReturn(noChanges);
+        DataStorageGeofenceRepository repository = new DataStorageGeofenceRepository(
+                mDataStorage, mDataMarshaller, mGeofenceJournal, mSnapshotFile);
+
+        repository.removeAllGeofences();
+
+        verify(noChanges, never()).applyTo(any());
+        verify(mGeofenceJournal).appendClear();
+        assertEquals(0, repository.getGeofenceCount());
+        assertTrue(repository.getGeofences().isEmpty());
+        assertEquals(0, GeofenceSnapshot.open(mSnapshotFile).size());
+    }
+
     private void givenDependencies() {
         given(mDataStorage.load(KEY_GEOFENCES)).willReturn(STORED_DATA);
         given(mDataMarshaller.unmarshalList(eq(STORED_DATA), eq(Geofence.class), any())).willReturn(mGeofences);
-        given(mDataMarshaller.marshal(mGeofences)).willReturn(STORED_DATA);
     }
 
     private void givenGeofences() {
@@ -0,0 +1,88 @@
+package co.uk.hive.reactnativegeolocation;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ForegroundCheckerTest {
+
+    private static final String PACKAGE_NAME = "co.uk.hive.app";
+    private static final int RUNNING_PROCESSES = 30;
+
+    @Mock
+    private Context mContext;
+
+    @Mock
+    private ActivityManager mActivityManager;
+
+    private ForegroundChecker mSut;
+
+    @Before
+    public void setUp() {
+        given(mContext.getSystemService(Context.ACTIVITY_SERVICE)).willReturn(mActivityManager);
+        given(mContext.getPackageName()).willReturn(PACKAGE_NAME);
+        mSut = new ForegroundChecker(mContext);
+    }
+
+    @Test
+    public void checksProcessImportance() {
+        given(mActivityManager.getRunningAppProcesses()).willReturn(createProcesses(true));
+        assertTrue(mSut.isAppInForegroundByProcessImportance());
+
+        given(mActivityManager.getRunningAppProcesses()).willReturn(createProcesses(false));
+        assertFalse(mSut.isAppInForegroundByProcessImportance());
+    }
+
+    @Test
+    public void tracksActivityLifecycle() {
+        ForegroundTracker tracker = new ForegroundTracker(false);
+
+        tracker.onActivityStarted(null);
+        tracker.onActivityStarted(null);
+        tracker.onActivityStopped(null);
+        assertTrue(tracker.isInForeground());
+
+        tracker.onActivityStopped(null);
+        assertFalse(tracker.isInForeground());
+    }
+
+    @Test
+    public void countsActivityStartedBeforeInstallation() {
+        ForegroundTracker tracker = new ForegroundTracker(true);
+
+        // The host activity, started before the tracker was installed, opens another and stops
+        tracker.onActivityStarted(null);
+        tracker.onActivityStopped(null);
+        assertTrue(tracker.isInForeground());
+
+        tracker.onActivityStopped(null);
+        assertFalse(tracker.isInForeground());
+    }
+
+    private static List<ActivityManager.RunningAppProcessInfo> createProcesses(boolean appInForeground) {
+        List<ActivityManager.RunningAppProcessInfo> processes = new ArrayList<>(RUNNING_PROCESSES);
+        for (int i = 0; i < RUNNING_PROCESSES; i++) {
+            ActivityManager.RunningAppProcessInfo process = mock(ActivityManager.RunningAppProcessInfo.class);
+            boolean app = i == RUNNING_PROCESSES - 1;
+            process.processName = app ? PACKAGE_NAME : "com.example.process" + i;
+            process.importance = app && appInForeground
+                    ? ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND
+                    : ActivityManager.RunningAppProcessInfo.IMPORTANCE_CACHED;
+            processes.add(process);
+        }
+        return processes;
+    }
+}
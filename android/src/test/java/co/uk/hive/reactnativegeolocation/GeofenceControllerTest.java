@@ -1,19 +1,35 @@
 package co.uk.hive.reactnativegeolocation;
 
 import co.uk.hive.reactnativegeolocation.geofence.*;
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+import com.annimon.stream.Optional;
 import com.annimon.stream.function.Function;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 @SuppressWarnings("Convert2Lambda")
@@ -29,6 +45,30 @@ public class GeofenceControllerTest {
     @Mock
     private GeofenceActivator mGeofenceActivator;
 
+    @Mock
+    private GeofenceWindowStore mGeofenceWindowStore;
+
+    @Mock
+    private RegisteredGeofenceStore mRegisteredGeofenceStore;
+
+    @Mock
+    private GeofenceFingerprintStore mGeofenceFingerprintStore;
+
+    @Mock
+    private LocationChecker mLocationChecker;
+
+    @Mock
+    private GeofenceEngine.DelayedExecutor mRestartExecutor;
+
+    @Mock
+    private GeofenceDiagnostics mGeofenceDiagnostics;
+
+    @Captor
+    private ArgumentCaptor<Runnable> mRestartCaptor;
+
+    @Captor
+    private ArgumentCaptor<Long> mFingerprintCaptor;
+
     @InjectMocks
     private GeofenceController mSut;
 
@@ -46,16 +86,18 @@ public class GeofenceControllerTest {
     @Test
     public void startsGeofences() {
         given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
 
         mSut.start(mCallback, mCallback);
 
-        verify(mGeofenceEngine).addGeofences(mGeofences, mCallback, mCallback);
+        verify(mGeofenceEngine).addGeofences(eq(mGeofences), any(), eq(mCallback));
         verify(mGeofenceActivator).setGeofencesActivated(true);
     }
 
     @Test
     public void stopsGeofences() {
         given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
 
         mSut.stop(mCallback, mCallback);
 
@@ -63,10 +105,23 @@ public class GeofenceControllerTest {
         verify(mGeofenceActivator).setGeofencesActivated(false);
     }
 
+    @Test
+    public void callsBackWhenStartingOrStoppingWithoutGeofences() {
+        List<Object> results = new ArrayList<>();
+        given(mGeofenceRepository.getGeofences()).willReturn(Collections.emptyList());
+
+        mSut.start(results::add, mCallback);
+        mSut.stop(results::add, mCallback);
+
+        assertEquals(2, results.size());
+        verify(mGeofenceEngine, never()).addGeofences(any(), any(), any());
+    }
+
     @Test
     public void restartsGeofences() {
         given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
         given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
 
         mSut.restart(mCallback, mCallback);
 
@@ -74,6 +129,223 @@ public class GeofenceControllerTest {
         verify(mGeofenceEngine).addGeofences(eq(mGeofences), any(), any());
     }
 
+    @Test
+    public void collapsesRestartRequests() {
+        List<Object> results = new ArrayList<>();
+        given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
+        given(mLocationChecker.isLocationEnabled()).willReturn(true);
+        givenGeofencesAddedSuccessfully();
+
+        mSut.requestRestart(true, results::add, mCallback);
+        mSut.requestRestart(false, results::add, mCallback);
+        verify(mRestartExecutor, times(2)).execute(mRestartCaptor.capture(), anyLong());
+        for (Runnable restart : mRestartCaptor.getAllValues()) {
+            restart.run();
+        }
+
+        verify(mGeofenceEngine, times(1)).addGeofences(eq(mGeofences), any(), any());
+        assertEquals(2, results.size());
+    }
+
+    @Test
+    public void failsRequestedRestartThatThrows() {
+        List<Object> failures = new ArrayList<>();
+        IllegalStateException error = new IllegalStateException("Corrupt snapshot");
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceRepository.getGeofences()).willThrow(error);
+
+        mSut.requestRestart(true, mCallback, failures::add);
+        verify(mRestartExecutor).execute(mRestartCaptor.capture(), anyLong());
+        mRestartCaptor.getValue().run();
+
+        assertEquals(Collections.singletonList(error), failures);
+    }
+
+    @Test
+    public void skipsRestartOfUnchangedRegistration() {
+        List<Object> results = new ArrayList<>();
+        given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
+        given(mLocationChecker.isLocationEnabled()).willReturn(true);
+        given(mLocationChecker.getEnabledProviders()).willReturn(LocationChecker.PROVIDER_GPS);
+        givenGeofencesAddedSuccessfully();
+        mSut.start(mCallback, mCallback);
+        verify(mGeofenceFingerprintStore, times(2)).setFingerprint(mFingerprintCaptor.capture());
+        long fingerprint = mFingerprintCaptor.getValue();
+        given(mGeofenceFingerprintStore.getFingerprint()).willReturn(fingerprint);
+
+        mSut.requestRestart(false, results::add, mCallback);
+        verify(mRestartExecutor).execute(mRestartCaptor.capture(), anyLong());
+        mRestartCaptor.getValue().run();
+
+        assertNotEquals(GeofenceFingerprintStore.NO_FINGERPRINT, fingerprint);
+        verify(mGeofenceEngine, times(1)).addGeofences(any(), any(), any());
+        assertEquals(1, results.size());
+
+        // A different provider state does not match
+        given(mLocationChecker.getEnabledProviders()).willReturn(LocationChecker.PROVIDER_NETWORK);
+        mSut.requestRestart(false, results::add, mCallback);
+        verify(mRestartExecutor, times(2)).execute(mRestartCaptor.capture(), anyLong());
+        mRestartCaptor.getValue().run();
+
+        verify(mGeofenceEngine, times(2)).addGeofences(any(), any(), any());
+    }
+
+    @Test
+    public void startsGeofenceWindowAroundLastLocation() {
+        GeofenceWindowState windowState = new GeofenceWindowState();
+        windowState.setSize(1);
+        given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        given(mGeofenceRepository.getNearestGeofences(anyDouble(), anyDouble(), anyInt()))
+                .willReturn(Collections.singletonList(mGeofences.get(0)));
+        given(mGeofenceWindowStore.getWindowState()).willReturn(windowState);
+        willAnswer(invocation -> {
+            Function<LatLng, Object> callback = invocation.getArgument(0);
+            return callback.apply(new LatLng(0, 0));
+        }).given(mGeofenceEngine).getLastLocation(any());
+
+        mSut.start(mCallback, mCallback);
+
+        verify(mGeofenceEngine).addGeofences(eq(Collections.singletonList(mGeofences.get(0))), any(), eq(mCallback));
+        verify(mGeofenceActivator).setGeofencesActivated(true);
+    }
+
+    @Test
+    public void unregistersGeofencesLeftOutOfResizedWindow() {
+        GeofenceWindowState windowState = new GeofenceWindowState();
+        windowState.setSize(2);
+        given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        given(mGeofenceRepository.getNearestGeofences(anyDouble(), anyDouble(), anyInt())).willAnswer(invocation ->
+                mGeofences.subList(0, Math.min(invocation.<Integer>getArgument(2), mGeofences.size())));
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(windowState);
+        willAnswer(invocation -> {
+            Function<LatLng, Object> callback = invocation.getArgument(0);
+            return callback.apply(new LatLng(0, 0));
+        }).given(mGeofenceEngine).getLastLocation(any());
+        givenGeofencesAddedSuccessfully();
+        willAnswer(invocation -> {
+            Function<Object, Object> callback = invocation.getArgument(1);
+            return callback.apply(null);
+        }).given(mGeofenceEngine).removeGeofences(any(), any(), any());
+
+        mSut.start(mCallback, mCallback);
+        mSut.setWindowSize(1);
+        mSut.restart(mCallback, mCallback);
+
+        verify(mGeofenceEngine).removeGeofences(eq(Collections.singletonList("2")), any(), eq(mCallback));
+        // Restarting registers the whole window again
+        verify(mGeofenceEngine, times(2)).addGeofences(
+                argThat(geofences -> geofences.contains(mGeofences.get(0))), any(), eq(mCallback));
+        assertFalse(windowState.getRegisteredIds().contains("2"));
+    }
+
+    @Test
+    public void replacesGeofencesRegisteringOnlyDifferences() {
+        Geofence moved = new Geofence("2", 0, 1, 1, false, false, false, 0);
+        Geofence added = TestData.createGeofence("3");
+        List<Geofence> replacement = Arrays.asList(mGeofences.get(0), moved, added);
+        given(mGeofenceRepository.getGeofences()).willReturn(mGeofences, replacement);
+        given(mGeofenceRepository.getGeofenceById(any())).willAnswer(invocation -> Optional.ofNullable(
+                "2".equals(invocation.getArgument(0)) ? mGeofences.get(1) : null));
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
+        given(mRegisteredGeofenceStore.getRegisteredGeofences())
+                .willReturn(Arrays.asList(mGeofences.get(0), mGeofences.get(1), TestData.createGeofence("4")));
+        willAnswer(invocation -> {
+            Function<Object, Object> callback = invocation.getArgument(1);
+            return callback.apply(null);
+        }).given(mGeofenceEngine).removeGeofences(any(), any(), any());
+        willAnswer(invocation -> {
+            Function<Object, Object> callback = invocation.getArgument(1);
+            return callback.apply(null);
+        }).given(mGeofenceEngine).addGeofences(any(), any(), any());
+
+        mSut.replaceGeofences(replacement, mCallback, mCallback);
+
+        verify(mGeofenceRepository).replaceGeofences(replacement);
+        verify(mGeofenceEngine).removeGeofences(eq(Collections.singletonList("4")), any(), eq(mCallback));
+        verify(mGeofenceEngine).addGeofences(eq(Arrays.asList(moved, added)), any(), eq(mCallback));
+        verify(mRegisteredGeofenceStore).setRegisteredGeofences(replacement);
+    }
+
+    @Test
+    public void upsertsGeofencesRegisteringOnlyChangedOnes() {
+        Geofence moved = new Geofence("2", 0, 1, 1, false, false, false, 0);
+        Geofence added = TestData.createGeofence("3");
+        given(mGeofenceRepository.getGeofenceById(any())).willAnswer(invocation -> Optional.ofNullable(
+                "3".equals(invocation.getArgument(0)) ? null : mGeofences.get(
+                        Integer.parseInt(invocation.getArgument(0)) - 1)));
+        given(mGeofenceRepository.getGeofenceCount()).willReturn(2);
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
+        given(mRegisteredGeofenceStore.getRegisteredGeofences()).willReturn(mGeofences);
+        givenGeofencesAddedSuccessfully();
+
+        mSut.upsertGeofences(Arrays.asList(mGeofences.get(0), moved, added), mCallback, mCallback);
+
+        verify(mGeofenceRepository).addGeofences(Arrays.asList(moved, added));
+        verify(mGeofenceEngine).addGeofences(eq(Arrays.asList(moved, added)), any(), eq(mCallback));
+        verify(mRegisteredGeofenceStore).setRegisteredGeofences(Arrays.asList(mGeofences.get(0), moved, added));
+        verify(mGeofenceRepository, never()).getGeofences();
+    }
+
+    @Test
+    public void removesGeofencesById() {
+        given(mGeofenceRepository.getGeofenceById(any())).willAnswer(invocation -> Optional.ofNullable(
+                "2".equals(invocation.getArgument(0)) ? mGeofences.get(1) : null));
+        given(mGeofenceRepository.getGeofenceCount()).willReturn(2);
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
+        given(mRegisteredGeofenceStore.getRegisteredGeofences()).willReturn(mGeofences);
+        willAnswer(invocation -> {
+            Function<Object, Object> callback = invocation.getArgument(1);
+            return callback.apply(null);
+        }).given(mGeofenceEngine).removeGeofences(any(), any(), any());
+
+        mSut.removeGeofences(Arrays.asList("2", "5"), mCallback, mCallback);
+
+        verify(mGeofenceRepository).removeGeofences(Collections.singleton("2"));
+        verify(mGeofenceEngine).removeGeofences(eq(Collections.singletonList("2")), any(), eq(mCallback));
+        verify(mRegisteredGeofenceStore).setRegisteredGeofences(Collections.singletonList(mGeofences.get(0)));
+        verify(mGeofenceRepository, never()).getGeofences();
+    }
+
+    @Test
+    public void updatesFingerprintOfChangedGeofences() {
+        Geofence added = TestData.createGeofence("3");
+        given(mGeofenceActivator.areGeofencesActivated()).willReturn(true);
+        given(mGeofenceWindowStore.getWindowState()).willReturn(new GeofenceWindowState());
+        given(mLocationChecker.getEnabledProviders()).willReturn(LocationChecker.PROVIDER_GPS);
+        givenGeofencesAddedSuccessfully();
+        given(mGeofenceRepository.getGeofences()).willReturn(mGeofences);
+        mSut.start(mCallback, mCallback);
+        given(mGeofenceRepository.getGeofences()).willReturn(Arrays.asList(mGeofences.get(0), mGeofences.get(1), added));
+        mSut.start(mCallback, mCallback);
+        verify(mGeofenceFingerprintStore, times(4)).setFingerprint(mFingerprintCaptor.capture());
+        long fingerprint = mFingerprintCaptor.getAllValues().get(1);
+        long upsertedFingerprint = mFingerprintCaptor.getAllValues().get(3);
+        given(mGeofenceFingerprintStore.getFingerprint()).willReturn(fingerprint);
+        given(mGeofenceRepository.getGeofenceById(any())).willReturn(Optional.empty());
+        given(mGeofenceRepository.getGeofenceCount()).willReturn(2);
+
+        mSut.upsertGeofences(Collections.singletonList(added), mCallback, mCallback);
+
+        verify(mGeofenceFingerprintStore, times(6)).setFingerprint(mFingerprintCaptor.capture());
+        assertNotEquals(fingerprint, upsertedFingerprint);
+        assertEquals(upsertedFingerprint, (long) mFingerprintCaptor.getValue());
+    }
+
+    private void givenGeofencesAddedSuccessfully() {
+        willAnswer(invocation -> {
+            Function<Object, Object> callback = invocation.getArgument(1);
+            return callback.apply(null);
+        }).given(mGeofenceEngine).addGeofences(any(), any(), any());
+    }
+
     @Test
     public void interactsWithRepository() {
         mSut.addGeofences(mGeofences);
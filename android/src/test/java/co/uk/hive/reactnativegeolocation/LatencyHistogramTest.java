@@ -0,0 +1,36 @@
+package co.uk.hive.reactnativegeolocation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void reportsBucketBoundsAsPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(15);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(700);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(83.5, histogram.getMeanMillis(), 0.001);
+        assertEquals(20, histogram.getPercentileMillis(50));
+        assertEquals(700, histogram.getPercentileMillis(95));
+        assertEquals(700, histogram.getMaxMillis());
+    }
+
+    @Test
+    public void keepsDurationsBeyondLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3_600_000);
+
+        assertEquals(1, histogram.getPercentileMillis(50));
+        assertEquals(3_600_000, histogram.getPercentileMillis(99));
+        assertEquals(0, new LatencyHistogram().getPercentileMillis(50));
+    }
+}
@@ -0,0 +1,130 @@
+package co.uk.hive.reactnativegeolocation;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import co.uk.hive.reactnativegeolocation.geofence.Geofence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RNMapperTest {
+
+    @Mock
+    private ReadableMap mColumns;
+
+    private RNMapper mSut;
+
+    @Before
+    public void setUp() {
+        mSut = new RNMapper();
+        given(mColumns.hasKey(anyString())).willReturn(false);
+    }
+
+    @Test
+    public void readsGeofenceColumns() {
+        // The bridge hands JS numbers over as doubles
+        givenColumn("identifiers", "home", "work");
+        givenColumn("latitudes", 51.5, -33.86);
+        givenColumn("longitudes", -0.12, 151.2);
+        givenColumn("radii", 150d, 80d);
+        givenColumn("flags",
+                (double) (Geofence.FLAG_NOTIFY_ON_ENTER | Geofence.FLAG_NOTIFY_ON_DWELL),
+                (double) Geofence.FLAG_NOTIFY_ON_EXIT);
+        givenColumn("loiteringDelays", 30000d, 0d);
+
+        List<Geofence> geofences = mSut.readGeofenceColumns(mColumns);
+
+        assertEquals(Arrays.asList(
+                new Geofence("home", 150, 51.5, -0.12, true, false, true, 30000),
+                new Geofence("work", 80, -33.86, 151.2, false, true, false, 0)), geofences);
+    }
+
+    @Test
+    public void defaultsOptionalColumns() {
+        givenColumn("identifiers", "home");
+        givenColumn("latitudes", 51.5);
+        givenColumn("longitudes", -0.12);
+        givenColumn("radii", 150d);
+
+        List<Geofence> geofences = mSut.readGeofenceColumns(mColumns);
+
+        assertEquals(new Geofence("home", 150, 51.5, -0.12, true, true, false, 0), geofences.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsColumnsOfDifferentLengths() {
+        givenColumn("identifiers", "home", "work");
+        givenColumn("latitudes", 51.5);
+
+        mSut.readGeofenceColumns(mColumns);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingColumn() {
+        givenColumn("identifiers", "home");
+        givenColumn("latitudes", 51.5);
+        givenColumn("longitudes", -0.12);
+
+        mSut.readGeofenceColumns(mColumns);
+    }
+
+    @Test
+    public void rejectsNullValueNamingItsIndex() {
+        givenColumn("identifiers", "home", "work");
+        givenColumn("latitudes", 51.5, null);
+        givenColumn("longitudes", -0.12, 151.2);
+        givenColumn("radii", 150d, 80d);
+
+        try {
+            mSut.readGeofenceColumns(mColumns);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("Column latitudes has null at index 1, expected a number", e.getMessage());
+        }
+    }
+
+    @Test
+    public void rejectsWatchOptionsTheLocationRequestWouldNot() {
+        ReadableMap options = mock(ReadableMap.class);
+        given(options.hasKey(anyString())).willAnswer(invocation ->
+                "interval".equals(invocation.getArgument(0)) || "fastestInterval".equals(invocation.getArgument(0)));
+        given(options.getDouble("interval")).willReturn(1000d);
+        given(options.getDouble("fastestInterval")).willReturn(5000d);
+
+        try {
+            mSut.readWatchPositionRequest(options);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("fastestInterval 5000 is longer than interval 1000", e.getMessage());
+        }
+
+        given(options.getDouble("interval")).willReturn(-1d);
+        try {
+            mSut.readWatchPositionRequest(options);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("interval is -1.0, expected a non-negative number", e.getMessage());
+        }
+    }
+
+    private void givenColumn(String key, Object... values) {
+        ReadableArray column = mock(ReadableArray.class);
+        given(column.toArrayList()).willReturn(new ArrayList<>(Arrays.asList(values)));
+        given(mColumns.hasKey(key)).willReturn(true);
+        given(mColumns.getArray(key)).willReturn(column);
+    }
+}
@@ -0,0 +1,103 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceDiagnosticsTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readsRecordsInOrder() {
+        // Timestamps count from the wall clock when the log was created
+        long before = System.currentTimeMillis();
+        GeofenceDiagnostics diagnostics = new GeofenceDiagnostics(null);
+
+        diagnostics.record(GeofenceDiagnostics.Event.REGISTRATION_STARTED, 60);
+        diagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, "home", 2);
+        diagnostics.record(GeofenceDiagnostics.Event.EVENT_EMITTED, "home");
+
+        List<GeofenceDiagnostics.Record> records = diagnostics.read();
+        assertEquals(3, records.size());
+        assertEquals(GeofenceDiagnostics.Event.REGISTRATION_STARTED, records.get(0).getEvent());
+        assertNull(records.get(0).getId());
+        assertEquals(60, records.get(0).getStatus());
+        assertEquals(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, records.get(1).getEvent());
+        assertEquals("home", records.get(1).getId());
+        assertEquals(2, records.get(1).getStatus());
+        assertEquals(GeofenceDiagnostics.NO_STATUS, records.get(2).getStatus());
+        assertEquals(2, records.get(2).getSequence());
+        assertTrue(records.get(0).getTimestamp() >= before);
+        assertTrue(records.get(2).getNanoTime() >= records.get(0).getNanoTime());
+    }
+
+    @Test
+    public void keepsNewestRecordsWhenFull() {
+        GeofenceDiagnostics diagnostics = new GeofenceDiagnostics(null);
+
+        for (int i = 0; i < GeofenceDiagnostics.CAPACITY + 10; i++) {
+            diagnostics.record(GeofenceDiagnostics.Event.CHUNK_REGISTERED, i);
+        }
+
+        List<GeofenceDiagnostics.Record> records = diagnostics.read();
+        assertEquals(GeofenceDiagnostics.CAPACITY, records.size());
+        assertEquals(10, records.get(0).getStatus());
+        assertEquals(GeofenceDiagnostics.CAPACITY + 9, records.get(records.size() - 1).getStatus());
+    }
+
+    @Test
+    public void readsSpilledRecordsAfterRestart() {
+        File file = new File(mTemporaryFolder.getRoot(), GeofenceDiagnostics.FILE_NAME);
+        GeofenceDiagnostics diagnostics = new GeofenceDiagnostics(file);
+        diagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, "home", 1);
+        diagnostics.spill();
+        diagnostics.record(GeofenceDiagnostics.Event.EVENT_TO_HEADLESS, "home");
+        diagnostics.spill();
+        diagnostics.record(GeofenceDiagnostics.Event.GEOFENCING_ERROR, 1000);
+
+        assertEquals(3, diagnostics.read().size());
+
+        GeofenceDiagnostics restarted = new GeofenceDiagnostics(file);
+        restarted.record(GeofenceDiagnostics.Event.HEADLESS_TASK_STARTED, 1);
+        List<GeofenceDiagnostics.Record> records = restarted.read();
+
+        assertEquals(3, records.size());
+        assertEquals(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, records.get(0).getEvent());
+        assertEquals("home", records.get(0).getId());
+        assertEquals(GeofenceDiagnostics.Event.EVENT_TO_HEADLESS, records.get(1).getEvent());
+        assertEquals(GeofenceDiagnostics.Event.HEADLESS_TASK_STARTED, records.get(2).getEvent());
+    }
+
+    @Test
+    public void rotatesSpillFile() {
+        File file = new File(mTemporaryFolder.getRoot(), GeofenceDiagnostics.FILE_NAME);
+        GeofenceDiagnostics diagnostics = new GeofenceDiagnostics(file);
+
+        int spills = 0;
+        while (!new File(file.getPath() + ".1").exists()) {
+            for (int i = 0; i < 100; i++) {
+                diagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, "home", i);
+            }
+            diagnostics.spill();
+            spills++;
+        }
+        for (int i = 0; i < 3 * spills; i++) {
+            for (int j = 0; j < 100; j++) {
+                diagnostics.record(GeofenceDiagnostics.Event.TRANSITION_RECEIVED, "home", j);
+            }
+            diagnostics.spill();
+        }
+
+        assertTrue(file.length() <= GeofenceDiagnostics.MAX_SPILL_FILE_BYTES + 100 * 64);
+        assertTrue(diagnostics.read().size() < 2 * 100 * spills + 100);
+    }
+}
@@ -0,0 +1,209 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.PermissionChecker;
+import com.annimon.stream.function.Function;
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeofenceEngineTest {
+
+    @Mock
+    private GeofencingClient mGeofencingClient;
+
+    @Mock
+    private PermissionChecker mPermissionChecker;
+
+    @Mock
+    private GeofenceRegistrationStore mGeofenceRegistrationStore;
+
+    @Captor
+    private ArgumentCaptor<GeofenceRegistrationState> mStateCaptor;
+
+    @Captor
+    private ArgumentCaptor<GeofencingRequest> mRequestCaptor;
+
+    private final List<Long> mRetryDelays = new ArrayList<>();
+    private final List<Object> mSuccesses = new ArrayList<>();
+    private final List<Object> mFailures = new ArrayList<>();
+    private final GeofenceMetrics mGeofenceMetrics = new GeofenceMetrics();
+
+    private GeofenceEngine mSut;
+
+    @Before
+    public void setUp() {
+        given(mPermissionChecker.isFullLocationPermissionGranted()).willReturn(true);
+        mSut = new GeofenceEngine(mGeofencingClient, null, mPermissionChecker, null, Runnable::run,
+                (command, delayMillis) -> {
+                    mRetryDelays.add(delayMillis);
+                    command.run();
+                },
+                mGeofenceRegistrationStore,
+                mGeofenceMetrics,
+                new GeofenceDiagnostics(null));
+    }
+
+    @Test
+    public void registersGeofencesInChunks() {
+        given(mGeofencingClient.addGeofences(any(), any())).willReturn(Tasks.forResult(null));
+
+        mSut.addGeofences(createGeofences(60), record(mSuccesses), record(mFailures));
+
+        verify(mGeofencingClient, times(3)).addGeofences(any(GeofencingRequest.class), any());
+        assertEquals(1, mSuccesses.size());
+        assertEquals(0, mFailures.size());
+        GeofenceRegistrationState state = lastState();
+        assertEquals(GeofenceRegistrationState.Status.REGISTERED, state.getStatus());
+        assertEquals(60, state.getRegisteredCount());
+        assertEquals(1, mGeofenceMetrics.getRegistrationLatency().getCount());
+        assertEquals(0, mGeofenceMetrics.getRegistrationFailures());
+    }
+
+    @Test
+    public void registersRefreshGeofenceToReportAnExitTheUserIsAlreadyPast() {
+        given(mGeofencingClient.addGeofences(any(), any())).willReturn(Tasks.forResult(null));
+        List<Geofence> geofences = createGeofences(30);
+        // Centred on a stale fix, the user starts outside the refresh geofence
+        geofences.add(new Geofence(GeofenceWindow.REFRESH_GEOFENCE_ID, 500, 51.5, -0.1, false, true, false, 0));
+
+        mSut.addGeofences(geofences, record(mSuccesses), record(mFailures));
+
+        verify(mGeofencingClient, times(3)).addGeofences(mRequestCaptor.capture(), any());
+        GeofencingRequest refreshRequest = null;
+        int storedCount = 0;
+        for (GeofencingRequest request : mRequestCaptor.getAllValues()) {
+            if (GeofenceWindow.isRefreshGeofence(request.getGeofences().get(0).getRequestId())) {
+                refreshRequest = request;
+            } else {
+                assertEquals(0, request.getInitialTrigger());
+                storedCount += request.getGeofences().size();
+            }
+        }
+        assertEquals(30, storedCount);
+        assertEquals(1, refreshRequest.getGeofences().size());
+        assertEquals(GeofencingRequest.INITIAL_TRIGGER_EXIT, refreshRequest.getInitialTrigger());
+        assertEquals(31, lastState().getRegisteredCount());
+    }
+
+    @Test
+    public void failsWithoutBackgroundLocationPermission() {
+        given(mPermissionChecker.isFullLocationPermissionGranted()).willReturn(false);
+
+        mSut.addGeofences(createGeofences(1), record(mSuccesses), record(mFailures));
+
+        assertEquals(0, mSuccesses.size());
+        assertEquals(1, mFailures.size());
+        assertTrue(mFailures.get(0) instanceof IllegalStateException);
+        verify(mGeofencingClient, never()).addGeofences(any(GeofencingRequest.class), any());
+    }
+
+    @Test
+    public void retriesRetryableFailuresWithBackoff() {
+        Task<Void> tooFrequent = Tasks.forException(new ApiException(
+                new Status(GeofenceStatusCodes.GEOFENCE_REQUEST_TOO_FREQUENT)));
+        given(mGeofencingClient.addGeofences(any(), any()))
+                .willReturn(tooFrequent, tooFrequent, Tasks.forResult(null));
+
+        mSut.addGeofences(createGeofences(1), record(mSuccesses), record(mFailures));
+
+        assertEquals(Arrays.asList(1000L, 2000L), mRetryDelays);
+        assertEquals(1, mSuccesses.size());
+        GeofenceRegistrationState state = lastState();
+        assertEquals(GeofenceRegistrationState.Status.REGISTERED, state.getStatus());
+        assertEquals(2, state.getRetryCount());
+    }
+
+    @Test
+    public void givesUpAfterMaxAttempts() {
+        given(mGeofencingClient.addGeofences(any(), any())).willReturn(Tasks.forException(new ApiException(
+                new Status(GeofenceStatusCodes.GEOFENCE_REQUEST_TOO_FREQUENT))));
+
+        mSut.addGeofences(createGeofences(1), record(mSuccesses), record(mFailures));
+
+        verify(mGeofencingClient, times(GeofenceEngine.MAX_ATTEMPTS)).addGeofences(any(GeofencingRequest.class), any());
+        assertEquals(1, mFailures.size());
+        assertEquals(GeofenceRegistrationState.Status.FAILED, lastState().getStatus());
+    }
+
+    @Test
+    public void stopsOnPermanentFailure() {
+        given(mGeofencingClient.addGeofences(any(), any())).willReturn(Tasks.forException(new ApiException(
+                new Status(GeofenceStatusCodes.GEOFENCE_TOO_MANY_GEOFENCES))));
+
+        mSut.addGeofences(createGeofences(60), record(mSuccesses), record(mFailures));
+
+        verify(mGeofencingClient).addGeofences(any(GeofencingRequest.class), any());
+        assertEquals(Collections.emptyList(), mRetryDelays);
+        assertEquals(1, mFailures.size());
+        GeofenceRegistrationState state = lastState();
+        assertEquals(GeofenceRegistrationState.Status.FAILED, state.getStatus());
+        assertEquals(60, state.getFailedCount());
+        assertEquals(GeofenceStatusCodes.GEOFENCE_TOO_MANY_GEOFENCES, state.getLastErrorCode());
+        assertEquals(1, mGeofenceMetrics.getRegistrationFailures());
+    }
+
+    @Test
+    public void recordsPartialRegistration() {
+        given(mGeofencingClient.addGeofences(any(), any())).willReturn(
+                Tasks.forResult(null),
+                Tasks.forException(new ApiException(new Status(GeofenceStatusCodes.GEOFENCE_TOO_MANY_GEOFENCES))));
+
+        mSut.addGeofences(createGeofences(40), record(mSuccesses), record(mFailures));
+
+        GeofenceRegistrationState state = lastState();
+        assertEquals(GeofenceRegistrationState.Status.PARTIALLY_REGISTERED, state.getStatus());
+        assertEquals(25, state.getRegisteredCount());
+        assertEquals(15, state.getFailedCount());
+    }
+
+    @Test
+    public void capsBackoff() {
+        assertEquals(1000, GeofenceEngine.getBackoffMillis(1));
+        assertEquals(8000, GeofenceEngine.getBackoffMillis(4));
+        assertEquals(GeofenceEngine.MAX_BACKOFF_MILLIS, GeofenceEngine.getBackoffMillis(30));
+    }
+
+    private GeofenceRegistrationState lastState() {
+        verify(mGeofenceRegistrationStore, atLeastOnce()).setRegistrationState(mStateCaptor.capture());
+        List<GeofenceRegistrationState> states = mStateCaptor.getAllValues();
+        return states.get(states.size() - 1);
+    }
+
+    private static Function<? super Object, ? super Object> record(List<Object> results) {
+        return result -> results.add(result);
+    }
+
+    private static List<Geofence> createGeofences(int count) {
+        List<Geofence> geofences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            geofences.add(new Geofence(String.valueOf(i), 100, 51.5, -0.1, true, true, false, 0));
+        }
+        return geofences;
+    }
+}
@@ -0,0 +1,74 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import co.uk.hive.reactnativegeolocation.location.LatLng;
+import com.google.gson.GsonBuilder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceEventTest {
+
+    // What the outbox stored for an event written from bundles
+    private static final String BUNDLE_JSON = "{\"action\":\"ENTER\",\"identifier\":\"home\",\"timestamp\":1700000000,"
+            + "\"location\":{\"coords\":{\"latitude\":51.5,\"longitude\":-0.12}},\"sequence\":3}";
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private DataMarshaller mDataMarshaller;
+
+    @Before
+    public void setUp() {
+        mDataMarshaller = new DataMarshaller(new GsonBuilder()
+                .registerTypeAdapter(GeofenceEvent.class, new GeofenceEventTypeAdapter())
+                .create());
+    }
+
+    @Test
+    public void readsEventsStoredAsBundles() {
+        GeofenceEvent event = mDataMarshaller.unmarshal(BUNDLE_JSON, GeofenceEvent.class, null);
+
+        assertEquals(createEvent("home", 3), event);
+        assertEquals(51.5, event.getLocation().getLatitude(), 0);
+        assertEquals(-0.12, event.getLocation().getLongitude(), 0);
+        assertEquals(BUNDLE_JSON, mDataMarshaller.marshal(event));
+    }
+
+    @Test
+    public void leavesOutMissingSequence() {
+        GeofenceEvent event = createEvent("home", GeofenceEvent.NO_SEQUENCE);
+
+        String json = mDataMarshaller.marshal(event);
+
+        assertFalse(json.contains(GeofenceEventOutbox.KEY_SEQUENCE));
+        assertEquals(event, mDataMarshaller.unmarshal(json, GeofenceEvent.class, null));
+    }
+
+    @Test
+    public void outboxNumbersEvents() {
+        File file = new File(mTemporaryFolder.getRoot(), GeofenceEventOutbox.FILE_NAME);
+        GeofenceEventOutbox outbox = new GeofenceEventOutbox(file, mDataMarshaller);
+        GeofenceEvent home = createEvent("home", GeofenceEvent.NO_SEQUENCE);
+        GeofenceEvent work = createEvent("work", GeofenceEvent.NO_SEQUENCE);
+
+        assertEquals(1, outbox.append(home));
+        assertEquals(2, outbox.append(work));
+        outbox.acknowledge(1);
+
+        assertTrue(work.hasSequence());
+        assertEquals(Arrays.asList(work), new GeofenceEventOutbox(file, mDataMarshaller).peek(10));
+    }
+
+    private static GeofenceEvent createEvent(String identifier, long sequence) {
+        return new GeofenceEvent("ENTER", identifier, 1_700_000_000L, new LatLng(51.5, -0.12), sequence);
+    }
+}
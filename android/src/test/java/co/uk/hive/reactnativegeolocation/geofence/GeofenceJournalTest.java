@@ -0,0 +1,144 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import com.google.gson.Gson;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceJournalTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private final DataMarshaller mDataMarshaller = new DataMarshaller(new Gson());
+
+    private File mFile;
+    private GeofenceJournal mSut;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mTemporaryFolder.getRoot(), GeofenceJournal.FILE_NAME);
+        mSut = new GeofenceJournal(mFile, mDataMarshaller);
+    }
+
+    @Test
+    public void replaysRecords() {
+        mSut.appendGeofences(Arrays.asList(createGeofence("1"), createGeofence("2"), createGeofence("3")));
+        mSut.appendRemovals(Collections.singletonList("2"));
+        mSut.appendGeofences(Collections.singletonList(createGeofence("1", 500)));
+
+        List<Geofence> geofences = new GeofenceJournal(mFile, mDataMarshaller).replay().applyTo(null);
+
+        assertEquals(Arrays.asList(createGeofence("1", 500), createGeofence("3")), geofences);
+    }
+
+    @Test
+    public void replaysClear() {
+        mSut.appendGeofences(Collections.singletonList(createGeofence("1")));
+        mSut.appendClear();
+        mSut.appendGeofences(Collections.singletonList(createGeofence("2")));
+
+        List<Geofence> geofences = new GeofenceJournal(mFile, mDataMarshaller).replay().applyTo(null);
+
+        assertEquals(Collections.singletonList(createGeofence("2")), geofences);
+    }
+
+    @Test
+    public void dropsTornRecord() throws IOException {
+        mSut.appendGeofences(Collections.singletonList(createGeofence("1")));
+        long intactLength = mFile.length();
+        try (FileOutputStream out = new FileOutputStream(mFile, true)) {
+            out.write("A\t{\"mId\":\"2\",\"mRad".getBytes(StandardCharsets.UTF_8));
+        }
+
+        GeofenceJournal journal = new GeofenceJournal(mFile, mDataMarshaller);
+        List<Geofence> geofences = journal.replay().applyTo(null);
+        journal.appendGeofences(Collections.singletonList(createGeofence("3")));
+
+        assertEquals(Collections.singletonList(createGeofence("1")), geofences);
+        assertTrue(mFile.length() > intactLength);
+        assertEquals(Arrays.asList(createGeofence("1"), createGeofence("3")),
+                new GeofenceJournal(mFile, mDataMarshaller).replay().applyTo(null));
+    }
+
+    @Test
+    public void resetsToSnapshotGeneration() {
+        mSut.appendGeofences(Arrays.asList(createGeofence("1"), createGeofence("2")));
+
+        mSut.reset(3);
+        mSut.appendGeofences(Collections.singletonList(createGeofence("3")));
+
+        GeofenceJournal.Changes changes = new GeofenceJournal(mFile, mDataMarshaller).replay();
+        assertEquals(3, changes.getGeneration());
+        assertEquals(Collections.singletonList(createGeofence("3")), changes.applyTo(null));
+    }
+
+    @Test
+    public void appliesChangesToSnapshot() throws IOException {
+        File snapshotFile = mTemporaryFolder.newFile();
+        GeofenceSnapshot.write(snapshotFile, 1, Arrays.asList(createGeofence("1"), createGeofence("2"), createGeofence("3")));
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(snapshotFile);
+        mSut.reset(1);
+        mSut.appendGeofences(Arrays.asList(createGeofence("2", 500), createGeofence("4")));
+        mSut.appendRemovals(Collections.singletonList("1"));
+        mSut.appendGeofences(Collections.singletonList(createGeofence("1", 300)));
+        mSut.appendRemovals(Collections.singletonList("3"));
+
+        GeofenceJournal.Changes changes = new GeofenceJournal(mFile, mDataMarshaller).replay();
+
+        assertEquals(createGeofence("2", 500), changes.find("2", snapshot));
+        assertEquals(createGeofence("1", 300), changes.find("1", snapshot));
+        assertNull(changes.find("3", snapshot));
+        assertEquals(Arrays.asList(createGeofence("2", 500), createGeofence("4"), createGeofence("1", 300)),
+                changes.applyTo(snapshot));
+        assertEquals(3, changes.size(snapshot));
+    }
+
+    @Test
+    public void writesOnlyTheDeltaForSingleAdd() {
+        List<Geofence> stored = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            stored.add(createGeofence(String.valueOf(i)));
+        }
+        File snapshotFile = new File(mTemporaryFolder.getRoot(), GeofenceSnapshot.FILE_NAME);
+        GeofenceSnapshot.write(snapshotFile, 1, stored);
+        mSut.reset(1);
+        GeofenceJournal journal = new GeofenceJournal(mFile, mDataMarshaller);
+        DataStorageGeofenceRepository repository = new DataStorageGeofenceRepository(null, mDataMarshaller, journal,
+                snapshotFile);
+
+        // Counted from the snapshot, before anything decodes the catalog
+        assertEquals(10_000, repository.getGeofenceCount());
+
+        long before = journal.getBytesWritten();
+        repository.addGeofences(Collections.singletonList(createGeofence("new")));
+        long journalBytes = journal.getBytesWritten() - before;
+
+        assertEquals(10_001, repository.getGeofences().size());
+        assertEquals(10_001, repository.getGeofenceCount());
+        assertTrue(journalBytes < 256);
+    }
+
+    private static Geofence createGeofence(String id) {
+        return createGeofence(id, 100);
+    }
+
+    private static Geofence createGeofence(String id, int radius) {
+        return new Geofence(id, radius, 51.5, -0.12, true, true, false, 0);
+    }
+}
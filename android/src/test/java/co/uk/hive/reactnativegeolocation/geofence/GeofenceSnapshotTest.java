@@ -0,0 +1,83 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceSnapshotTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    private File mFile;
+
+    @Before
+    public void setUp() {
+        mFile = new File(mTemporaryFolder.getRoot(), GeofenceSnapshot.FILE_NAME);
+    }
+
+    @Test
+    public void readsWhatWasWritten() {
+        List<Geofence> geofences = Arrays.asList(
+                new Geofence("home", 150, 51.5, -0.12, true, false, true, 30000),
+                new Geofence("work", 80, -33.86, 151.2, false, true, false, 0));
+
+        assertTrue(GeofenceSnapshot.write(mFile, 7, geofences));
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(mFile);
+
+        assertNotNull(snapshot);
+        assertEquals(7, snapshot.getGeneration());
+        assertEquals(geofences, snapshot.toList());
+    }
+
+    @Test
+    public void findsGeofenceById() {
+        List<Geofence> geofences = createGeofences(1000);
+        geofences.add(createGeofence("caf\u00e9"));
+        geofences.add(createGeofence("\ud83c\udfe0"));
+        GeofenceSnapshot.write(mFile, 1, geofences);
+        GeofenceSnapshot snapshot = GeofenceSnapshot.open(mFile);
+
+        for (Geofence geofence : geofences) {
+            assertEquals(geofence, snapshot.find(geofence.getId()));
+        }
+        assertNull(snapshot.find("1000"));
+        assertNull(snapshot.find(""));
+    }
+
+    @Test
+    public void rejectsTruncatedSnapshot() throws IOException {
+        GeofenceSnapshot.write(mFile, 1, createGeofences(10));
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        assertNull(GeofenceSnapshot.open(mFile));
+        assertNull(GeofenceSnapshot.open(new File(mTemporaryFolder.getRoot(), "missing")));
+    }
+
+    private static List<Geofence> createGeofences(int count) {
+        List<Geofence> geofences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            geofences.add(createGeofence(String.valueOf(i)));
+        }
+        return geofences;
+    }
+
+    private static Geofence createGeofence(String id) {
+        return new Geofence(id, 100, 51.5 + id.hashCode() % 1000 / 10_000.0, -0.12, true, true, false, 0);
+    }
+}
@@ -0,0 +1,87 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceSpatialIndexTest {
+
+    private final Random mRandom = new Random(42);
+
+    @Test
+    public void findsNearestGeofences() {
+        List<Geofence> geofences = createGeofences(2000);
+        GeofenceSpatialIndex sut = createIndex(geofences);
+
+        for (int i = 0; i < 50; i++) {
+            double latitude = randomLatitude();
+            double longitude = randomLongitude();
+
+            List<Geofence> nearest = sut.findNearest(latitude, longitude, 20);
+
+            assertEquals(bruteForceNearest(geofences, latitude, longitude, 20), nearest);
+        }
+    }
+
+    @Test
+    public void findsNearestGeofencesFarFromAnyCell() {
+        List<Geofence> geofences = createGeofences(100);
+        GeofenceSpatialIndex sut = createIndex(geofences);
+
+        List<Geofence> nearest = sut.findNearest(-33.86, 151.2, 5);
+
+        assertEquals(bruteForceNearest(geofences, -33.86, 151.2, 5), nearest);
+    }
+
+    @Test
+    public void removesGeofences() {
+        Geofence geofence = new Geofence("1", 100, 51.5, -0.1, true, true, false, 0);
+        GeofenceSpatialIndex sut = new GeofenceSpatialIndex();
+        sut.add(geofence);
+
+        sut.remove(geofence);
+
+        assertEquals(0, sut.size());
+        assertTrue(sut.findNearest(51.5, -0.1, 1).isEmpty());
+    }
+
+    private GeofenceSpatialIndex createIndex(List<Geofence> geofences) {
+        GeofenceSpatialIndex index = new GeofenceSpatialIndex();
+        for (Geofence geofence : geofences) {
+            index.add(geofence);
+        }
+        return index;
+    }
+
+    private List<Geofence> createGeofences(int count) {
+        List<Geofence> geofences = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            geofences.add(new Geofence(String.valueOf(i), 100, randomLatitude(), randomLongitude(),
+                    true, true, false, 0));
+        }
+        return geofences;
+    }
+
+    // Roughly the area of Great Britain
+    private double randomLatitude() {
+        return 50 + mRandom.nextDouble() * 8;
+    }
+
+    private double randomLongitude() {
+        return -6 + mRandom.nextDouble() * 8;
+    }
+
+    private static List<Geofence> bruteForceNearest(List<Geofence> geofences, double latitude, double longitude,
+                                                    int count) {
+        List<Geofence> sorted = new ArrayList<>(geofences);
+        sorted.sort(Comparator.comparingDouble(geofence -> GeofenceSpatialIndex.distanceMeters(
+                latitude, longitude, geofence.getLatitude(), geofence.getLongitude())));
+        return sorted.subList(0, Math.min(count, sorted.size()));
+    }
+}
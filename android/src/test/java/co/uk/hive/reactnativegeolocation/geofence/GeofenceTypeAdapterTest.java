@@ -0,0 +1,49 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import co.uk.hive.reactnativegeolocation.DataMarshaller;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class GeofenceTypeAdapterTest {
+
+    private final DataMarshaller mDataMarshaller = new DataMarshaller(new GsonBuilder()
+            .registerTypeAdapter(Geofence.class, new GeofenceTypeAdapter())
+            .create());
+
+    @Test
+    public void writesShortKeys() {
+        Geofence geofence = new Geofence("home", 150, 51.5, -0.12, true, false, true, 30000);
+
+        assertEquals("{\"i\":\"home\",\"r\":150,\"la\":51.5,\"lo\":-0.12,\"en\":true,\"ex\":false,\"dw\":true,\"ld\":30000}",
+                mDataMarshaller.marshal(geofence));
+    }
+
+    @Test
+    public void readsWhatWasWritten() {
+        List<Geofence> geofences = Arrays.asList(
+                new Geofence("home", 150, 51.5, -0.12, true, false, true, 30000),
+                new Geofence("work", 80, -33.86, 151.2, false, true, false, 0));
+
+        assertEquals(geofences, mDataMarshaller.unmarshalList(
+                mDataMarshaller.marshal(geofences), Geofence.class, new LinkedList<>()));
+    }
+
+    @Test
+    public void readsGeofencesWrittenByReflection() {
+        List<Geofence> geofences = Arrays.asList(
+                new Geofence("home", 150, 51.5, -0.12, true, false, true, 30000),
+                new Geofence("work", 80, -33.86, 151.2, false, true, false, 0));
+        String stored = new Gson().toJson(geofences);
+
+        assertEquals(geofences, mDataMarshaller.unmarshalList(stored, Geofence.class, new LinkedList<>()));
+        assertEquals(new Geofence("1", 0, 0, 0, false, false, false, 0),
+                mDataMarshaller.unmarshal("{\"mId\":\"1\",\"unknown\":{\"a\":[1]},\"mRadius\":null}", Geofence.class, null));
+    }
+}
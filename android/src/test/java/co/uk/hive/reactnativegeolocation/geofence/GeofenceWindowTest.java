@@ -0,0 +1,77 @@
+package co.uk.hive.reactnativegeolocation.geofence;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GeofenceWindowTest {
+
+    @Mock
+    private GeofenceRepository mGeofenceRepository;
+
+    private GeofenceWindow mSut;
+
+    private final Geofence mNear = new Geofence("near", 100, 51.501, -0.1, true, true, false, 0);
+    private final Geofence mMiddle = new Geofence("middle", 100, 51.51, -0.1, true, true, false, 0);
+    private final Geofence mFar = new Geofence("far", 100, 51.6, -0.1, true, true, false, 0);
+
+    @Before
+    public void setUp() {
+        mSut = new GeofenceWindow(mGeofenceRepository);
+    }
+
+    @Test
+    public void registersNearestGeofencesWithRefreshGeofence() {
+        given(mGeofenceRepository.getNearestGeofences(51.5, -0.1, 3))
+                .willReturn(Arrays.asList(mNear, mMiddle, mFar));
+
+        GeofenceWindow.Plan plan = mSut.plan(51.5, -0.1, 2, Collections.emptyList());
+
+        assertEquals(Arrays.asList(mNear, mMiddle), plan.getGeofencesToAdd().subList(0, 2));
+        Geofence refresh = plan.getGeofencesToAdd().get(2);
+        assertEquals(GeofenceWindow.REFRESH_GEOFENCE_ID, refresh.getId());
+        assertTrue(refresh.isNotifyOnExit());
+        assertTrue(plan.getIdsToRemove().isEmpty());
+    }
+
+    @Test
+    public void reRegistersOnlyChangedGeofences() {
+        given(mGeofenceRepository.getNearestGeofences(51.6, -0.1, 3))
+                .willReturn(Arrays.asList(mFar, mMiddle, mNear));
+
+        GeofenceWindow.Plan plan = mSut.plan(51.6, -0.1, 2,
+                Arrays.asList("near", "middle", GeofenceWindow.REFRESH_GEOFENCE_ID));
+
+        List<Geofence> added = plan.getGeofencesToAdd();
+        assertEquals(2, added.size());
+        assertEquals(mFar, added.get(0));
+        assertEquals(GeofenceWindow.REFRESH_GEOFENCE_ID, added.get(1).getId());
+        assertEquals(Collections.singletonList("near"), plan.getIdsToRemove());
+        assertEquals(new HashSet<>(Arrays.asList("far", "middle", GeofenceWindow.REFRESH_GEOFENCE_ID)),
+                new HashSet<>(plan.getWindowIds()));
+    }
+
+    @Test
+    public void skipsRefreshGeofenceWhenAllGeofencesFit() {
+        given(mGeofenceRepository.getNearestGeofences(51.5, -0.1, 4))
+                .willReturn(Arrays.asList(mNear, mMiddle));
+
+        GeofenceWindow.Plan plan = mSut.plan(51.5, -0.1, 3,
+                Arrays.asList("near", GeofenceWindow.REFRESH_GEOFENCE_ID));
+
+        assertEquals(Collections.singletonList(mMiddle), plan.getGeofencesToAdd());
+        assertEquals(Collections.singletonList(GeofenceWindow.REFRESH_GEOFENCE_ID), plan.getIdsToRemove());
+    }
+}
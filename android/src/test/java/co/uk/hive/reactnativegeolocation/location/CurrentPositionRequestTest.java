@@ -0,0 +1,54 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+import android.provider.Settings;
+
+import com.google.android.gms.location.Granularity;
+import com.google.android.gms.location.Priority;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CurrentPositionRequestTest {
+
+    @Test
+    public void mapsDesiredAccuracyToTiers() {
+        assertEquals(Priority.PRIORITY_BALANCED_POWER_ACCURACY, DesiredAccuracy.fromName("balanced").getPriority());
+        assertEquals(Priority.PRIORITY_PASSIVE, DesiredAccuracy.fromName("PASSIVE").getPriority());
+        assertEquals(DesiredAccuracy.HIGH, DesiredAccuracy.fromName(null));
+        assertEquals(DesiredAccuracy.HIGH, DesiredAccuracy.fromName("best"));
+    }
+
+    @Test
+    public void sharesFixesOnlyWithLessPreciseRequests() {
+        CurrentPositionRequest high = createRequest(DesiredAccuracy.HIGH);
+        CurrentPositionRequest balanced = createRequest(DesiredAccuracy.BALANCED);
+        CurrentPositionRequest low = createRequest(DesiredAccuracy.LOW);
+
+        assertTrue(high.isAtLeastAsPreciseAs(balanced));
+        assertTrue(high.isAtLeastAsPreciseAs(low));
+        assertTrue(balanced.isAtLeastAsPreciseAs(balanced));
+        assertFalse(balanced.isAtLeastAsPreciseAs(high));
+        // A coarse fix cannot answer a request that gets a fine one when fine permission is granted
+        assertFalse(low.isAtLeastAsPreciseAs(new CurrentPositionRequest(0, 0, 0,
+                Priority.PRIORITY_PASSIVE, Granularity.GRANULARITY_PERMISSION_LEVEL)));
+    }
+
+    @Test
+    public void requiresHighAccuracyModeOnlyForHighAccuracy() {
+        CurrentPositionRequest high = createRequest(DesiredAccuracy.HIGH);
+        CurrentPositionRequest balanced = createRequest(DesiredAccuracy.BALANCED);
+
+        assertTrue(high.isSatisfiedByLocationMode(Settings.Secure.LOCATION_MODE_HIGH_ACCURACY));
+        assertFalse(high.isSatisfiedByLocationMode(Settings.Secure.LOCATION_MODE_BATTERY_SAVING));
+        assertTrue(balanced.isSatisfiedByLocationMode(Settings.Secure.LOCATION_MODE_BATTERY_SAVING));
+        assertFalse(balanced.isSatisfiedByLocationMode(Settings.Secure.LOCATION_MODE_OFF));
+    }
+
+    private static CurrentPositionRequest createRequest(DesiredAccuracy desiredAccuracy) {
+        return new CurrentPositionRequest(CurrentPositionRequest.DEFAULT_TIMEOUT, 0, 0,
+                desiredAccuracy.getPriority(), desiredAccuracy.getGranularity());
+    }
+}
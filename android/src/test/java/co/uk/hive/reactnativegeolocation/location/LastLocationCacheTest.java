@@ -0,0 +1,61 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class LastLocationCacheTest {
+
+    private static final long NOW = 100_000;
+
+    private LastLocationCache mSut;
+
+    @Before
+    public void setUp() {
+        mSut = new LastLocationCache();
+    }
+
+    @Test
+    public void servesFixWithinMaximumAge() {
+        mSut.update(51.5, -0.1, 20, NOW - 5_000);
+
+        LatLng location = mSut.get(new CurrentPositionRequest(1000, 10_000, 0), NOW);
+
+        assertNotNull(location);
+        assertEquals(51.5, location.getLatitude(), 0);
+        assertEquals(-0.1, location.getLongitude(), 0);
+    }
+
+    @Test
+    public void rejectsStaleFix() {
+        mSut.update(51.5, -0.1, 20, NOW - 5_000);
+
+        assertNull(mSut.get(new CurrentPositionRequest(1000, 1_000, 0), NOW));
+    }
+
+    @Test
+    public void requiresFreshFixWithoutMaximumAge() {
+        mSut.update(51.5, -0.1, 20, NOW);
+
+        assertNull(mSut.get(new CurrentPositionRequest(1000), NOW));
+    }
+
+    @Test
+    public void rejectsInaccurateFix() {
+        mSut.update(51.5, -0.1, 50, NOW);
+
+        assertNull(mSut.get(new CurrentPositionRequest(1000, 10_000, 20), NOW));
+        assertNotNull(mSut.get(new CurrentPositionRequest(1000, 10_000, 50), NOW));
+    }
+
+    @Test
+    public void keepsMostRecentFix() {
+        mSut.update(1, 1, 10, NOW);
+        mSut.update(2, 2, 10, NOW - 1_000);
+
+        assertEquals(1, mSut.get(new CurrentPositionRequest(1000, 10_000, 0), NOW).getLatitude(), 0);
+    }
+}
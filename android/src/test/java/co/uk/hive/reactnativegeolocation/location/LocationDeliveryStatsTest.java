@@ -0,0 +1,41 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LocationDeliveryStatsTest {
+
+    @Test
+    public void countsDeliveriesAndBatches() {
+        LocationDeliveryStats stats = new LocationDeliveryStats();
+
+        stats.record(6, 4, true);
+        stats.record(2, 0, true);
+        stats.record(1, 1, true);
+
+        assertEquals(3, stats.getDeliveries());
+        // The delivery whose locations were all filtered out never reached JS
+        assertEquals(2, stats.getBridgeCalls());
+        assertEquals(9, stats.getLocationsReceived());
+        assertEquals(5, stats.getLocationsReported());
+        assertEquals(6, stats.getLargestBatch());
+        assertEquals(3.0, stats.getAverageBatch(), 0.001);
+    }
+
+    @Test
+    public void countsOneBridgeCallPerLocationOfUnbatchedWatches() {
+        LocationDeliveryStats stats = new LocationDeliveryStats();
+
+        stats.record(3, 3, false);
+        stats.record(3, 3, true);
+
+        assertEquals(4, stats.getBridgeCalls());
+        assertEquals(6, stats.getLocationsReported());
+    }
+
+    @Test
+    public void averagesEmptyStatsToZero() {
+        assertEquals(0.0, new LocationDeliveryStats().getAverageBatch(), 0.001);
+    }
+}
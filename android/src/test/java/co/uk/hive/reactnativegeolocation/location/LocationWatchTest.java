@@ -0,0 +1,38 @@
+package co.uk.hive.reactnativegeolocation.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LocationWatchTest {
+
+    // About 11 meters north
+    private static final double STEP_DEGREES = 0.0001;
+
+    @Test
+    public void reportsEveryUpdateWithoutDistanceFilter() {
+        LocationWatch watch = new LocationWatch(0);
+
+        assertTrue(watch.shouldReport(51.5, -0.1));
+        assertTrue(watch.shouldReport(51.5, -0.1));
+    }
+
+    @Test
+    public void dropsUpdatesWithinDistanceFilter() {
+        LocationWatch watch = new LocationWatch(50);
+
+        assertTrue(watch.shouldReport(51.5, -0.1));
+        assertFalse(watch.shouldReport(51.5 + STEP_DEGREES, -0.1));
+        assertFalse(watch.shouldReport(51.5 + 4 * STEP_DEGREES, -0.1));
+        // Measured from the last reported location, not the last update
+        assertTrue(watch.shouldReport(51.5 + 5 * STEP_DEGREES, -0.1));
+        assertFalse(watch.shouldReport(51.5 + 8 * STEP_DEGREES, -0.1));
+    }
+
+    @Test
+    public void measuresDistance() {
+        assertEquals(11.1, LocationWatch.distanceMeters(51.5, -0.1, 51.5 + STEP_DEGREES, -0.1), 0.1);
+    }
+}
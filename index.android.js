@@ -1,18 +1,79 @@
 import { NativeModules, AppRegistry, DeviceEventEmitter } from 'react-native';
 
 const TAG = "GeofenceEventTask"
+const PENDING_EVENTS_BATCH_SIZE = 50
+
+// Bits for the flags column of addGeofenceColumns
+export const GEOFENCE_NOTIFY_ON_ENTRY = 1
+export const GEOFENCE_NOTIFY_ON_EXIT = 2
+export const GEOFENCE_NOTIFY_ON_DWELL = 4
+
+const positionWatches = {}
+let nextWatchId = 1
+let positionWatchSubscriptions = null
+
+function dispatchToWatch(event, handlerName, payload) {
+  const watch = positionWatches[event.watchId];
+  if (watch && watch[handlerName]) {
+    watch[handlerName](payload);
+  }
+}
+
+/*
+Geofence events stay in a native outbox until acknowledged, so an event whose handler
+throws (or never runs) is delivered again. Events carry an increasing `sequence`;
+acknowledging one acknowledges every earlier event too, so events are handled in order.
+*/
+function handleGeofenceEvents(events, handler) {
+  let acknowledged
+  const acknowledge = () => {
+    if (acknowledged !== undefined) {
+      NativeModules.RNGeolocation.acknowledgeGeofenceEvents(acknowledged);
+    }
+  }
+  return events
+    .reduce((previous, event) => previous
+      .then(() => handler(event))
+      .then(() => {
+        if (event.sequence !== undefined) {
+          acknowledged = event.sequence;
+        }
+      }),
+      Promise.resolve())
+    .then(acknowledge, (error) => {
+      acknowledge();
+      throw error;
+    });
+}
+
+function handlePendingGeofenceEvents(handler) {
+  return NativeModules.RNGeolocation.getPendingGeofenceEvents(PENDING_EVENTS_BATCH_SIZE)
+    .then((events) => {
+      if (!events.length) {
+        return;
+      }
+      return handleGeofenceEvents(events, handler).then(() => {
+        if (events.length === PENDING_EVENTS_BATCH_SIZE) {
+          return handlePendingGeofenceEvents(handler);
+        }
+      });
+    });
+}
 
 export default class RNGeolocation {
 
   static registerHeadlessTask(task) {
-    AppRegistry.registerHeadlessTask(TAG, () => task);
+    // Native side batches the events of one wake-up; hand them to the task one at a time
+    AppRegistry.registerHeadlessTask(TAG, () => (data) => {
+      if (!data || data.name !== 'geofences') {
+        return Promise.resolve(task(data));
+      }
+      return handleGeofenceEvents(data.params, (params) => task({ name: 'geofence', params }));
+    });
   }
 
   static ready(config) {
-      return new Promise((resolve, reject) => {
-        NativeModules.RNGeolocation.ready();
-        resolve();
-      });
+    return NativeModules.RNGeolocation.ready();
   }
 
   static addNotifications(arrivingNotification, leavingNotification) {
@@ -21,8 +82,30 @@ export default class RNGeolocation {
     */
   }
 
+  /*
+  Also delivers events that arrived while JS was not running, or whose handling failed.
+  Events are handled one at a time and in order. When handling an event fails, the failed
+  event is retried from the outbox as soon as the next event arrives, before that one.
+  */
   static onGeofence(geofenceListener) {
-    DeviceEventEmitter.addListener('geofence', geofenceListener);
+    let failed = false
+    const handlePending = () => handlePendingGeofenceEvents(geofenceListener).then(
+      () => { failed = false },
+      () => { failed = true });
+    let queue = handlePending();
+    DeviceEventEmitter.addListener('geofence', (event) => {
+      queue = queue.then(() => {
+        if (event.sequence === undefined) {
+          // Could not be stored in the outbox, so there is no retrying it
+          return handleGeofenceEvents([event], geofenceListener).catch(() => {});
+        }
+        if (failed) {
+          // The outbox holds this event too, after the failed ones
+          return handlePending();
+        }
+        return handleGeofenceEvents([event], geofenceListener).catch(() => { failed = true });
+      });
+    });
   }
 
   static startGeofences(successCallback, failureCallback) {
@@ -55,20 +138,95 @@ export default class RNGeolocation {
     return RNGeolocation.stop(successCallback, failureCallback);
   }
 
+  /*
+  Resolves once the geofences are stored. Like every geofence method, the native work runs
+  off the JS and main threads, one call at a time in call order.
+  */
   static addGeofences(geofences) {
+    return NativeModules.RNGeolocation.addGeofences(geofences);
+  }
+
+  /*
+  Bulk variant of addGeofences for large sets, taking one array per property:
+  { identifiers, latitudes, longitudes, radii, flags, loiteringDelays }
+  flags packs GEOFENCE_NOTIFY_ON_ENTRY | GEOFENCE_NOTIFY_ON_EXIT | GEOFENCE_NOTIFY_ON_DWELL
+  and defaults to entry and exit; loiteringDelays defaults to 0. All arrays must have the
+  same length. Each array crosses the bridge in one go, where geofence objects cost
+  several calls each.
+  */
+  static addGeofenceColumns(columns) {
+    return NativeModules.RNGeolocation.addGeofenceColumns(columns);
+  }
+
+  /*
+  Replaces all geofences with the given ones. While geofences are started, only stale,
+  new and changed geofences are re-registered.
+  */
+  static replaceGeofences(geofences) {
     return new Promise((resolve, reject) => {
-        NativeModules.RNGeolocation.addGeofences(geofences);
-        resolve();
-      });
+      let success = ()      => { resolve() }
+      let failure = (error) => { reject(error) }
+      NativeModules.RNGeolocation.replaceGeofences(geofences, success, failure);
+    });
   }
 
-  static removeGeofences() {
+  /*
+  Stores the given geofences, replacing stored geofences with the same identifiers. While
+  geofences are started, only the new and changed ones are registered.
+  */
+  static upsertGeofences(geofences) {
     return new Promise((resolve, reject) => {
-      NativeModules.RNGeolocation.removeGeofences();
-      resolve();
+      let success = ()      => { resolve() }
+      let failure = (error) => { reject(error) }
+      NativeModules.RNGeolocation.upsertGeofences(geofences, success, failure);
     });
   }
 
+  /*
+  Removes the geofences with the given identifiers and, while geofences are started, unregisters
+  them. Called without identifiers, removes all stored geofences but leaves registered ones as
+  they are.
+  */
+  static removeGeofences(identifiers) {
+    if (identifiers === undefined) {
+      return NativeModules.RNGeolocation.removeAllGeofences();
+    }
+    return new Promise((resolve, reject) => {
+      let success = ()      => { resolve() }
+      let failure = (error) => { reject(error) }
+      NativeModules.RNGeolocation.removeGeofences(identifiers, success, failure);
+    });
+  }
+
+  /*
+  Registers only the given number of geofences nearest to the user (at most 99) and
+  moves them along as the user travels. 0 registers all geofences.
+  Takes effect the next time geofences are started.
+  */
+  static setGeofenceWindowSize(size) {
+    return NativeModules.RNGeolocation.setGeofenceWindowSize(size);
+  }
+
+  /*
+  Resolves with the outcome of the latest geofence registration: { status, requestedCount,
+  registeredCount, failedCount, retryCount, lastErrorCode?, lastError?, updatedAt }.
+  status is one of NOT_REGISTERED, REGISTERING, REGISTERED, PARTIALLY_REGISTERED, FAILED.
+  */
+  static getRegistrationState() {
+    return NativeModules.RNGeolocation.getRegistrationState();
+  }
+
+  /*
+  currentPositionRequest: { timeout, maximumAge, minAccuracy, desiredAccuracy, priority, granularity }
+  maximumAge (ms) allows answering with an earlier fix up to that age, and minAccuracy
+  (meters) requires such a fix to be at least that accurate. Both default to 0, which
+  always requests a fresh fix.
+  desiredAccuracy is 'high' (GPS, the default), 'balanced' (about city-block precision
+  from Wi-Fi and cell towers), 'low' (city level) or 'passive' (only fixes other apps
+  have caused). Cheaper tiers avoid GPS, answer faster and need fewer location settings.
+  priority and granularity take the Play Services Priority and Granularity values
+  directly and override desiredAccuracy.
+  */
   static getCurrentPosition(currentPositionRequest, successCallback, failureCallback) {
     let promise = new Promise((resolve, reject) => {
             let success = (location)     => { resolve(location) }
@@ -82,6 +240,68 @@ export default class RNGeolocation {
     }
   }
 
+  /*
+  Calls successCallback with every location that moved at least distanceFilter meters
+  from the last one reported. Returns a watch id for clearWatch.
+  options: { interval, fastestInterval, distanceFilter, priority, maxUpdateDelay } (times
+  in ms, priority as the Play Services Priority value; defaults 10000, 5000, 0, high
+  accuracy, 0). With maxUpdateDelay set, the provider holds fixes back for up to that
+  long so the device can sleep, and successCallback receives each batch as an array.
+  */
+  static watchPosition(options, successCallback, failureCallback) {
+    if (!positionWatchSubscriptions) {
+      positionWatchSubscriptions = [
+        DeviceEventEmitter.addListener('watchPosition', (event) => dispatchToWatch(event, 'success', event)),
+        DeviceEventEmitter.addListener('watchPositionBatch', (event) => dispatchToWatch(event, 'success', event.locations)),
+        DeviceEventEmitter.addListener('watchPositionError', (event) => dispatchToWatch(event, 'failure', event.error)),
+      ];
+    }
+    const watchId = nextWatchId++;
+    positionWatches[watchId] = { success: successCallback, failure: failureCallback };
+    NativeModules.RNGeolocation.watchPosition(watchId, options || {});
+    return watchId;
+  }
+
+  static clearWatch(watchId) {
+    delete positionWatches[watchId];
+    NativeModules.RNGeolocation.clearWatch(watchId);
+  }
+
+  /*
+  Resolves with { deliveries, bridgeCalls, locationsReceived, locationsReported,
+  largestBatch, averageBatch } counted over all position watches since the app started.
+  deliveries counts provider results, i.e. wake-ups, and averageBatch the locations per
+  result. bridgeCalls counts watchPosition and watchPositionBatch events.
+  */
+  static getLocationDeliveryStats() {
+    return NativeModules.RNGeolocation.getLocationDeliveryStats();
+  }
+
+  /*
+  Resolves with native metrics of this process, kept since it started:
+  { geofenceCount, registration, removal, delivery, headlessStart }
+  Each section has count, meanMillis, p50Millis, p95Millis and maxMillis. Percentiles are bucket
+  bounds, so approximate. registration and removal also count failures; delivery measures the lag
+  from the triggering fix to the emit or headless hand-off, with emitted and headless counts;
+  headlessStart times React context creation for headless tasks, with warmStarts counting tasks
+  that found one running, jobsStarted the headless jobs and eventsDelivered the events they
+  carried, so eventsDelivered / jobsStarted is the number of events per job.
+  */
+  static getMetrics() {
+    return NativeModules.RNGeolocation.getMetrics();
+  }
+
+  /*
+  Resolves with the native diagnostics log, oldest first, including records kept on disk by earlier
+  processes: [{ sequence, timestamp, nanoTime, event, identifier, status }]
+  event names what happened, e.g. TRANSITION_RECEIVED or REQUEST_RETRIED. identifier is the geofence
+  id when there is one. status depends on the event: a count, a transition type or a Play Services
+  status code. sequence and nanoTime start again in every process.
+  */
+  static exportDiagnostics() {
+    return NativeModules.RNGeolocation.exportDiagnostics();
+  }
+
   static isLocationEnabled() {
     return NativeModules.RNGeolocation.isLocationEnabled();
   }
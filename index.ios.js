@@ -68,10 +68,18 @@ export default class RNGeolocation {
       });
   }
 
-  static removeGeofences() {
+  /*
+  Removes the geofences with the given identifiers, no longer monitoring them. Called without
+  identifiers, removes all stored geofences.
+  */
+  static removeGeofences(identifiers) {
+    if (identifiers === undefined) {
+      return NativeModules.RNGeolocation.removeAllGeofences();
+    }
     return new Promise((resolve, reject) => {
-      NativeModules.RNGeolocation.removeGeofences();
-      resolve();
+      let success = ()      => { resolve() }
+      let failure = (error) => { reject(error) }
+      NativeModules.RNGeolocation.removeGeofences(identifiers, success, failure);
     });
   }
 
@@ -88,8 +88,14 @@ RCT_EXPORT_METHOD(addGeofences:(NSArray <NSDictionary *> *)geofences) {
     [self.locationManager addGeofencesWithArray:geofences];
 }
 
-RCT_EXPORT_METHOD(removeGeofences) {
+RCT_EXPORT_METHOD(removeGeofences:(NSArray<NSString *> *)identifiers success:(RCTResponseSenderBlock)success failure:(RCTResponseSenderBlock)failure) {
+    [self.locationManager removeGeofencesWithIdentifiers:identifiers];
+    success(@[]);
+}
+
+RCT_EXPORT_METHOD(removeAllGeofences:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
     [self.locationManager removeAllGeofences];
+    resolve(nil);
 }
 
 RCT_EXPORT_METHOD(getCurrentPosition:(NSDictionary *)options success:(RCTResponseSenderBlock)success failure:(RCTResponseSenderBlock)failure) {
@@ -178,6 +178,16 @@ public class RNHiveGeolocationManager: NSObject {
         geofences.removeAll { $0.identifier == identifier }
     }
     
+    @objc public func removeGeofences(identifiers: [String]) {
+        for identifier in identifiers {
+            if let geofence = geofence(identifier: identifier) {
+                stopMonitoring(geofence: geofence)
+            }
+            removeGeofence(identifier: identifier)
+        }
+        saveGeofences()
+    }
+    
     @objc public func geofence(identifier: String) -> RNHiveGeofence? {
         let lookedUpGeofences = geofences.filter { $0.identifier == identifier }
         return lookedUpGeofences.first